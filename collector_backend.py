@@ -3,22 +3,86 @@
 
 from flask import Flask, request, jsonify
 import json
+import base64
 import datetime
+import gzip
+import hashlib
+import hmac
+import io
 import os
+import time
+
+try:
+    import cbor2  # 可选依赖，用于解码 CBOR 格式的记录：pip install cbor2
+except ImportError:
+    cbor2 = None
 
 app = Flask(__name__)
 
 # 配置
-SECRET_KEY = ""  # 可以设置一个密钥，为空则不验证
+SECRET_KEY = ""  # 可以设置一个密钥，为空则不验证签名
+SIGNATURE_MAX_AGE = 300  # 签名时间戳允许的最大偏差（秒），用于防止重放
 STORAGE_DIR = "collected_traffic"  # 存储目录
 
 # 确保存储目录存在
 if not os.path.exists(STORAGE_DIR):
     os.makedirs(STORAGE_DIR)
 
+def verify_signature():
+    """校验 X-Collector-Signature 请求头，返回 (错误信息, 状态码)，校验通过时返回 None
+
+    签名为 HMAC-SHA256(密钥, 时间戳 + "." + 请求体)，基于实际发送的请求体字节计算，
+    批量请求即为 gzip 压缩后的字节，因此无需解压或解析请求体即可拒绝未认证的请求。
+    """
+    if not SECRET_KEY:
+        return None
+
+    timestamp = request.headers.get('X-Collector-Timestamp', '')
+    signature = request.headers.get('X-Collector-Signature', '')
+    if not timestamp or not signature.startswith('sha256='):
+        return "Missing request signature", 401
+    try:
+        if abs(time.time() - int(timestamp)) > SIGNATURE_MAX_AGE:
+            return "Request signature expired", 401
+    except ValueError:
+        return "Invalid signature timestamp", 401
+
+    mac = hmac.new(SECRET_KEY.encode('utf-8'), digestmod=hashlib.sha256)
+    mac.update(timestamp.encode('ascii') + b'.')
+    mac.update(request.get_data(cache=True))
+    if not hmac.compare_digest(mac.hexdigest(), signature[len('sha256='):]):
+        return "Invalid request signature", 401
+    return None
+
+def request_format():
+    """根据 Content-Type 判断请求体格式：application/cbor 与 application/cbor-seq 为 CBOR，其余按 JSON 处理"""
+    content_type = request.headers.get('Content-Type', '').split(';')[0].strip().lower()
+    return 'cbor' if content_type in ('application/cbor', 'application/cbor-seq') else 'json'
+
+def check_format():
+    """未安装 cbor2 时无法解码 CBOR，返回 415 以便插件提示切换为 JSON"""
+    if request_format() == 'cbor' and cbor2 is None:
+        return "CBOR payloads require the cbor2 package (pip install cbor2)", 415
+    return None
+
+def iter_records(body):
+    """逐条解析批量请求体：JSON 为每行一条记录（NDJSON），CBOR 为首尾相接的记录序列（RFC 8742）"""
+    if request_format() == 'cbor':
+        stream = io.BytesIO(body)
+        decoder = cbor2.CBORDecoder(stream)
+        while stream.tell() < len(body):
+            yield decoder.decode()
+        return
+    for line in body.splitlines():
+        if line.strip():
+            yield json.loads(line)
+
 @app.route('/test', methods=['POST'])
 def test_connection():
-    # 简单的连接测试接口，不需要验证字段
+    # 简单的连接测试接口，不需要验证字段，但会校验签名以便检查密钥是否一致，并确认支持所选的传输格式
+    error = verify_signature() or check_format()
+    if error:
+        return jsonify({"status": "error", "message": error[0]}), error[1]
     return jsonify({"status": "success", "message": "Connection test successful"})
 
 @app.route('/')
@@ -42,6 +106,8 @@ def index():
                 <div class="info">
                     <p>这是一个简单的HTTP流量收集后端，用于接收BurpSuite Logger++ Collector插件发送的流量。</p>
                     <p>接收端点: <span class="endpoint">/recv</span></p>
+                    <p>批量接收端点 (gzip NDJSON 或 CBOR 序列): <span class="endpoint">/bulk</span></p>
+                    <p>支持的格式: JSON, CBOR (需安装 cbor2)</p>
                     <p>测试连接端点: <span class="endpoint">/test</span></p>
                     <p>查看已收集的流量: <a href="/list">/list</a></p>
                 </div>
@@ -50,37 +116,113 @@ def index():
     </html>
     '''
 
+def validate_entry(data):
+    """校验单条流量记录，返回 (错误信息, 状态码)，校验通过时返回 None"""
+    # 验证必要字段（引用记录表示近期已发送过相同内容，只携带内容哈希与重复次数）
+    if data.get('type') == 'reference':
+        required_fields = ['subsystem', 'host', 'content_hash', 'count']
+    else:
+        required_fields = ['subsystem', 'host', 'request', 'response']
+    for field in required_fields:
+        if field not in data:
+            return f"Missing required field: {field}", 400
+
+    # 旧版本插件会在记录中携带密钥，认证已改为请求签名，不再保存该字段
+    data.pop('secret', None)
+
+    return None
+
+def normalize_bodies(data):
+    """还原 base64 编码的请求/响应体：可解码为 UTF-8 文本的还原为文本，二进制内容保持 base64 并保留编码标记
+
+    CBOR 记录中的请求/响应体为原始字节，按同样的规则转换后再保存为 JSON。
+    """
+    for field in ('request', 'response'):
+        value = data.get(field)
+        if isinstance(value, (bytes, bytearray)):
+            try:
+                data[field] = value.decode('utf-8')
+            except UnicodeDecodeError:
+                data[field] = base64.b64encode(value).decode('ascii')
+                data[f'{field}_encoding'] = 'base64'
+            continue
+        if data.get(f'{field}_encoding') != 'base64':
+            continue
+        raw = base64.b64decode(data[field])
+        try:
+            data[field] = raw.decode('utf-8')
+            del data[f'{field}_encoding']
+        except UnicodeDecodeError:
+            pass
+
+def save_entry(data):
+    normalize_bodies(data)
+
+    # 保存数据
+    timestamp = datetime.datetime.now().strftime("%Y%m%d_%H%M%S_%f")
+    filename = f"{timestamp}_{data['subsystem']}_{data['host']}.json"
+    filepath = os.path.join(STORAGE_DIR, filename)
+
+    with open(filepath, 'w', encoding='utf-8') as f:
+        json.dump(data, f, ensure_ascii=False, indent=2)
+
 @app.route('/recv', methods=['POST', 'HEAD'])
 def receive_data():
     # 如果是HEAD请求，直接返回200状态码
     if request.method == 'HEAD':
         return "", 200
     try:
-        data = request.get_json()
-        
-        # 验证必要字段
-        required_fields = ['subsystem', 'host', 'request', 'response']
-        for field in required_fields:
-            if field not in data:
-                return jsonify({"status": "error", "message": f"Missing required field: {field}"}), 400
-        
-        # 验证密钥（如果设置了）
-        if SECRET_KEY and data.get('secret') != SECRET_KEY:
-            return jsonify({"status": "error", "message": "Invalid secret key"}), 403
-        
-        # 保存数据
-        timestamp = datetime.datetime.now().strftime("%Y%m%d_%H%M%S_%f")
-        filename = f"{timestamp}_{data['subsystem']}_{data['host']}.json"
-        filepath = os.path.join(STORAGE_DIR, filename)
-        
-        with open(filepath, 'w', encoding='utf-8') as f:
-            json.dump(data, f, ensure_ascii=False, indent=2)
-        
+        # 先校验签名，未认证的请求无需解析请求体
+        error = verify_signature() or check_format()
+        if error:
+            return jsonify({"status": "error", "message": error[0]}), error[1]
+
+        body = request.get_data(cache=True)
+        data = cbor2.loads(body) if request_format() == 'cbor' else json.loads(body)
+
+        error = validate_entry(data)
+        if error:
+            return jsonify({"status": "error", "message": error[0]}), error[1]
+
+        save_entry(data)
+
         return jsonify({"status": "success", "message": "Data received and saved"})
     
     except Exception as e:
         return jsonify({"status": "error", "message": str(e)}), 500
 
+@app.route('/bulk', methods=['POST', 'HEAD'])
+def receive_bulk():
+    # 批量接收端点：请求体为 NDJSON（每行一条记录）或 CBOR 序列，可使用 gzip 压缩
+    if request.method == 'HEAD':
+        return "", 200
+    try:
+        # 签名基于压缩后的请求体计算，校验通过后才解压
+        error = verify_signature() or check_format()
+        if error:
+            return jsonify({"status": "error", "message": error[0]}), error[1]
+
+        body = request.get_data(cache=True)
+        if request.headers.get('Content-Encoding', '').lower() == 'gzip':
+            body = gzip.decompress(body)
+
+        received = 0
+        rejected = 0
+        for data in iter_records(body):
+            if validate_entry(data):
+                rejected += 1
+                continue
+            save_entry(data)
+            received += 1
+
+        if rejected and not received:
+            return jsonify({"status": "error", "message": "All entries rejected", "rejected": rejected}), 400
+
+        return jsonify({"status": "success", "received": received, "rejected": rejected})
+
+    except Exception as e:
+        return jsonify({"status": "error", "message": str(e)}), 500
+
 @app.route('/list')
 def list_files():
     files = [f for f in os.listdir(STORAGE_DIR) if f.endswith('.json')]
@@ -196,6 +338,7 @@ def view_file(filename):
 if __name__ == '__main__':
     print("Logger++ Collector Backend 启动中...")
     print(f"接收端点: http://127.0.0.1:5000/recv")
+    print(f"批量接收端点: http://127.0.0.1:5000/bulk")
     print(f"Web界面: http://127.0.0.1:5000/")
     print(f"存储目录: {os.path.abspath(STORAGE_DIR)}")
     app.run(debug=True, host='127.0.0.1', port=5000)
\ No newline at end of file
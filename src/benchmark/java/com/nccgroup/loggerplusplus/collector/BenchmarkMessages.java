@@ -0,0 +1,63 @@
+package com.nccgroup.loggerplusplus.collector;
+
+import burp.api.montoya.core.ByteArray;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.http.message.responses.HttpResponse;
+
+import java.lang.reflect.Proxy;
+
+/**
+ * Wraps raw bytes as Montoya messages. Burp's own message factories are only available when running
+ * inside Burp, so these implement just the parts of the interfaces used by the collector:
+ * the raw bytes and the body offset.
+ */
+class BenchmarkMessages {
+
+    private BenchmarkMessages() {}
+
+    static HttpRequest request(byte[] bytes) {
+        return message(HttpRequest.class, bytes);
+    }
+
+    static HttpResponse response(byte[] bytes) {
+        return message(HttpResponse.class, bytes);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T message(Class<T> type, byte[] bytes) {
+        ByteArray byteArray = byteArray(bytes);
+        int bodyOffset = bodyOffset(bytes);
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "toByteArray": return byteArray;
+                case "bodyOffset": return bodyOffset;
+                case "hashCode": return System.identityHashCode(proxy);
+                case "equals": return proxy == args[0];
+                case "toString": return type.getSimpleName() + " (" + bytes.length + " bytes)";
+                default: throw new UnsupportedOperationException(type.getSimpleName() + "." + method.getName());
+            }
+        });
+    }
+
+    private static ByteArray byteArray(byte[] bytes) {
+        return (ByteArray) Proxy.newProxyInstance(ByteArray.class.getClassLoader(), new Class<?>[]{ByteArray.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getBytes": return bytes;
+                case "length": return bytes.length;
+                case "hashCode": return System.identityHashCode(proxy);
+                case "equals": return proxy == args[0];
+                case "toString": return "ByteArray (" + bytes.length + " bytes)";
+                default: throw new UnsupportedOperationException("ByteArray." + method.getName());
+            }
+        });
+    }
+
+    private static int bodyOffset(byte[] message) {
+        for (int i = 0; i + 3 < message.length; i++) {
+            if (message[i] == '\r' && message[i + 1] == '\n' && message[i + 2] == '\r' && message[i + 3] == '\n') {
+                return i + 4;
+            }
+        }
+        return message.length;
+    }
+}
@@ -0,0 +1,109 @@
+package com.nccgroup.loggerplusplus.collector;
+
+import burp.api.montoya.MontoyaApi;
+import com.coreyd97.BurpExtenderUtilities.DefaultGsonProvider;
+import com.coreyd97.BurpExtenderUtilities.IGsonProvider;
+import com.coreyd97.BurpExtenderUtilities.PreferenceFactory;
+import com.coreyd97.BurpExtenderUtilities.Preferences;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Builds a {@link Preferences} instance outside of Burp.
+ * Burp's persistence is replaced with an in-memory store, so settings last for a single run
+ * and the user's own Logger++ settings are never read or modified.
+ */
+class BenchmarkPreferences extends PreferenceFactory {
+
+    private BenchmarkPreferences(MontoyaApi montoya, IGsonProvider gsonProvider) {
+        super(montoya, gsonProvider);
+    }
+
+    static Preferences create() {
+        return new BenchmarkPreferences(inMemoryMontoya(), new DefaultGsonProvider()).buildPreferences();
+    }
+
+    @Override
+    protected void createDefaults() {}
+
+    @Override
+    protected void registerTypeAdapters() {}
+
+    @Override
+    protected void registerSettings() {}
+
+    /**
+     * @return A MontoyaApi whose persistence stores values in a map. Values are stored by key through
+     * any setX(key, value) method and read back through the matching getX(key), other methods return
+     * a similar stand-in or the default value of their return type.
+     */
+    private static MontoyaApi inMemoryMontoya() {
+        return stub(MontoyaApi.class, new ConcurrentHashMap<>());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type, Map<String, Object> store) {
+        Map<Method, Object> children = new ConcurrentHashMap<>();
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            String name = method.getName();
+            Class<?> returnType = method.getReturnType();
+            if (method.getDeclaringClass() == Object.class) {
+                switch (name) {
+                    case "equals": return proxy == args[0];
+                    case "hashCode": return System.identityHashCode(proxy);
+                    default: return type.getSimpleName() + " (in memory)";
+                }
+            }
+
+            if (args != null && args.length > 0 && args[0] instanceof String) {
+                String key = method.getDeclaringClass().getName() + ":" + name.replaceFirst("^(get|set|delete)", "") + ":" + args[0];
+                if (name.startsWith("set") && args.length == 2) {
+                    if (args[1] == null) store.remove(key);
+                    else store.put(key, args[1]);
+                    return null;
+                }
+                if (name.startsWith("delete")) {
+                    store.remove(key);
+                    return null;
+                }
+                if (name.startsWith("get")) {
+                    Object value = store.get(key);
+                    if (value != null && box(returnType).isInstance(value)) return value;
+                    return returnType.isPrimitive() ? defaultValue(returnType) : null;
+                }
+            }
+
+            if (returnType.isInterface()) {
+                return children.computeIfAbsent(method, m -> stub(returnType, store));
+            }
+            return defaultValue(returnType);
+        });
+    }
+
+    private static Class<?> box(Class<?> type) {
+        if (type == boolean.class) return Boolean.class;
+        if (type == int.class) return Integer.class;
+        if (type == long.class) return Long.class;
+        if (type == short.class) return Short.class;
+        if (type == byte.class) return Byte.class;
+        if (type == double.class) return Double.class;
+        if (type == float.class) return Float.class;
+        if (type == char.class) return Character.class;
+        return type;
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) return false;
+        if (type == int.class) return 0;
+        if (type == long.class) return 0L;
+        if (type == short.class) return (short) 0;
+        if (type == byte.class) return (byte) 0;
+        if (type == double.class) return 0d;
+        if (type == float.class) return 0f;
+        if (type == char.class) return '\0';
+        return null;
+    }
+}
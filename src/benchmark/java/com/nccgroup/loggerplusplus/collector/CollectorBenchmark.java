@@ -0,0 +1,400 @@
+package com.nccgroup.loggerplusplus.collector;
+
+import burp.api.montoya.core.ToolType;
+import burp.api.montoya.http.message.MimeType;
+import burp.api.montoya.http.message.requests.HttpRequest;
+import burp.api.montoya.http.message.responses.HttpResponse;
+import com.coreyd97.BurpExtenderUtilities.Preferences;
+import com.nccgroup.loggerplusplus.logentry.LogEntry;
+import com.nccgroup.loggerplusplus.logentry.Status;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives synthetic traffic through the collector pipeline, from {@link CollectorController#submit(LogEntry)}
+ * to an embedded HTTP sink on the loopback interface, and reports throughput, latency, bytes on the wire
+ * and allocation rate. Runs without Burp, see {@link BenchmarkPreferences}.
+ *
+ * Run with: ./gradlew benchmark -PbenchmarkArgs="--entries=200000 --bulk=false --mix=html=70,image=30"
+ */
+public class CollectorBenchmark {
+
+    private static final String HOSTNAME = "bench.example.com";
+    private static final int VARIANTS_PER_TYPE = 32;
+    private static final long COMPLETION_TIMEOUT_MS = 120000;
+    private static final String[] WORDS = {"account", "session", "token", "user", "admin", "value", "request",
+            "response", "content", "header", "submit", "search", "result", "error", "status", "message", "order",
+            "product", "price", "cart", "login", "logout", "profile", "update", "delete", "create", "list", "item"};
+
+    private final Map<String, String> options;
+    private final Random random = new Random(42);
+
+    public static void main(String[] args) throws Exception {
+        new CollectorBenchmark(parseOptions(args)).run();
+        System.exit(0);
+    }
+
+    CollectorBenchmark(Map<String, String> options) {
+        this.options = options;
+    }
+
+    void run() throws Exception {
+        //The spool directory defaults to a location in the user's home, keep the benchmark's spools out of it.
+        Path home = Files.createTempDirectory("lpp-collector-benchmark");
+        System.setProperty("user.home", home.toString());
+
+        int entries = intOption("entries", 100000);
+        int warmup = intOption("warmup", 20000);
+
+        Sink sink = new Sink(intOption("sink-delay-ms", 0));
+        try {
+            List<LogEntry> warmupEntries = generate(warmup);
+            List<LogEntry> measuredEntries = generate(entries);
+            System.out.printf(Locale.ROOT, "Collector benchmark: %,d entries (%,d warmup), options %s%n", entries, warmup, options);
+
+            if (warmup > 0) {
+                execute(warmupEntries, sink);
+            }
+            sink.reset();
+            Result result = execute(measuredEntries, sink);
+            result.print(sink);
+        } finally {
+            sink.stop();
+        }
+    }
+
+    private Result execute(List<LogEntry> logEntries, Sink sink) throws InterruptedException {
+        CollectorController controller = new CollectorController(BenchmarkPreferences.create());
+        configure(controller, sink);
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = allocatedBytes(threads);
+        long start = System.nanoTime();
+        for (LogEntry logEntry : logEntries) {
+            controller.submit(logEntry);
+        }
+        long submitted = System.nanoTime();
+
+        CollectorMetrics metrics = controller.getMetrics();
+        long deadline = System.currentTimeMillis() + COMPLETION_TIMEOUT_MS;
+        while (settled(controller) < logEntries.size() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        long end = System.nanoTime();
+        long allocated = allocatedBytes(threads) - allocatedBefore;
+
+        Result result = new Result(logEntries.size(), settled(controller), submitted - start, end - start, allocated, metrics);
+        controller.shutdown();
+        return result;
+    }
+
+    private void configure(CollectorController controller, Sink sink) {
+        controller.setEnabled(true);
+        controller.setServerUrl("http://127.0.0.1:" + sink.getPort() + "/recv");
+        controller.setDomainWhitelist(Collections.singleton(HOSTNAME));
+        controller.setFilterEmptyResponse(false);
+        controller.setFilterStaticResources(false);
+        controller.setFilterStatusCodes(false);
+        controller.setBulkEnabled(booleanOption("bulk", true));
+        controller.setBatchSize(intOption("batch-size", 500));
+        controller.setBatchLingerMs(intOption("linger-ms", 50));
+        controller.setMaxInFlightRequests(intOption("concurrency", 4));
+        controller.setMaxConnectionsPerRoute(intOption("concurrency", 4));
+        controller.setTransport(CollectorTransport.valueOf(options.getOrDefault("transport", "BLOCKING").toUpperCase(Locale.ROOT)));
+        controller.setAsyncWindow(intOption("async-window", 256));
+        controller.setQueueCapacity(intOption("queue", 10000));
+        controller.setOverflowPolicy(OverflowPolicy.valueOf(options.getOrDefault("overflow", "BLOCK").toUpperCase(Locale.ROOT)));
+        controller.setBodyEncoding(BodyEncoding.valueOf(options.getOrDefault("body-encoding", "TEXT").toUpperCase(Locale.ROOT)));
+        controller.setWireFormat(WireFormat.valueOf(options.getOrDefault("wire-format", "JSON").toUpperCase(Locale.ROOT)));
+        controller.setBodyCaps(options.getOrDefault("body-caps", ""));
+        controller.setStripBinary(booleanOption("strip-binary", false));
+        controller.setSecretKey(options.getOrDefault("secret", "benchmark"));
+        controller.setSpoolEnabled(false);
+        controller.setMetricsPort(0);
+        controller.savePreferences();
+    }
+
+    /**
+     * @return The number of entries which have reached a final state.
+     */
+    private static long settled(CollectorController controller) {
+        CollectorMetrics metrics = controller.getMetrics();
+        long dropped = 0;
+        for (CollectorDispatcher dispatcher : controller.getDispatchers()) {
+            dropped += dispatcher.getQueue().getDroppedCount();
+        }
+        return metrics.getEntriesSent() + metrics.getEntriesRefused() + metrics.getEntriesFailed() + dropped;
+    }
+
+    private static long allocatedBytes(com.sun.management.ThreadMXBean threads) {
+        long total = 0;
+        for (long allocated : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (allocated > 0) total += allocated;
+        }
+        return total;
+    }
+
+    /**
+     * Builds the entries up front from a small pool of messages per type, so generating traffic
+     * does not count towards the measured allocations.
+     */
+    private List<LogEntry> generate(int count) {
+        Map<MimeType, Integer> mix = parseMix(options.getOrDefault("mix", "html=50,json=30,image=15,script=5"));
+        int requestSize = intOption("request-size", 1024);
+        int responseSize = intOption("response-size", 16384);
+
+        Map<MimeType, List<byte[][]>> pool = new LinkedHashMap<>();
+        for (MimeType mimeType : mix.keySet()) {
+            List<byte[][]> messages = new ArrayList<>();
+            for (int i = 0; i < VARIANTS_PER_TYPE; i++) {
+                messages.add(new byte[][]{request(mimeType, i, requestSize), response(mimeType, responseSize)});
+            }
+            pool.put(mimeType, messages);
+        }
+
+        int totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+        List<LogEntry> logEntries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int pick = random.nextInt(totalWeight);
+            MimeType mimeType = null;
+            for (Map.Entry<MimeType, Integer> weight : mix.entrySet()) {
+                mimeType = weight.getKey();
+                pick -= weight.getValue();
+                if (pick < 0) break;
+            }
+            byte[][] messages = pool.get(mimeType).get(random.nextInt(VARIANTS_PER_TYPE));
+            logEntries.add(entry(i, mimeType, messages[0], messages[1]));
+        }
+        return logEntries;
+    }
+
+    private static LogEntry entry(int identifier, MimeType mimeType, byte[] request, byte[] response) {
+        LogEntry logEntry = new LogEntry(ToolType.PROXY,
+                BenchmarkMessages.request(request), BenchmarkMessages.response(response));
+        logEntry.setIdentifier(identifier);
+        logEntry.setHostname(HOSTNAME);
+        logEntry.setHost("https://" + HOSTNAME);
+        logEntry.setMethod("GET");
+        logEntry.setUrlString("https://" + HOSTNAME + "/resource/" + identifier);
+        logEntry.setResponseStatus((short) 200);
+        logEntry.setResponseMimeType(mimeType);
+        logEntry.setResponseInferredMimeType(mimeType);
+        logEntry.setStatus(Status.PROCESSED);
+        return logEntry;
+    }
+
+    private byte[] request(MimeType mimeType, int variant, int size) {
+        String headers = "GET /resource/" + variant + "?type=" + mimeType.name().toLowerCase(Locale.ROOT) + " HTTP/1.1\r\n"
+                + "Host: " + HOSTNAME + "\r\n"
+                + "User-Agent: Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36\r\n"
+                + "Accept: */*\r\n"
+                + "Cookie: session=" + Long.toHexString(random.nextLong()) + "\r\n\r\n";
+        return pad(headers, Math.max(size - headers.length(), 0), false);
+    }
+
+    private byte[] response(MimeType mimeType, int size) {
+        boolean binary = CollectorProjection.isBinary(mimeType);
+        String headers = "HTTP/1.1 200 OK\r\n"
+                + "Content-Type: " + contentType(mimeType) + "\r\n"
+                + "Content-Length: " + size + "\r\n"
+                + "Cache-Control: no-cache\r\n\r\n";
+        return pad(headers, size, binary);
+    }
+
+    /**
+     * Appends a body of the given size. Text bodies are made of random words so they compress like real
+     * markup rather than like a repeated pattern, binary bodies are random bytes.
+     */
+    private byte[] pad(String headers, int bodySize, boolean binary) {
+        byte[] head = headers.getBytes(StandardCharsets.US_ASCII);
+        byte[] message = new byte[head.length + bodySize];
+        System.arraycopy(head, 0, message, 0, head.length);
+        if (binary) {
+            byte[] body = new byte[bodySize];
+            random.nextBytes(body);
+            System.arraycopy(body, 0, message, head.length, bodySize);
+        } else {
+            StringBuilder body = new StringBuilder(bodySize + 16);
+            while (body.length() < bodySize) {
+                body.append(WORDS[random.nextInt(WORDS.length)]).append(random.nextInt(8) == 0 ? "\n" : " ");
+            }
+            System.arraycopy(body.toString().getBytes(StandardCharsets.US_ASCII), 0, message, head.length, bodySize);
+        }
+        return message;
+    }
+
+    private static String contentType(MimeType mimeType) {
+        switch (mimeType.name()) {
+            case "HTML": return "text/html; charset=utf-8";
+            case "JSON": return "application/json";
+            case "SCRIPT": return "application/javascript";
+            case "CSS": return "text/css";
+            case "IMAGE_PNG": return "image/png";
+            case "IMAGE_JPEG": return "image/jpeg";
+            default: return "application/octet-stream";
+        }
+    }
+
+    /**
+     * Parses a traffic mix such as "html=50,json=30,image=20". Types are Burp MIME type names,
+     * with "image" as shorthand for IMAGE_PNG.
+     */
+    private static Map<MimeType, Integer> parseMix(String mix) {
+        Map<MimeType, Integer> weights = new LinkedHashMap<>();
+        for (String part : mix.split(",")) {
+            String[] pair = part.trim().split("=");
+            String type = pair[0].trim().toUpperCase(Locale.ROOT);
+            if (type.equals("IMAGE")) type = "IMAGE_PNG";
+            weights.put(MimeType.valueOf(type), pair.length > 1 ? Integer.parseInt(pair[1].trim()) : 1);
+        }
+        return weights;
+    }
+
+    private int intOption(String name, int defaultValue) {
+        String value = options.get(name);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    private boolean booleanOption(String name, boolean defaultValue) {
+        String value = options.get(name);
+        return value != null ? Boolean.parseBoolean(value) : defaultValue;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Expected --name=value but found " + arg);
+            }
+            int separator = arg.indexOf('=');
+            if (separator < 0) {
+                options.put(arg.substring(2), "true");
+            } else {
+                options.put(arg.substring(2, separator), arg.substring(separator + 1));
+            }
+        }
+        return options;
+    }
+
+    private static class Result {
+        private final int entries;
+        private final long settled;
+        private final long submitNanos;
+        private final long totalNanos;
+        private final long allocatedBytes;
+        private final CollectorMetrics metrics;
+
+        Result(int entries, long settled, long submitNanos, long totalNanos, long allocatedBytes, CollectorMetrics metrics) {
+            this.entries = entries;
+            this.settled = settled;
+            this.submitNanos = submitNanos;
+            this.totalNanos = totalNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.metrics = metrics;
+        }
+
+        void print(Sink sink) {
+            double seconds = totalNanos / 1_000_000_000.0;
+            System.out.printf(Locale.ROOT, "Completed %,d of %,d entries in %.2f s (submitted in %.2f s)%n",
+                    settled, entries, seconds, submitNanos / 1_000_000_000.0);
+            if (settled < entries) {
+                System.out.println("WARNING: timed out before every entry was delivered");
+            }
+            System.out.printf(Locale.ROOT, "Throughput:      %,.0f entries/s%n", entries / seconds);
+            System.out.printf(Locale.ROOT, "Entries:         %,d sent, %,d refused, %,d failed%n",
+                    metrics.getEntriesSent(), metrics.getEntriesRefused(), metrics.getEntriesFailed());
+            System.out.printf(Locale.ROOT, "Requests:        %,d (%,d errors)%n", metrics.getRequests(), metrics.getRequestErrors());
+            System.out.printf(Locale.ROOT, "Queue latency:   %s%n", latency(metrics.getQueueLatency()));
+            System.out.printf(Locale.ROOT, "Request latency: %s%n", latency(metrics.getRequestLatency()));
+            System.out.printf(Locale.ROOT, "Payload bytes:   %,d (%,.0f per entry)%n",
+                    metrics.getPayloadBytes(), metrics.getPayloadBytes() / (double) entries);
+            System.out.printf(Locale.ROOT, "Wire bytes:      %,d (%,.0f per entry, %,.1f MB/s, sink received %,d)%n",
+                    metrics.getWireBytes(), metrics.getWireBytes() / (double) entries,
+                    metrics.getWireBytes() / seconds / (1024 * 1024), sink.getBytes());
+            System.out.printf(Locale.ROOT, "Allocated:       %,.1f MB (%,.0f bytes per entry, %,.1f MB/s)%n",
+                    allocatedBytes / (1024.0 * 1024), allocatedBytes / (double) entries,
+                    allocatedBytes / seconds / (1024 * 1024));
+        }
+
+        private static String latency(LatencyHistogram histogram) {
+            return String.format(Locale.ROOT, "p50 %.2f ms, p99 %.2f ms, max %.2f ms",
+                    histogram.getValueAtQuantile(0.5) / 1000.0,
+                    histogram.getValueAtQuantile(0.99) / 1000.0,
+                    histogram.getMax() / 1000.0);
+        }
+    }
+
+    /**
+     * Accepts collector requests on the loopback interface and discards them, optionally after a delay
+     * to simulate a slow backend.
+     */
+    private static class Sink {
+        private final HttpServer server;
+        private final int delayMs;
+        private final AtomicLong bytes = new AtomicLong();
+
+        Sink(int delayMs) throws IOException {
+            this.delayMs = delayMs;
+            this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 128);
+            server.createContext("/", this::handle);
+            server.setExecutor(Executors.newCachedThreadPool());
+            server.start();
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            long received = 0;
+            byte[] buffer = new byte[16384];
+            try (InputStream in = exchange.getRequestBody()) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    received += read;
+                }
+            }
+            bytes.addAndGet(received);
+            if (delayMs > 0) {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(delayMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        }
+
+        int getPort() {
+            return server.getAddress().getPort();
+        }
+
+        long getBytes() {
+            return bytes.get();
+        }
+
+        void reset() {
+            bytes.set(0);
+        }
+
+        void stop() {
+            server.stop(0);
+        }
+    }
+}
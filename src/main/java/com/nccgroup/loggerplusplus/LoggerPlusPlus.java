@@ -114,14 +114,15 @@ public class LoggerPlusPlus implements BurpExtension {
             logViewController.getRequestViewerController().getRequestViewerPanel().getPopoutFrame().dispose();
         }
 
-        //Stop log processor executors and pending tasks.
-        logProcessor.shutdown();
-        
-        //Shutdown collector
+        //Shutdown collector first, stopping the log processor interrupts its threads, which may be writing to the spool.
         if(collectorController != null) {
             collectorController.shutdown();
         }
 
+        //Stop log processor executors and pending tasks.
+        logProcessor.shutdown();
+        logViewController.getLogTableController().shutdown();
+
         menuBarRegistration.deregister();
 
         //Null out static variables so not leftover.
@@ -0,0 +1,148 @@
+package com.nccgroup.loggerplusplus.collector;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the number of requests in flight to a destination, adapting the limit to how the backend copes.
+ * The limit grows by one for each window's worth of fast, successful requests (additive increase),
+ * is halved when the backend signals overload with a 429, 502, 503 or 504 or fails to respond
+ * (multiplicative decrease), and is trimmed when latency climbs well above the baseline, so the
+ * collector backs off while the backend is queueing rather than only once it starts refusing requests.
+ * A Retry-After header pauses sending altogether until the requested time.
+ * The limit never goes above the configured concurrency, which is used as is when adaptation is disabled.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double OVERLOAD_DECREASE = 0.5;
+    private static final double LATENCY_DECREASE = 0.9;
+    //Requests slower than this multiple of the baseline latency are taken as a sign of queueing.
+    private static final double LATENCY_TOLERANCE = 2.0;
+    //The baseline is the fastest request over this window, so it can follow a backend which becomes slower for good.
+    private static final long BASELINE_WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final long MAX_RETRY_AFTER_MS = TimeUnit.MINUTES.toMillis(5);
+
+    private int maxLimit;
+    private boolean adaptive;
+    private double limit;
+    private int inFlight;
+    private long baselineNanos = Long.MAX_VALUE;
+    private long windowMinNanos = Long.MAX_VALUE;
+    private long windowStart = System.nanoTime();
+    private long lastDecrease;
+    private long pausedUntil;
+
+    public AdaptiveConcurrencyLimiter(int maxLimit, boolean adaptive) {
+        long now = System.nanoTime();
+        this.lastDecrease = now - Long.MAX_VALUE / 2;
+        this.pausedUntil = now;
+        configure(maxLimit, adaptive);
+    }
+
+    public synchronized void configure(int maxLimit, boolean adaptive) {
+        maxLimit = Math.max(maxLimit, 1);
+        if (!this.adaptive || limit > maxLimit) {
+            limit = maxLimit;
+        }
+        this.maxLimit = maxLimit;
+        this.adaptive = adaptive;
+        notifyAll();
+    }
+
+    /**
+     * Waits until a request may be sent.
+     */
+    public synchronized void acquire() throws InterruptedException {
+        while (true) {
+            long pause = pausedUntil - System.nanoTime();
+            if (adaptive && pause > 0) {
+                TimeUnit.NANOSECONDS.timedWait(this, pause);
+            } else if (inFlight >= getLimit()) {
+                wait();
+            } else {
+                break;
+            }
+        }
+        inFlight++;
+    }
+
+    /**
+     * Returns a permit and adapts the limit to the outcome of the request.
+     * @param response The response, or null if the request failed without one.
+     */
+    public synchronized void release(long elapsedNanos, CollectorResponse response) {
+        inFlight--;
+        if (adaptive) {
+            adapt(elapsedNanos, response);
+        }
+        notifyAll();
+    }
+
+    /**
+     * Returns a permit for a request which was never sent.
+     */
+    public synchronized void cancel() {
+        inFlight--;
+        notifyAll();
+    }
+
+    private void adapt(long elapsedNanos, CollectorResponse response) {
+        long now = System.nanoTime();
+        if (response == null || isOverload(response.getStatusCode())) {
+            if (response != null && response.getRetryAfterMs() > 0) {
+                long pause = TimeUnit.MILLISECONDS.toNanos(Math.min(response.getRetryAfterMs(), MAX_RETRY_AFTER_MS));
+                if (now + pause - pausedUntil > 0) pausedUntil = now + pause;
+            }
+            decrease(now, elapsedNanos, OVERLOAD_DECREASE);
+            return;
+        }
+        //Only successful responses say anything about how quickly the backend is processing entries.
+        if (response.getStatusCode() < 200 || response.getStatusCode() >= 300) return;
+
+        if (now - windowStart > BASELINE_WINDOW_NANOS && windowMinNanos != Long.MAX_VALUE) {
+            baselineNanos = windowMinNanos;
+            windowMinNanos = Long.MAX_VALUE;
+            windowStart = now;
+        }
+        windowMinNanos = Math.min(windowMinNanos, elapsedNanos);
+        baselineNanos = Math.min(baselineNanos, elapsedNanos);
+
+        if (elapsedNanos > baselineNanos * LATENCY_TOLERANCE) {
+            decrease(now, elapsedNanos, LATENCY_DECREASE);
+        } else {
+            limit = Math.min(limit + 1.0 / limit, maxLimit);
+        }
+    }
+
+    /**
+     * Decreases the limit at most once per round trip, as every request sent before the backend
+     * started struggling would otherwise cut the limit again.
+     */
+    private void decrease(long now, long elapsedNanos, double ratio) {
+        if (now - lastDecrease < elapsedNanos) return;
+        lastDecrease = now;
+        limit = Math.max(limit * ratio, 1);
+    }
+
+    private static boolean isOverload(int statusCode) {
+        return statusCode == 429 || statusCode == 502 || statusCode == 503 || statusCode == 504;
+    }
+
+    public synchronized int getLimit() {
+        return adaptive ? (int) limit : maxLimit;
+    }
+
+    public synchronized int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @return How long sending is paused for at the backend's request, in milliseconds.
+     */
+    public synchronized long getPausedMs() {
+        return adaptive ? Math.max(TimeUnit.NANOSECONDS.toMillis(pausedUntil - System.nanoTime()), 0) : 0;
+    }
+}
@@ -0,0 +1,22 @@
+package com.nccgroup.loggerplusplus.collector;
+
+/**
+ * Where a collector backfill reads the entries it sends from.
+ */
+public enum BackfillSource {
+    //Entries currently in the log table, sent oldest request first.
+    LOG_TABLE("Log Table"),
+    //Items in Burp's proxy history, sent in history order.
+    PROXY_HISTORY("Proxy History");
+
+    private final String label;
+
+    BackfillSource(String label) {
+        this.label = label;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
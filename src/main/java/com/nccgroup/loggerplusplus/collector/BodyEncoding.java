@@ -0,0 +1,24 @@
+package com.nccgroup.loggerplusplus.collector;
+
+/**
+ * How request and response bodies are represented in collector payloads.
+ */
+public enum BodyEncoding {
+    //Bodies are sent as JSON strings. Bytes which are not valid UTF-8 are replaced.
+    TEXT("Text"),
+    //Bodies are always sent base64 encoded.
+    BASE64("Base64"),
+    //Valid UTF-8 is sent as text, anything else is base64 encoded.
+    AUTO("Auto (base64 for binary)");
+
+    private final String label;
+
+    BodyEncoding(String label) {
+        this.label = label;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,135 @@
+package com.nccgroup.loggerplusplus.collector;
+
+import com.nccgroup.loggerplusplus.util.NamedThreadFactory;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Non-blocking HTTP client used to ship entries to the collector.
+ * Requests are sent with {@link HttpClient#sendAsync}, so no thread waits on a response and a few workers
+ * can keep many requests in flight to a distant backend. HTTP/2 is used where the backend supports it,
+ * multiplexing the requests over a single connection.
+ * The number of requests in flight is limited by a window, a permit is taken when a request is sent
+ * and returned when it completes.
+ */
+public class CollectorAsyncHttpClient {
+
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final String name;
+    private final WindowSemaphore window;
+    private int windowSize;
+    //Created when first needed, and again after the client is closed.
+    private ExecutorService executor;
+    private HttpClient httpClient;
+
+    public CollectorAsyncHttpClient(String name, int windowSize) {
+        this.name = name;
+        this.windowSize = Math.max(windowSize, 1);
+        this.window = new WindowSemaphore(this.windowSize);
+    }
+
+    /**
+     * Resizes the window. Shrinking it does not affect requests already in flight,
+     * new requests wait until enough of them have completed.
+     */
+    public synchronized void setWindowSize(int windowSize) {
+        windowSize = Math.max(windowSize, 1);
+        int change = windowSize - this.windowSize;
+        if (change > 0) {
+            window.release(change);
+        } else if (change < 0) {
+            window.reducePermits(-change);
+        }
+        this.windowSize = windowSize;
+    }
+
+    public synchronized int getWindowSize() {
+        return windowSize;
+    }
+
+    public int getInFlight() {
+        return Math.max(getWindowSize() - window.availablePermits(), 0);
+    }
+
+    /**
+     * POSTs the body once a slot in the window is free, blocking the caller until then.
+     * The slot is released when the request completes, before the returned future completes.
+     * @param headers Additional headers, such as the request signature.
+     * @return The response status, or a future completed exceptionally if the request failed.
+     */
+    public CompletableFuture<CollectorResponse> post(String url, String contentType, String contentEncoding,
+                                           Map<String, String> headers, byte[] body) throws InterruptedException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", contentType)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body));
+        if (contentEncoding != null) {
+            builder.header("Content-Encoding", contentEncoding);
+        }
+        headers.forEach(builder::header);
+        HttpRequest request = builder.build();
+
+        window.acquire();
+        try {
+            return client().sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .thenApply(response -> new CollectorResponse(response.statusCode(),
+                            response.headers().firstValue("Retry-After").orElse(null)))
+                    .whenComplete((responseCode, error) -> window.release());
+        } catch (RuntimeException e) {
+            window.release();
+            throw e;
+        }
+    }
+
+    private synchronized HttpClient client() {
+        if (httpClient == null) {
+            executor = Executors.newCachedThreadPool(new NamedThreadFactory("LPP-Collector-Async-" + name));
+            httpClient = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_2)
+                    .connectTimeout(CONNECT_TIMEOUT)
+                    .followRedirects(HttpClient.Redirect.NEVER)
+                    .executor(executor)
+                    .build();
+        }
+        return httpClient;
+    }
+
+    /**
+     * Releases the client. The HttpClient in Java 17 cannot be closed, so every reference to it is dropped
+     * and its selector thread is left to exit once the client has been garbage collected. The executor running
+     * its callbacks is shut down. Requests still in flight are abandoned, their futures may never complete.
+     * A new client is created if {@link #post} is called again.
+     */
+    public synchronized void close() {
+        httpClient = null;
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    /**
+     * Exposes {@link Semaphore#reducePermits(int)} so the window can shrink while requests hold permits.
+     */
+    private static class WindowSemaphore extends Semaphore {
+        WindowSemaphore(int permits) {
+            super(permits);
+        }
+
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+}
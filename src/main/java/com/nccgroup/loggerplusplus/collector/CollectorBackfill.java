@@ -0,0 +1,219 @@
+package com.nccgroup.loggerplusplus.collector;
+
+import burp.api.montoya.core.ToolType;
+import burp.api.montoya.proxy.ProxyHttpRequestResponse;
+import com.nccgroup.loggerplusplus.LoggerPlusPlus;
+import com.nccgroup.loggerplusplus.collector.CollectorEventLog.Level;
+import com.nccgroup.loggerplusplus.logentry.LogEntry;
+import com.nccgroup.loggerplusplus.logentry.Status;
+import com.nccgroup.loggerplusplus.util.NamedThreadFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends entries which were logged before the collector was enabled, from the log table or from Burp's proxy history.
+ * Entries are submitted in batches from a single background thread and go through the same filters and queues
+ * as live traffic. Batches are paced to the configured rate, and held back while any destination queue is
+ * more than half full, so live entries are never dropped to make room for old ones.
+ * A checkpoint is saved after every batch, so a cancelled backfill resumes after the last entry it submitted.
+ */
+public class CollectorBackfill {
+
+    private static final int BATCH_SIZE = 100;
+    private static final long HEADROOM_POLL_MS = 200;
+
+    private final CollectorController collectorController;
+    private final CollectorEventLog eventLog;
+    private final ExecutorService executor;
+
+    private volatile Future<?> job;
+    private volatile BackfillSource source;
+    private volatile int processed;
+    private volatile int total;
+    private long nextBatchNanos;
+
+    public CollectorBackfill(CollectorController collectorController) {
+        this.collectorController = collectorController;
+        this.eventLog = collectorController.getEventLog();
+        this.executor = Executors.newSingleThreadExecutor(new NamedThreadFactory("LPP-Collector-Backfill"));
+    }
+
+    /**
+     * Starts a backfill from the saved checkpoint of the source.
+     * @return false if a backfill is already running.
+     */
+    public synchronized boolean start(BackfillSource source, int entriesPerSecond) {
+        if (isRunning()) return false;
+        this.source = source;
+        this.processed = 0;
+        this.total = 0;
+        this.job = executor.submit(() -> run(source, Math.max(entriesPerSecond, 1)));
+        return true;
+    }
+
+    /**
+     * Stops the running backfill after its current batch. The checkpoint is kept, so starting again resumes.
+     */
+    public void cancel() {
+        Future<?> job = this.job;
+        if (job != null) job.cancel(true);
+    }
+
+    public boolean isRunning() {
+        Future<?> job = this.job;
+        return job != null && !job.isDone();
+    }
+
+    public BackfillSource getSource() {
+        return source;
+    }
+
+    /**
+     * @return How many entries of the current or last backfill have been read, whether or not they passed the filters.
+     */
+    public int getProcessed() {
+        return processed;
+    }
+
+    /**
+     * @return How many entries the current or last backfill had left to send when it started.
+     */
+    public int getTotal() {
+        return total;
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run(BackfillSource source, int entriesPerSecond) {
+        nextBatchNanos = System.nanoTime();
+        try {
+            if (source == BackfillSource.PROXY_HISTORY) {
+                backfillProxyHistory(entriesPerSecond);
+            } else {
+                backfillLogTable(entriesPerSecond);
+            }
+        } catch (InterruptedException e) {
+            eventLog.log(Level.INFO, "Backfill from " + source + " cancelled after " + processed + " of " + total + " entries, starting it again will resume from the checkpoint.");
+        } catch (RuntimeException e) {
+            eventLog.log(Level.ERROR, "Backfill from " + source + " failed after " + processed + " of " + total + " entries: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Log table entries are sent in request time order, and the checkpoint is the request time of the last
+     * entry submitted. The table is a rolling window, so positions in it cannot be used to resume.
+     */
+    private void backfillLogTable(int entriesPerSecond) throws InterruptedException {
+        long checkpoint = collectorController.getBackfillCheckpoint(BackfillSource.LOG_TABLE);
+        List<LogEntry> entries = new ArrayList<>();
+        for (LogEntry logEntry : LoggerPlusPlus.instance.getLogViewController().getLogTableController().getLogTableModel().getSnapshot()) {
+            if (logEntry.getStatus() == Status.PROCESSED && logEntry.getRequestDateTime().getTime() > checkpoint) {
+                entries.add(logEntry);
+            }
+        }
+        //The sort is stable, so entries with the same request time stay in table order.
+        entries.sort(Comparator.comparing(LogEntry::getRequestDateTime));
+        total = entries.size();
+        eventLog.log(Level.INFO, "Backfill from " + source + " started, " + total + " entries to send.");
+
+        int start = 0;
+        while (start < entries.size()) {
+            int end = Math.min(start + BATCH_SIZE, entries.size());
+            //Never split entries with the same request time across batches, the checkpoint could not tell them apart.
+            long lastTime = entries.get(end - 1).getRequestDateTime().getTime();
+            while (end < entries.size() && entries.get(end).getRequestDateTime().getTime() == lastTime) end++;
+
+            if (!awaitBatch(end - start, entriesPerSecond)) return;
+            for (LogEntry logEntry : entries.subList(start, end)) {
+                collectorController.submit(logEntry);
+            }
+            processed = end;
+            collectorController.setBackfillCheckpoint(BackfillSource.LOG_TABLE, lastTime);
+            start = end;
+        }
+        eventLog.log(Level.INFO, "Backfill from " + source + " complete, " + processed + " entries submitted.");
+    }
+
+    /**
+     * Proxy history only ever grows within a project, so the checkpoint is the number of history items already read.
+     * It never moves past an item still waiting for its response, so that item is sent by a later backfill.
+     * Anything after it is sent again at the same time, entries are delivered at least once.
+     */
+    private void backfillProxyHistory(int entriesPerSecond) throws InterruptedException {
+        List<ProxyHttpRequestResponse> history = LoggerPlusPlus.montoya.proxy().history();
+        int checkpoint = (int) collectorController.getBackfillCheckpoint(BackfillSource.PROXY_HISTORY);
+        if (checkpoint > history.size()) {
+            eventLog.log(Level.INFO, "Proxy history is shorter than the backfill checkpoint, it may have been cleared. Sending it from the start.");
+            checkpoint = 0;
+        }
+        total = history.size() - checkpoint;
+        eventLog.log(Level.INFO, "Backfill from " + source + " started, " + total + " entries to send.");
+
+        int firstAwaitingResponse = -1;
+        for (int start = checkpoint; start < history.size(); start += BATCH_SIZE) {
+            int end = Math.min(start + BATCH_SIZE, history.size());
+            if (!awaitBatch(end - start, entriesPerSecond)) return;
+            for (int i = start; i < end; i++) {
+                ProxyHttpRequestResponse item = history.get(i);
+                //Items still waiting for a response are skipped, as they are for live traffic.
+                if (item.originalResponse() == null) {
+                    if (firstAwaitingResponse < 0) firstAwaitingResponse = i;
+                    continue;
+                }
+                LogEntry logEntry = new LogEntry(ToolType.PROXY, item.finalRequest(), item.originalResponse());
+                if (logEntry.process()) {
+                    collectorController.submit(logEntry);
+                }
+            }
+            processed = end - checkpoint;
+            collectorController.setBackfillCheckpoint(BackfillSource.PROXY_HISTORY, firstAwaitingResponse < 0 ? end : firstAwaitingResponse);
+        }
+        eventLog.log(Level.INFO, "Backfill from " + source + " complete, " + processed + " entries submitted.");
+        if (firstAwaitingResponse >= 0) {
+            eventLog.log(Level.INFO, "Proxy history item " + firstAwaitingResponse + " was still waiting for its response, the next backfill will resume from it.");
+        }
+    }
+
+    /**
+     * Waits until the next batch may be sent.
+     * @return false if the collector has been disabled, in which case the backfill stops without moving the checkpoint.
+     */
+    private boolean awaitBatch(int batchSize, int entriesPerSecond) throws InterruptedException {
+        if (Thread.interrupted()) throw new InterruptedException();
+        while (!hasHeadroom()) {
+            Thread.sleep(HEADROOM_POLL_MS);
+        }
+        if (!collectorController.isEnabled()) {
+            eventLog.log(Level.WARN, "Backfill from " + source + " stopped after " + processed + " of " + total + " entries, the collector has been disabled.");
+            return false;
+        }
+
+        //Time spent waiting for headroom is not banked, otherwise the following batches would be sent in a burst.
+        long now = System.nanoTime();
+        nextBatchNanos = Math.max(nextBatchNanos, now);
+        TimeUnit.NANOSECONDS.sleep(nextBatchNanos - now);
+        nextBatchNanos += batchSize * TimeUnit.SECONDS.toNanos(1) / entriesPerSecond;
+        return true;
+    }
+
+    /**
+     * @return true if every destination queue is less than half full, leaving the rest for live traffic.
+     */
+    private boolean hasHeadroom() {
+        for (CollectorDispatcher dispatcher : collectorController.getDispatchers()) {
+            CollectorQueue queue = dispatcher.getQueue();
+            if (queue.size() * 2L >= queue.getCapacity() || queue.sizeInBytes() * 2 >= queue.getByteCapacity()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -1,18 +1,33 @@
 package com.nccgroup.loggerplusplus.collector;
 
 import com.coreyd97.BurpExtenderUtilities.Preferences;
+import com.google.gson.reflect.TypeToken;
 import com.nccgroup.loggerplusplus.LoggerPlusPlus;
+import com.nccgroup.loggerplusplus.collector.CollectorEventLog.Level;
+import com.nccgroup.loggerplusplus.filter.FilterExpression;
+import com.nccgroup.loggerplusplus.filter.parser.ParseException;
 import com.nccgroup.loggerplusplus.logentry.LogEntry;
+import com.nccgroup.loggerplusplus.logentry.LogEntryField;
+import com.nccgroup.loggerplusplus.util.NamedThreadFactory;
 
 import java.io.IOException;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 public class CollectorController {
 
@@ -26,16 +41,75 @@ public class CollectorController {
     private static final String PREF_COLLECTOR_FILTER_STATIC_RESOURCES = "collector.filterStaticResources";
     private static final String PREF_COLLECTOR_FILTER_STATUS_CODES = "collector.filterStatusCodes";
     private static final String PREF_COLLECTOR_ALLOWED_STATUS_CODES = "collector.allowedStatusCodes";
+    private static final String PREF_COLLECTOR_BULK_ENABLED = "collector.bulkEnabled";
+    private static final String PREF_COLLECTOR_BATCH_SIZE = "collector.batchSize";
+    private static final String PREF_COLLECTOR_BATCH_LINGER_MS = "collector.batchLingerMs";
+    private static final String PREF_COLLECTOR_MAX_CONNECTIONS = "collector.maxConnectionsPerRoute";
+    private static final String PREF_COLLECTOR_TRANSPORT = "collector.transport";
+    private static final String PREF_COLLECTOR_ASYNC_WINDOW = "collector.asyncWindow";
+    private static final String PREF_COLLECTOR_ADAPTIVE_CONCURRENCY = "collector.adaptiveConcurrency";
+    private static final String PREF_COLLECTOR_MAX_IN_FLIGHT = "collector.maxInFlightRequests";
+    private static final String PREF_COLLECTOR_QUEUE_CAPACITY = "collector.queueCapacity";
+    private static final String PREF_COLLECTOR_QUEUE_CAPACITY_MB = "collector.queueCapacityMb";
+    private static final String PREF_COLLECTOR_OVERFLOW_POLICY = "collector.overflowPolicy";
+    private static final String PREF_COLLECTOR_BODY_ENCODING = "collector.bodyEncoding";
+    private static final String PREF_COLLECTOR_WIRE_FORMAT = "collector.wireFormat";
+    private static final String PREF_COLLECTOR_SPOOL_ENABLED = "collector.spoolEnabled";
+    private static final String PREF_COLLECTOR_SPOOL_MAX_MB = "collector.spoolMaxMb";
+    private static final String PREF_COLLECTOR_SPOOL_DIRECTORY = "collector.spoolDirectory";
+    private static final String PREF_COLLECTOR_METRICS_PORT = "collector.metricsPort";
+    private static final String PREF_COLLECTOR_FILTER = "collector.filter";
+    private static final String PREF_COLLECTOR_DEDUP_MODE = "collector.dedupMode";
+    private static final String PREF_COLLECTOR_DEDUP_WINDOW = "collector.dedupWindow";
+    private static final String PREF_COLLECTOR_FIELDS = "collector.fields";
+    private static final String PREF_COLLECTOR_BODY_CAPS = "collector.bodyCaps";
+    private static final String PREF_COLLECTOR_STRIP_BINARY = "collector.stripBinary";
+    private static final String PREF_COLLECTOR_MAX_RETRIES = "collector.maxRetries";
+    private static final String PREF_COLLECTOR_DESTINATIONS = "collector.destinations";
+    private static final String PREF_COLLECTOR_BACKFILL_SOURCE = "collector.backfillSource";
+    private static final String PREF_COLLECTOR_BACKFILL_RATE = "collector.backfillRate";
+    private static final String PREF_COLLECTOR_BACKFILL_TABLE_CHECKPOINT = "collector.backfillTableCheckpoint";
+    private static final String PREF_COLLECTOR_BACKFILL_PROXY_CHECKPOINT = "collector.backfillProxyCheckpoint";
+
+    /**
+     * Name of the destination configured by the main collector settings. Its spool lives directly in the
+     * spool directory, additional destinations each have a subdirectory.
+     */
+    static final String PRIMARY_DESTINATION = "default";
+
+    private static final Set<String> STATIC_EXTENSIONS = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+    static {
+        STATIC_EXTENSIONS.addAll(Arrays.asList("css", "js", "png", "jpg", "jpeg", "gif", "svg", "woff", "woff2", "ttf", "eot"));
+    }
+
+    private static final String RECV_PATH = "/recv";
+    private static final long SHUTDOWN_DRAIN_MS = 5000;
+    //How long past the drain deadline to wait for removed destinations which are still stopping.
+    private static final long RETIRE_WAIT_MS = 2000;
 
     private final Preferences preferences;
     private CollectorTab collectorTab;
-    private final ExecutorService executorService;
+    private final CollectorEventLog eventLog = new CollectorEventLog();
+    private final CollectorMetrics metrics = new CollectorMetrics();
+    private final CollectorMetricsServer metricsServer = new CollectorMetricsServer(this);
+    private volatile List<CollectorDispatcher> dispatchers = Collections.emptyList();
+    //Removed destinations are stopped in the background, as stopping a dispatcher takes up to a few seconds
+    //and destinations are applied from the settings tab on the event dispatch thread.
+    private final ExecutorService retiredDispatchers = Executors.newSingleThreadExecutor(new NamedThreadFactory("LPP-Collector-Retire"));
+    private final Map<String, Future<?>> retiring = new ConcurrentHashMap<>();
+    private final CollectorStage stage;
+    private final CollectorBackfill backfill;
 
     private boolean enabled;
-    private String serverUrl;
+    private CollectorDestination primaryDestination;
+    private List<CollectorDestination> destinations;
     private String subsystemName;
     private Set<String> domainWhitelist;
+    private DomainWhitelistMatcher whitelistMatcher;
     private String secretKey;
+    private volatile CollectorSigner signer;
+    private BodyEncoding bodyEncoding;
+    private WireFormat wireFormat;
     
     // Filter settings
     private boolean filterEmptyResponse;
@@ -43,10 +117,45 @@ public class CollectorController {
     private boolean filterStatusCodes;
     private Set<Integer> allowedStatusCodes;
 
+    // Connection settings
+    private int maxConnectionsPerRoute;
+    private CollectorTransport transport;
+    private int asyncWindow;
+    private boolean adaptiveConcurrency;
+
+    // Spool settings
+    private boolean spoolEnabled;
+    private int spoolMaxMb;
+    private String spoolDirectory;
+
+    // Metrics settings
+    private int metricsPort;
+
+    private String filterString;
+    private volatile CollectorFilter collectorFilter;
+
+    // Deduplication settings
+    private DedupMode dedupMode;
+    private int dedupWindow;
+    private volatile CollectorDeduplicator deduplicator;
+
+    // Payload settings
+    private List<LogEntryField> fields;
+    private String bodyCaps;
+    private boolean stripBinary;
+    private volatile CollectorProjection projection;
+
+    // Backfill settings
+    private BackfillSource backfillSource;
+    private int backfillRate;
+
     public CollectorController(Preferences preferences) {
         this.preferences = preferences;
-        this.executorService = Executors.newSingleThreadExecutor();
         initialize();
+        applyDestinations();
+        this.stage = new CollectorStage(this);
+        this.backfill = new CollectorBackfill(this);
+        this.metricsServer.setPort(metricsPort);
     }
 
     public void initialize() {
@@ -63,12 +172,63 @@ public class CollectorController {
         preferences.registerSetting(PREF_COLLECTOR_FILTER_STATUS_CODES, Boolean.class, true);
         preferences.registerSetting(PREF_COLLECTOR_ALLOWED_STATUS_CODES, Integer[].class, new Integer[]{200});
 
+        // Register bulk upload settings
+        preferences.registerSetting(PREF_COLLECTOR_BULK_ENABLED, Boolean.class, false);
+        preferences.registerSetting(PREF_COLLECTOR_BATCH_SIZE, Integer.class, 500);
+        preferences.registerSetting(PREF_COLLECTOR_BATCH_LINGER_MS, Integer.class, 250);
+
+        // Register connection settings
+        preferences.registerSetting(PREF_COLLECTOR_MAX_CONNECTIONS, Integer.class, 4);
+        preferences.registerSetting(PREF_COLLECTOR_MAX_IN_FLIGHT, Integer.class, 4);
+        preferences.registerSetting(PREF_COLLECTOR_TRANSPORT, CollectorTransport.class, CollectorTransport.BLOCKING);
+        preferences.registerSetting(PREF_COLLECTOR_ASYNC_WINDOW, Integer.class, 256);
+        preferences.registerSetting(PREF_COLLECTOR_ADAPTIVE_CONCURRENCY, Boolean.class, true);
+
+        // Register queue settings
+        preferences.registerSetting(PREF_COLLECTOR_QUEUE_CAPACITY, Integer.class, 10000);
+        preferences.registerSetting(PREF_COLLECTOR_QUEUE_CAPACITY_MB, Integer.class, 256);
+        preferences.registerSetting(PREF_COLLECTOR_OVERFLOW_POLICY, OverflowPolicy.class, OverflowPolicy.DROP_OLDEST);
+
+        preferences.registerSetting(PREF_COLLECTOR_BODY_ENCODING, BodyEncoding.class, BodyEncoding.TEXT);
+        preferences.registerSetting(PREF_COLLECTOR_WIRE_FORMAT, WireFormat.class, WireFormat.JSON);
+
+        // Register spool settings
+        preferences.registerSetting(PREF_COLLECTOR_SPOOL_ENABLED, Boolean.class, false);
+        preferences.registerSetting(PREF_COLLECTOR_SPOOL_MAX_MB, Integer.class, 1024);
+        preferences.registerSetting(PREF_COLLECTOR_SPOOL_DIRECTORY, String.class,
+                Paths.get(System.getProperty("user.home"), ".loggerplusplus", "collector-spool").toString());
+
+        // Register metrics settings
+        preferences.registerSetting(PREF_COLLECTOR_METRICS_PORT, Integer.class, 0);
+
+        preferences.registerSetting(PREF_COLLECTOR_FILTER, String.class, "");
+
+        // Register deduplication settings
+        preferences.registerSetting(PREF_COLLECTOR_DEDUP_MODE, DedupMode.class, DedupMode.OFF);
+        preferences.registerSetting(PREF_COLLECTOR_DEDUP_WINDOW, Integer.class, 100000);
+
+        // Register payload settings
+        preferences.registerSetting(PREF_COLLECTOR_FIELDS, new TypeToken<List<LogEntryField>>(){}.getType(), new ArrayList<LogEntryField>());
+        preferences.registerSetting(PREF_COLLECTOR_BODY_CAPS, String.class, "");
+        preferences.registerSetting(PREF_COLLECTOR_STRIP_BINARY, Boolean.class, false);
+
+        // Register destination settings
+        preferences.registerSetting(PREF_COLLECTOR_MAX_RETRIES, Integer.class, 0);
+        preferences.registerSetting(PREF_COLLECTOR_DESTINATIONS, new TypeToken<List<CollectorDestination>>(){}.getType(), new ArrayList<CollectorDestination>());
+
+        // Register backfill settings
+        preferences.registerSetting(PREF_COLLECTOR_BACKFILL_SOURCE, BackfillSource.class, BackfillSource.LOG_TABLE);
+        preferences.registerSetting(PREF_COLLECTOR_BACKFILL_RATE, Integer.class, 200);
+        preferences.registerSetting(PREF_COLLECTOR_BACKFILL_TABLE_CHECKPOINT, Long.class, 0L);
+        preferences.registerSetting(PREF_COLLECTOR_BACKFILL_PROXY_CHECKPOINT, Integer.class, 0);
+
         loadPreferences();
     }
 
     private void loadPreferences() {
         this.enabled = preferences.getSetting(PREF_COLLECTOR_ENABLED);
-        this.serverUrl = preferences.getSetting(PREF_COLLECTOR_SERVER_URL);
+        this.primaryDestination = new CollectorDestination(PRIMARY_DESTINATION);
+        primaryDestination.setServerUrl(preferences.getSetting(PREF_COLLECTOR_SERVER_URL));
         this.subsystemName = preferences.getSetting(PREF_COLLECTOR_SUBSYSTEM_NAME);
         
         String[] whitelistArray = preferences.getSetting(PREF_COLLECTOR_DOMAIN_WHITELIST);
@@ -78,8 +238,9 @@ public class CollectorController {
                 this.domainWhitelist.add(domain);
             }
         }
+        this.whitelistMatcher = new DomainWhitelistMatcher(this.domainWhitelist);
         
-        this.secretKey = preferences.getSetting(PREF_COLLECTOR_SECRET_KEY);
+        setSecretKey(preferences.getSetting(PREF_COLLECTOR_SECRET_KEY));
         
         // Load filter settings
         this.filterEmptyResponse = preferences.getSetting(PREF_COLLECTOR_FILTER_EMPTY_RESPONSE);
@@ -93,11 +254,83 @@ public class CollectorController {
                 this.allowedStatusCodes.add(statusCode);
             }
         }
+
+        // Load bulk upload settings
+        primaryDestination.setBulkEnabled(preferences.getSetting(PREF_COLLECTOR_BULK_ENABLED));
+        primaryDestination.setBatchSize(preferences.getSetting(PREF_COLLECTOR_BATCH_SIZE));
+        primaryDestination.setBatchLingerMs(preferences.getSetting(PREF_COLLECTOR_BATCH_LINGER_MS));
+
+        // Load connection settings
+        this.maxConnectionsPerRoute = preferences.getSetting(PREF_COLLECTOR_MAX_CONNECTIONS);
+        primaryDestination.setMaxInFlightRequests(preferences.getSetting(PREF_COLLECTOR_MAX_IN_FLIGHT));
+        this.transport = preferences.getSetting(PREF_COLLECTOR_TRANSPORT);
+        this.asyncWindow = preferences.getSetting(PREF_COLLECTOR_ASYNC_WINDOW);
+        this.adaptiveConcurrency = preferences.getSetting(PREF_COLLECTOR_ADAPTIVE_CONCURRENCY);
+
+        // Load queue settings
+        primaryDestination.setQueueCapacity(preferences.getSetting(PREF_COLLECTOR_QUEUE_CAPACITY));
+        primaryDestination.setQueueCapacityMb(preferences.getSetting(PREF_COLLECTOR_QUEUE_CAPACITY_MB));
+        primaryDestination.setOverflowPolicy(preferences.getSetting(PREF_COLLECTOR_OVERFLOW_POLICY));
+
+        this.bodyEncoding = preferences.getSetting(PREF_COLLECTOR_BODY_ENCODING);
+        this.wireFormat = preferences.getSetting(PREF_COLLECTOR_WIRE_FORMAT);
+
+        // Load spool settings
+        this.spoolEnabled = preferences.getSetting(PREF_COLLECTOR_SPOOL_ENABLED);
+        this.spoolMaxMb = preferences.getSetting(PREF_COLLECTOR_SPOOL_MAX_MB);
+        this.spoolDirectory = preferences.getSetting(PREF_COLLECTOR_SPOOL_DIRECTORY);
+
+        // Load metrics settings
+        this.metricsPort = preferences.getSetting(PREF_COLLECTOR_METRICS_PORT);
+
+        this.filterString = preferences.getSetting(PREF_COLLECTOR_FILTER);
+        try {
+            setFilterString(filterString);
+        } catch (ParseException e) {
+            eventLog.log(Level.ERROR, "The collector filter is invalid and will be ignored: " + e.getMessage());
+        }
+
+        // Load deduplication settings
+        this.dedupMode = preferences.getSetting(PREF_COLLECTOR_DEDUP_MODE);
+        this.dedupWindow = preferences.getSetting(PREF_COLLECTOR_DEDUP_WINDOW);
+        this.deduplicator = new CollectorDeduplicator(dedupWindow);
+
+        // Load payload settings
+        this.fields = preferences.getSetting(PREF_COLLECTOR_FIELDS);
+        if (this.fields == null) this.fields = new ArrayList<>();
+        this.bodyCaps = preferences.getSetting(PREF_COLLECTOR_BODY_CAPS);
+        this.stripBinary = preferences.getSetting(PREF_COLLECTOR_STRIP_BINARY);
+        try {
+            setBodyCaps(bodyCaps);
+        } catch (IllegalArgumentException e) {
+            eventLog.log(Level.ERROR, "The collector body caps are invalid and will be ignored: " + e.getMessage());
+            setBodyCaps("");
+        }
+
+        // Load destination settings
+        primaryDestination.setMaxRetries(preferences.getSetting(PREF_COLLECTOR_MAX_RETRIES));
+        List<CollectorDestination> storedDestinations = preferences.getSetting(PREF_COLLECTOR_DESTINATIONS);
+        this.destinations = new ArrayList<>();
+        if (storedDestinations != null) {
+            for (CollectorDestination destination : storedDestinations) {
+                try {
+                    destination.compileFilter();
+                } catch (ParseException e) {
+                    eventLog.log(Level.ERROR, "The filter for destination " + destination.getName() + " is invalid, the destination has been disabled: " + e.getMessage());
+                    destination.setEnabled(false);
+                }
+                this.destinations.add(destination);
+            }
+        }
+
+        // Load backfill settings
+        this.backfillSource = preferences.getSetting(PREF_COLLECTOR_BACKFILL_SOURCE);
+        this.backfillRate = preferences.getSetting(PREF_COLLECTOR_BACKFILL_RATE);
     }
 
     public void savePreferences() {
         preferences.setSetting(PREF_COLLECTOR_ENABLED, this.enabled);
-        preferences.setSetting(PREF_COLLECTOR_SERVER_URL, this.serverUrl);
+        preferences.setSetting(PREF_COLLECTOR_SERVER_URL, primaryDestination.getServerUrl());
         preferences.setSetting(PREF_COLLECTOR_SUBSYSTEM_NAME, this.subsystemName);
         preferences.setSetting(PREF_COLLECTOR_DOMAIN_WHITELIST, this.domainWhitelist.toArray(new String[0]));
         preferences.setSetting(PREF_COLLECTOR_SECRET_KEY, this.secretKey);
@@ -107,94 +340,304 @@ public class CollectorController {
         preferences.setSetting(PREF_COLLECTOR_FILTER_STATIC_RESOURCES, this.filterStaticResources);
         preferences.setSetting(PREF_COLLECTOR_FILTER_STATUS_CODES, this.filterStatusCodes);
         preferences.setSetting(PREF_COLLECTOR_ALLOWED_STATUS_CODES, this.allowedStatusCodes.toArray(new Integer[0]));
+
+        // Save bulk upload settings
+        preferences.setSetting(PREF_COLLECTOR_BULK_ENABLED, primaryDestination.isBulkEnabled());
+        preferences.setSetting(PREF_COLLECTOR_BATCH_SIZE, primaryDestination.getBatchSize());
+        preferences.setSetting(PREF_COLLECTOR_BATCH_LINGER_MS, primaryDestination.getBatchLingerMs());
+
+        // Save connection settings
+        preferences.setSetting(PREF_COLLECTOR_MAX_CONNECTIONS, this.maxConnectionsPerRoute);
+        preferences.setSetting(PREF_COLLECTOR_MAX_IN_FLIGHT, primaryDestination.getMaxInFlightRequests());
+        preferences.setSetting(PREF_COLLECTOR_TRANSPORT, this.transport);
+        preferences.setSetting(PREF_COLLECTOR_ASYNC_WINDOW, this.asyncWindow);
+        preferences.setSetting(PREF_COLLECTOR_ADAPTIVE_CONCURRENCY, this.adaptiveConcurrency);
+
+        // Save queue settings
+        preferences.setSetting(PREF_COLLECTOR_QUEUE_CAPACITY, primaryDestination.getQueueCapacity());
+        preferences.setSetting(PREF_COLLECTOR_QUEUE_CAPACITY_MB, primaryDestination.getQueueCapacityMb());
+        preferences.setSetting(PREF_COLLECTOR_OVERFLOW_POLICY, primaryDestination.getOverflowPolicy());
+
+        preferences.setSetting(PREF_COLLECTOR_BODY_ENCODING, this.bodyEncoding);
+        preferences.setSetting(PREF_COLLECTOR_WIRE_FORMAT, this.wireFormat);
+
+        // Save spool settings
+        preferences.setSetting(PREF_COLLECTOR_SPOOL_ENABLED, this.spoolEnabled);
+        preferences.setSetting(PREF_COLLECTOR_SPOOL_MAX_MB, this.spoolMaxMb);
+        preferences.setSetting(PREF_COLLECTOR_SPOOL_DIRECTORY, this.spoolDirectory);
+
+        // Save metrics settings
+        preferences.setSetting(PREF_COLLECTOR_METRICS_PORT, this.metricsPort);
+
+        preferences.setSetting(PREF_COLLECTOR_FILTER, this.filterString);
+
+        // Save deduplication settings
+        preferences.setSetting(PREF_COLLECTOR_DEDUP_MODE, this.dedupMode);
+        preferences.setSetting(PREF_COLLECTOR_DEDUP_WINDOW, this.dedupWindow);
+        if (deduplicator.getCapacity() != dedupWindow) {
+            deduplicator = new CollectorDeduplicator(dedupWindow);
+        }
+
+        // Save payload settings
+        preferences.setSetting(PREF_COLLECTOR_FIELDS, this.fields);
+        preferences.setSetting(PREF_COLLECTOR_BODY_CAPS, this.bodyCaps);
+        preferences.setSetting(PREF_COLLECTOR_STRIP_BINARY, this.stripBinary);
+
+        // Save destination settings
+        preferences.setSetting(PREF_COLLECTOR_MAX_RETRIES, primaryDestination.getMaxRetries());
+        preferences.setSetting(PREF_COLLECTOR_DESTINATIONS, this.destinations);
+
+        // Save backfill settings
+        preferences.setSetting(PREF_COLLECTOR_BACKFILL_SOURCE, this.backfillSource);
+        preferences.setSetting(PREF_COLLECTOR_BACKFILL_RATE, this.backfillRate);
+
+        applyDestinations();
+        metricsServer.setPort(metricsPort);
     }
 
     public void setCollectorTab(CollectorTab collectorTab) {
         this.collectorTab = collectorTab;
     }
 
-    public void sendToCollector(LogEntry logEntry) {
-        if (!enabled || serverUrl == null || serverUrl.isEmpty()) {
-            return;
+    /**
+     * Hands a completed entry to the collector pipeline. Safe to call more than once for the same entry,
+     * it will only be sent once.
+     */
+    public void submit(LogEntry logEntry) {
+        stage.submit(logEntry);
+    }
+
+    /**
+     * Decides whether a completed entry should be sent. Called on the thread which processed the entry,
+     * so filtered entries never reach the collector threads.
+     */
+    boolean shouldCollect(LogEntry logEntry) {
+        if (!enabled || dispatchers.isEmpty()) {
+            return false;
         }
 
         // Check if host is in whitelist
         String host = logEntry.getHostname();
         if (host == null || !isHostInWhitelist(host)) {
-            return;
+            eventLog.count(Level.DEBUG, "filtered: host not whitelisted");
+            return false;
         }
         
         // Apply filters
-        if (!shouldSendLogEntry(logEntry)) {
-            return;
-        }
+        return shouldSendLogEntry(logEntry);
+    }
 
-        // Send asynchronously to avoid blocking UI
-        executorService.submit(() -> {
-            try {
-                // Create JSON payload
-                String requestStr = new String(logEntry.getRequestBytes(), StandardCharsets.UTF_8);
-                String responseStr = logEntry.getResponseBytes() != null ? 
-                        new String(logEntry.getResponseBytes(), StandardCharsets.UTF_8) : "";
-                
-                String jsonPayload = String.format(
-                        "{\"subsystem\": \"%s\", \"host\": \"%s\", \"request\": \"%s\", \"response\": \"%s\", \"secret\": \"%s\"}",
-                        escapeJson(subsystemName),
-                        escapeJson(host),
-                        escapeJson(requestStr),
-                        escapeJson(responseStr),
-                        escapeJson(secretKey)
-                );
-
-                // Send HTTP POST request
-                URL url = new URL(serverUrl);
-                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-                connection.setRequestMethod("POST");
-                connection.setRequestProperty("Content-Type", "application/json");
-                connection.setDoOutput(true);
-
-                try (OutputStream os = connection.getOutputStream()) {
-                    byte[] input = jsonPayload.getBytes(StandardCharsets.UTF_8);
-                    os.write(input, 0, input.length);
-                }
+    void sendToCollector(LogEntry logEntry) {
+        String host = logEntry.getHostname();
+        byte[] requestBytes = logEntry.getRequestBytes();
+        byte[] responseBytes = logEntry.getResponseBytes();
 
-                int responseCode = connection.getResponseCode();
-                if (responseCode >= 200 && responseCode < 300) {
-                    logMessage("Successfully sent data to collector for host: " + host);
+        // Create JSON payload, or a reference record if the same content was sent recently
+        CollectorDeduplicator deduplicator = dedupMode != DedupMode.OFF ? this.deduplicator : null;
+        long hash = 0;
+        byte[] payload;
+        try {
+            String contentHash = null;
+            if (deduplicator != null) {
+                hash = CollectorDeduplicator.hash(logEntry.getMethod(), logEntry.getUrlString(),
+                        requestBytes, CollectorProjection.bodyOffset(logEntry.getRequest() != null ? logEntry.getRequest().bodyOffset() : 0, requestBytes),
+                        responseBytes, CollectorProjection.bodyOffset(logEntry.getResponse() != null ? logEntry.getResponse().bodyOffset() : 0, responseBytes));
+                contentHash = String.format("%016x", hash);
+                int seenCount = deduplicator.count(hash);
+                if (seenCount > 0) {
+                    metrics.recordDuplicate();
+                    if (dedupMode == DedupMode.SKIP) {
+                        eventLog.count(Level.INFO, "skipped: duplicate content");
+                        return;
+                    }
+                    eventLog.count(Level.INFO, "sent as reference: duplicate content");
+                    payload = CollectorPayloadWriter.writeReference(subsystemName, host, logEntry.getMethod(),
+                            logEntry.getUrlString(), contentHash, seenCount, wireFormat);
                 } else {
-                    logMessage("Failed to send data to collector. Response code: " + responseCode);
+                    payload = CollectorPayloadWriter.write(subsystemName, host, logEntry, requestBytes, responseBytes,
+                            projection, bodyEncoding, wireFormat, contentHash);
                 }
-            } catch (Exception e) {
-                logMessage("Error sending data to collector: " + e.getMessage());
+            } else {
+                payload = CollectorPayloadWriter.write(subsystemName, host, logEntry, requestBytes, responseBytes,
+                        projection, bodyEncoding, wireFormat, null);
             }
-        });
+        } catch (IOException e) {
+            eventLog.log(Level.ERROR, "Could not encode entry for host: " + host + ": " + e.getMessage());
+            return;
+        }
+
+        // Content only counts as seen once every destination has queued it, otherwise a later duplicate
+        // could be skipped or sent as a reference to content a destination never received
+        if (fanOut(logEntry, host, payload) && deduplicator != null) {
+            deduplicator.recordAndCount(hash);
+        }
     }
 
-    private boolean isHostInWhitelist(String host) {
-        if (domainWhitelist.isEmpty()) {
-            return true; // If whitelist is empty, allow all hosts
+    /**
+     * Queues the encoded entry for every destination whose own filter accepts it.
+     * Each destination has its own queue, so the payload is shared rather than copied.
+     * @return true if every destination accepted and queued the entry.
+     */
+    private boolean fanOut(LogEntry logEntry, String host, byte[] payload) {
+        boolean queuedEverywhere = true;
+        for (CollectorDispatcher dispatcher : dispatchers) {
+            CollectorDestination destination = dispatcher.getDestination();
+            if (!destination.accepts(logEntry)) {
+                eventLog.count(Level.DEBUG, "filtered: " + destination.getName() + " filter");
+                queuedEverywhere = false;
+                continue;
+            }
+
+            // Queue for the destination's workers, the overflow policy decides what happens if the queue is full
+            if (dispatcher.enqueue(new CollectorRecord(host, payload))) {
+                metrics.recordAccepted();
+            } else {
+                eventLog.count(Level.WARN, "dropped: " + destination.getName() + " queue full");
+                queuedEverywhere = false;
+            }
         }
-        
-        for (String whitelistedDomain : domainWhitelist) {
-            if (host.equals(whitelistedDomain) || host.endsWith("." + whitelistedDomain)) {
-                return true;
+        return queuedEverywhere;
+    }
+
+    /**
+     * Starts a dispatcher for each active destination, reconfigures the dispatchers of destinations which
+     * are still active and shuts down the rest in the background. Anything still queued for a removed destination
+     * is written to its spool, which is kept on disk and resumed if the destination is added again.
+     */
+    private synchronized void applyDestinations() {
+        Map<String, CollectorDispatcher> existing = new LinkedHashMap<>();
+        for (CollectorDispatcher dispatcher : dispatchers) {
+            existing.put(dispatcher.getDestination().getName(), dispatcher);
+        }
+
+        List<CollectorDestination> active = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        if (primaryDestination.isActive()) active.add(primaryDestination);
+        names.add(PRIMARY_DESTINATION);
+        for (CollectorDestination destination : destinations) {
+            if (!destination.isActive()) continue;
+            //Destinations are identified by name, which also decides their spool directory.
+            if (!names.add(destination.getName())) {
+                eventLog.log(Level.ERROR, "Destination name " + destination.getName() + " is already in use, the destination will not be used.");
+                continue;
             }
+            active.add(destination.copy());
+        }
+
+        List<CollectorDispatcher> updated = new ArrayList<>();
+        for (CollectorDestination destination : active) {
+            CollectorDispatcher dispatcher = existing.remove(destination.getName());
+            if (dispatcher == null) {
+                //A destination added back must wait for its old dispatcher to finish with the spool directory.
+                awaitRetired(destination.getName());
+                dispatcher = new CollectorDispatcher(this, destination);
+            } else {
+                dispatcher.setDestination(destination);
+                dispatcher.applySettings();
+            }
+            updated.add(dispatcher);
+        }
+        this.dispatchers = Collections.unmodifiableList(updated);
+
+        for (Map.Entry<String, CollectorDispatcher> removed : existing.entrySet()) {
+            String name = removed.getKey();
+            CollectorDispatcher dispatcher = removed.getValue();
+            retiring.put(name, retiredDispatchers.submit(() -> {
+                try {
+                    dispatcher.shutdown();
+                } finally {
+                    retiring.remove(name);
+                }
+            }));
         }
-        
-        return false;
     }
 
-    private String escapeJson(String input) {
-        if (input == null) {
-            return "";
+    private void awaitRetired(String name) {
+        Future<?> stopping = retiring.get(name);
+        if (stopping == null) return;
+        try {
+            stopping.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            eventLog.log(Level.ERROR, "Could not stop destination " + name + ": " + e.getCause().getMessage());
         }
-        return input.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n").replace("\r", "\\r").replace("\t", "\\t");
     }
 
-    private void logMessage(String message) {
-        if (collectorTab != null) {
-            collectorTab.logMessage(message);
+    /**
+     * Builds the URL of a sibling endpoint of the configured receive URL.
+     * e.g. http://127.0.0.1:5000/recv -> http://127.0.0.1:5000/bulk
+     */
+    static String resolveEndpoint(String serverUrl, String path) {
+        String baseUrl = serverUrl;
+        if (baseUrl.endsWith(RECV_PATH)) {
+            baseUrl = baseUrl.substring(0, baseUrl.length() - RECV_PATH.length());
         }
+        return baseUrl + path;
+    }
+
+    private boolean isHostInWhitelist(String host) {
+        return whitelistMatcher.matches(host);
+    }
+
+    public CollectorEventLog getEventLog() {
+        return eventLog;
+    }
+
+    public CollectorMetrics getMetrics() {
+        return metrics;
+    }
+
+    public CollectorBackfill getBackfill() {
+        return backfill;
+    }
+
+    /**
+     * Starts sending the entries of the configured backfill source, resuming from its checkpoint.
+     * @return false if the collector is not sending or a backfill is already running.
+     */
+    public boolean startBackfill() {
+        if (!enabled || dispatchers.isEmpty()) {
+            eventLog.log(Level.WARN, "Enable the collector and save a server URL before starting a backfill.");
+            return false;
+        }
+        preferences.setSetting(PREF_COLLECTOR_BACKFILL_SOURCE, this.backfillSource);
+        preferences.setSetting(PREF_COLLECTOR_BACKFILL_RATE, this.backfillRate);
+        if (!backfill.start(backfillSource, backfillRate)) {
+            eventLog.log(Level.WARN, "A backfill from " + backfill.getSource() + " is already running.");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return The checkpoint of the source, the request time of the last log table entry sent,
+     * or the number of proxy history items already sent.
+     */
+    public long getBackfillCheckpoint(BackfillSource source) {
+        if (source == BackfillSource.PROXY_HISTORY) {
+            return (Integer) preferences.getSetting(PREF_COLLECTOR_BACKFILL_PROXY_CHECKPOINT);
+        }
+        return preferences.getSetting(PREF_COLLECTOR_BACKFILL_TABLE_CHECKPOINT);
+    }
+
+    /**
+     * Saves the checkpoint immediately, so a backfill resumes from it even if Burp is closed part way through.
+     */
+    void setBackfillCheckpoint(BackfillSource source, long checkpoint) {
+        if (source == BackfillSource.PROXY_HISTORY) {
+            preferences.setSetting(PREF_COLLECTOR_BACKFILL_PROXY_CHECKPOINT, (int) checkpoint);
+        } else {
+            preferences.setSetting(PREF_COLLECTOR_BACKFILL_TABLE_CHECKPOINT, checkpoint);
+        }
+    }
+
+    /**
+     * Forgets the checkpoint of the source, so the next backfill sends every entry again.
+     */
+    public void resetBackfillCheckpoint(BackfillSource source) {
+        setBackfillCheckpoint(source, 0);
+        eventLog.log(Level.INFO, "Backfill checkpoint for " + source + " reset.");
     }
 
     // Getters and setters
@@ -207,11 +650,11 @@ public class CollectorController {
     }
 
     public String getServerUrl() {
-        return serverUrl;
+        return primaryDestination.getServerUrl();
     }
 
     public void setServerUrl(String serverUrl) {
-        this.serverUrl = serverUrl;
+        primaryDestination.setServerUrl(serverUrl);
     }
 
     public String getSubsystemName() {
@@ -228,6 +671,7 @@ public class CollectorController {
 
     public void setDomainWhitelist(Set<String> domainWhitelist) {
         this.domainWhitelist = domainWhitelist;
+        this.whitelistMatcher = new DomainWhitelistMatcher(domainWhitelist);
     }
 
     public String getSecretKey() {
@@ -236,6 +680,11 @@ public class CollectorController {
 
     public void setSecretKey(String secretKey) {
         this.secretKey = secretKey;
+        this.signer = new CollectorSigner(secretKey);
+    }
+
+    public CollectorSigner getSigner() {
+        return signer;
     }
     
     // Filter getters and setters
@@ -272,49 +721,339 @@ public class CollectorController {
     public void setAllowedStatusCodes(Set<Integer> allowedStatusCodes) {
         this.allowedStatusCodes = allowedStatusCodes;
     }
+
+    // Bulk upload getters and setters
+    public boolean isBulkEnabled() {
+        return primaryDestination.isBulkEnabled();
+    }
+
+    public void setBulkEnabled(boolean bulkEnabled) {
+        primaryDestination.setBulkEnabled(bulkEnabled);
+    }
+
+    public int getBatchSize() {
+        return primaryDestination.getBatchSize();
+    }
+
+    public void setBatchSize(int batchSize) {
+        primaryDestination.setBatchSize(batchSize);
+    }
+
+    public int getBatchLingerMs() {
+        return primaryDestination.getBatchLingerMs();
+    }
+
+    public void setBatchLingerMs(int batchLingerMs) {
+        primaryDestination.setBatchLingerMs(batchLingerMs);
+    }
+
+    // Connection getters and setters
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    public int getMaxInFlightRequests() {
+        return primaryDestination.getMaxInFlightRequests();
+    }
+
+    public void setMaxInFlightRequests(int maxInFlightRequests) {
+        primaryDestination.setMaxInFlightRequests(maxInFlightRequests);
+    }
+
+    public CollectorTransport getTransport() {
+        return transport;
+    }
+
+    public void setTransport(CollectorTransport transport) {
+        this.transport = transport;
+    }
+
+    /**
+     * @return How many requests each destination may have in flight at once on the asynchronous transport.
+     */
+    public int getAsyncWindow() {
+        return asyncWindow;
+    }
+
+    public void setAsyncWindow(int asyncWindow) {
+        this.asyncWindow = asyncWindow;
+    }
+
+    /**
+     * @return true if each destination adapts its concurrency to the backend's latency and overload responses,
+     * rather than always using the configured concurrency.
+     */
+    public boolean isAdaptiveConcurrency() {
+        return adaptiveConcurrency;
+    }
+
+    public void setAdaptiveConcurrency(boolean adaptiveConcurrency) {
+        this.adaptiveConcurrency = adaptiveConcurrency;
+    }
+
+    public int getMaxRetries() {
+        return primaryDestination.getMaxRetries();
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        primaryDestination.setMaxRetries(maxRetries);
+    }
+
+    // Queue getters and setters
+    public int getQueueCapacity() {
+        return primaryDestination.getQueueCapacity();
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        primaryDestination.setQueueCapacity(queueCapacity);
+    }
+
+    public int getQueueCapacityMb() {
+        return primaryDestination.getQueueCapacityMb();
+    }
+
+    public void setQueueCapacityMb(int queueCapacityMb) {
+        primaryDestination.setQueueCapacityMb(queueCapacityMb);
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return primaryDestination.getOverflowPolicy();
+    }
+
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        primaryDestination.setOverflowPolicy(overflowPolicy);
+    }
+
+    // Destination getters and setters
+    /**
+     * @return The additional destinations, not including the primary destination configured by the main settings.
+     */
+    public List<CollectorDestination> getDestinations() {
+        return destinations;
+    }
+
+    public void setDestinations(List<CollectorDestination> destinations) {
+        this.destinations = new ArrayList<>(destinations);
+    }
+
+    /**
+     * @return The dispatchers of the destinations currently being delivered to.
+     */
+    public List<CollectorDispatcher> getDispatchers() {
+        return dispatchers;
+    }
+
+    public BackfillSource getBackfillSource() {
+        return backfillSource;
+    }
+
+    public void setBackfillSource(BackfillSource backfillSource) {
+        this.backfillSource = backfillSource;
+    }
+
+    /**
+     * @return The most entries a backfill submits per second.
+     */
+    public int getBackfillRate() {
+        return backfillRate;
+    }
+
+    public void setBackfillRate(int backfillRate) {
+        this.backfillRate = backfillRate;
+    }
+
+    public BodyEncoding getBodyEncoding() {
+        return bodyEncoding;
+    }
+
+    public void setBodyEncoding(BodyEncoding bodyEncoding) {
+        this.bodyEncoding = bodyEncoding;
+    }
+
+    public WireFormat getWireFormat() {
+        return wireFormat;
+    }
+
+    public void setWireFormat(WireFormat wireFormat) {
+        this.wireFormat = wireFormat;
+    }
+
+    public int getMetricsPort() {
+        return metricsPort;
+    }
+
+    public void setMetricsPort(int metricsPort) {
+        this.metricsPort = metricsPort;
+    }
+
+    public String getFilterString() {
+        return filterString;
+    }
+
+    /**
+     * Compiles and applies a collector filter. A blank filter sends everything which passes the other filters.
+     * @throws ParseException if the filter is invalid, in which case the previous filter is kept.
+     */
+    public void setFilterString(String filterString) throws ParseException {
+        if (filterString == null || filterString.trim().isEmpty()) {
+            this.collectorFilter = null;
+            this.filterString = "";
+        } else {
+            this.collectorFilter = new CollectorFilter(new FilterExpression(filterString));
+            this.filterString = filterString;
+        }
+    }
+
+    // Deduplication getters and setters
+    public DedupMode getDedupMode() {
+        return dedupMode;
+    }
+
+    public void setDedupMode(DedupMode dedupMode) {
+        this.dedupMode = dedupMode;
+    }
+
+    public int getDedupWindow() {
+        return dedupWindow;
+    }
+
+    public void setDedupWindow(int dedupWindow) {
+        this.dedupWindow = dedupWindow;
+    }
+
+    // Payload getters and setters
+    public List<LogEntryField> getFields() {
+        return fields;
+    }
+
+    public void setFields(List<LogEntryField> fields) {
+        this.fields = new ArrayList<>(fields);
+        this.projection = new CollectorProjection(this.fields, bodyCaps, stripBinary);
+    }
+
+    public String getBodyCaps() {
+        return bodyCaps;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the caps are invalid, in which case the previous caps are kept.
+     */
+    public void setBodyCaps(String bodyCaps) {
+        String caps = bodyCaps != null ? bodyCaps.trim() : "";
+        this.projection = new CollectorProjection(fields, caps, stripBinary);
+        this.bodyCaps = caps;
+    }
+
+    public boolean isStripBinary() {
+        return stripBinary;
+    }
+
+    public void setStripBinary(boolean stripBinary) {
+        this.stripBinary = stripBinary;
+        this.projection = new CollectorProjection(fields, bodyCaps, stripBinary);
+    }
+
+    // Spool getters and setters
+    public boolean isSpoolEnabled() {
+        return spoolEnabled;
+    }
+
+    public void setSpoolEnabled(boolean spoolEnabled) {
+        this.spoolEnabled = spoolEnabled;
+    }
+
+    public int getSpoolMaxMb() {
+        return spoolMaxMb;
+    }
+
+    public void setSpoolMaxMb(int spoolMaxMb) {
+        this.spoolMaxMb = spoolMaxMb;
+    }
+
+    public long getSpoolMaxBytes() {
+        return spoolMaxMb * 1024L * 1024L;
+    }
+
+    public Path getSpoolDirectory() {
+        return Paths.get(spoolDirectory);
+    }
+
+    Path getSpoolDirectory(CollectorDestination destination) {
+        if (PRIMARY_DESTINATION.equals(destination.getName())) {
+            return getSpoolDirectory();
+        }
+        return getSpoolDirectory().resolve("destinations").resolve(destination.getName().replaceAll("[^A-Za-z0-9._-]", "_"));
+    }
+
+    public void setSpoolDirectory(String spoolDirectory) {
+        this.spoolDirectory = spoolDirectory;
+    }
+
     
     /**
      * Determines if a log entry should be sent to the collector based on filter settings
      */
     private boolean shouldSendLogEntry(LogEntry logEntry) {
-        // Log the entry we're processing
-        logMessage("Processing entry for host: " + logEntry.getHostname() + ", status: " + logEntry.getResponseStatus() + ", URL: " + logEntry.getUrl());
-        
         // Filter empty responses
-        if (filterEmptyResponse && (logEntry.getResponseBytes() == null || logEntry.getResponseBytes().length == 0)) {
-            logMessage("Filtered: Empty response for host: " + logEntry.getHostname());
+        if (filterEmptyResponse && logEntry.getResponse() == null) {
+            eventLog.count(Level.INFO, "filtered: empty response");
             return false;
         }
-        logMessage("Passed empty response filter for host: " + logEntry.getHostname());
         
         // Filter by status code
         if (filterStatusCodes && logEntry.getResponseStatus() > 0) {
-            if (!allowedStatusCodes.contains(logEntry.getResponseStatus())) {
-                logMessage("Filtered: Status code " + logEntry.getResponseStatus() + " for host: " + logEntry.getHostname());
+            if (!allowedStatusCodes.contains((int) logEntry.getResponseStatus())) {
+                eventLog.count(Level.INFO, "filtered: status " + logEntry.getResponseStatus());
                 return false;
             }
-            logMessage("Passed status code filter (" + logEntry.getResponseStatus() + ") for host: " + logEntry.getHostname());
         }
         
         // Filter by URL extension for static resources
         if (filterStaticResources && logEntry.getUrlExtension() != null && !logEntry.getUrlExtension().isEmpty()) {
-            String extension = logEntry.getUrlExtension().toLowerCase();
-            if (extension.equals("css") || extension.equals("js") || extension.equals("png") || 
-                extension.equals("jpg") || extension.equals("jpeg") || extension.equals("gif") || 
-                extension.equals("svg") || extension.equals("woff") || extension.equals("woff2") || 
-                extension.equals("ttf") || extension.equals("eot")) {
-                logMessage("Filtered: Static resource extension " + extension + " for host: " + logEntry.getHostname());
+            String extension = logEntry.getUrlExtension();
+            if (STATIC_EXTENSIONS.contains(extension)) {
+                eventLog.count(Level.INFO, "filtered: static resource ." + extension.toLowerCase());
                 return false;
             }
-            logMessage("Passed static resource filter (extension: " + extension + ") for host: " + logEntry.getHostname());
+        }
+
+        // Filter expression
+        CollectorFilter collectorFilter = this.collectorFilter;
+        if (collectorFilter != null && !collectorFilter.matches(logEntry)) {
+            eventLog.count(Level.INFO, "filtered: collector filter");
+            return false;
         }
         
         // Entry passed all filters
-        logMessage("SUCCESS: Sending entry for host: " + logEntry.getHostname() + ", status: " + logEntry.getResponseStatus() + ", URL: " + logEntry.getUrl());
+        eventLog.count(Level.DEBUG, "accepted for sending");
         return true;
     }
 
+    /**
+     * Stops the collector when the extension is unloaded. Entries already accepted are encoded and queued,
+     * then the destinations have until the drain timeout to deliver what is queued and in flight.
+     * Anything left is written to each destination's spool and delivered once the extension is loaded again.
+     */
     public void shutdown() {
-        executorService.shutdown();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SHUTDOWN_DRAIN_MS);
+        backfill.shutdown();
+        if (collectorTab != null) {
+            collectorTab.shutdown();
+        }
+        stage.shutdown(deadline);
+        metricsServer.stop();
+        for (CollectorDispatcher dispatcher : dispatchers) {
+            dispatcher.shutdown(deadline);
+        }
+        retiredDispatchers.shutdown();
+        try {
+            retiredDispatchers.awaitTermination(Math.max(deadline - System.nanoTime(), 0) + TimeUnit.MILLISECONDS.toNanos(RETIRE_WAIT_MS), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 }
\ No newline at end of file
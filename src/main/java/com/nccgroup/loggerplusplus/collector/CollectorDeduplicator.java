@@ -0,0 +1,160 @@
+package com.nccgroup.loggerplusplus.collector;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the content hashes of recently sent entries so repeated content can be skipped.
+ * Hashes are kept in two generations of Bloom filter. Once the current generation has seen
+ * its capacity of entries it becomes the previous generation and a fresh one is started,
+ * so memory stays fixed while always covering at least the last [capacity] entries.
+ * Bloom filters have false positives. The filters are sized for a 0.1% rate at capacity.
+ */
+public class CollectorDeduplicator {
+
+    private static final double FALSE_POSITIVE_RATE = 0.001;
+    private static final int COUNT_CACHE_SIZE = 10000;
+
+    private final int capacity;
+    private final int bitCount;
+    private final int hashCount;
+    private long[] current;
+    private long[] previous;
+    private int currentInsertions;
+
+    //Repeat counts for reference records, only tracked for the most recently seen hashes.
+    private final Map<Long, Integer> repeatCounts;
+
+    public CollectorDeduplicator(int capacity) {
+        this.capacity = Math.max(capacity, 1);
+        double bits = -this.capacity * Math.log(FALSE_POSITIVE_RATE) / (Math.log(2) * Math.log(2));
+        this.bitCount = (int) Math.min(Math.max(Math.ceil(bits / 64) * 64, 64), Integer.MAX_VALUE - 63);
+        this.hashCount = Math.max((int) Math.round(bits / this.capacity * Math.log(2)), 1);
+        this.current = new long[bitCount / 64];
+        this.previous = new long[bitCount / 64];
+        this.repeatCounts = new LinkedHashMap<Long, Integer>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Integer> eldest) {
+                return size() > COUNT_CACHE_SIZE;
+            }
+        };
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Looks the hash up without recording it.
+     * @return 0 if the hash had not been seen recently, otherwise the count {@link #recordAndCount(long)} would return.
+     */
+    public synchronized int count(long hash) {
+        if (!contains(current, hash) && !contains(previous, hash)) return 0;
+        Integer count = repeatCounts.get(hash);
+        return count == null ? 2 : count + 1;
+    }
+
+    /**
+     * Records the hash as seen.
+     * @return 0 if the hash had not been seen recently, otherwise the number of times it has now been seen.
+     */
+    public synchronized int recordAndCount(long hash) {
+        boolean seen = contains(current, hash) || contains(previous, hash);
+        if (!seen) {
+            add(hash);
+            repeatCounts.put(hash, 1);
+            return 0;
+        }
+        Integer count = repeatCounts.get(hash);
+        int updated = count == null ? 2 : count + 1;
+        repeatCounts.put(hash, updated);
+        return updated;
+    }
+
+    private void add(long hash) {
+        if (currentInsertions >= capacity) {
+            long[] recycled = previous;
+            Arrays.fill(recycled, 0);
+            previous = current;
+            current = recycled;
+            currentInsertions = 0;
+        }
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bitCount);
+            current[bit >>> 6] |= 1L << bit;
+        }
+        currentInsertions++;
+    }
+
+    private boolean contains(long[] bits, long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Fast non-cryptographic 64 bit hash of an entry's method, URL, request body and response body.
+     * Headers are excluded so that otherwise identical messages differing only in dates, cookies or
+     * request ids hash the same.
+     */
+    public static long hash(String method, String url, byte[] request, int requestBodyOffset,
+                            byte[] response, int responseBodyOffset) {
+        long h = 0x9E3779B97F4A7C15L;
+        h = update(h, method != null ? method.getBytes(StandardCharsets.UTF_8) : new byte[0], 0);
+        h = update(h, url != null ? url.getBytes(StandardCharsets.UTF_8) : new byte[0], 0);
+        h = update(h, request, requestBodyOffset);
+        h = update(h, response, responseBodyOffset);
+        return mix(h);
+    }
+
+    /**
+     * Folds bytes[offset..] into the hash eight bytes at a time. The length is included so that
+     * moving bytes between adjacent parts changes the hash.
+     */
+    private static long update(long h, byte[] bytes, int offset) {
+        int start = Math.min(Math.max(offset, 0), bytes.length);
+        int i = start;
+        for (; i + 8 <= bytes.length; i += 8) {
+            long k = (bytes[i] & 0xFFL)
+                    | (bytes[i + 1] & 0xFFL) << 8
+                    | (bytes[i + 2] & 0xFFL) << 16
+                    | (bytes[i + 3] & 0xFFL) << 24
+                    | (bytes[i + 4] & 0xFFL) << 32
+                    | (bytes[i + 5] & 0xFFL) << 40
+                    | (bytes[i + 6] & 0xFFL) << 48
+                    | (bytes[i + 7] & 0xFFL) << 56;
+            h = round(h, k);
+        }
+        long tail = 0;
+        for (int shift = 0; i < bytes.length; i++, shift += 8) {
+            tail |= (bytes[i] & 0xFFL) << shift;
+        }
+        h = round(h, tail);
+        return round(h, bytes.length - start);
+    }
+
+    private static long round(long h, long k) {
+        k *= 0x87C37B91114253D5L;
+        k = Long.rotateLeft(k, 31);
+        k *= 0x4CF5AD432745937FL;
+        h ^= k;
+        return Long.rotateLeft(h, 27) * 5 + 0x52DCE729;
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
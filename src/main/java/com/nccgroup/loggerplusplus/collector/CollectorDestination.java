@@ -0,0 +1,190 @@
+package com.nccgroup.loggerplusplus.collector;
+
+import com.nccgroup.loggerplusplus.filter.FilterExpression;
+import com.nccgroup.loggerplusplus.filter.parser.ParseException;
+import com.nccgroup.loggerplusplus.logentry.LogEntry;
+
+/**
+ * A named backend which entries are fanned out to. Each destination is delivered to by its own
+ * {@link CollectorDispatcher}, with a separate queue, spool, connection pool and worker threads,
+ * so a slow destination cannot hold up the others.
+ * Stored as part of the collector preferences, so only the configuration is serialised.
+ */
+public class CollectorDestination {
+
+    private String name;
+    private boolean enabled = true;
+    private String serverUrl = "";
+    private String filterString = "";
+    private boolean bulkEnabled;
+    private int batchSize = 500;
+    private int batchLingerMs = 250;
+    private int maxInFlightRequests = 4;
+    private int queueCapacity = 10000;
+    private int queueCapacityMb = 256;
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_OLDEST;
+    private int maxRetries;
+
+    private transient volatile CollectorFilter filter;
+
+    //Used when deserialising, so the field defaults apply to settings saved by older versions.
+    private CollectorDestination() {}
+
+    public CollectorDestination(String name) {
+        this.name = name;
+    }
+
+    public CollectorDestination copy() {
+        CollectorDestination copy = new CollectorDestination(name);
+        copy.enabled = enabled;
+        copy.serverUrl = serverUrl;
+        copy.filterString = filterString;
+        copy.bulkEnabled = bulkEnabled;
+        copy.batchSize = batchSize;
+        copy.batchLingerMs = batchLingerMs;
+        copy.maxInFlightRequests = maxInFlightRequests;
+        copy.queueCapacity = queueCapacity;
+        copy.queueCapacityMb = queueCapacityMb;
+        copy.overflowPolicy = overflowPolicy;
+        copy.maxRetries = maxRetries;
+        copy.filter = filter;
+        return copy;
+    }
+
+    /**
+     * @return true if the entry passes this destination's own filter. Entries have already passed the global filters.
+     */
+    public boolean accepts(LogEntry logEntry) {
+        CollectorFilter filter = this.filter;
+        return filter == null || filter.matches(logEntry);
+    }
+
+    /**
+     * @return true if the destination can be delivered to.
+     */
+    public boolean isActive() {
+        return enabled && name != null && !name.trim().isEmpty()
+                && serverUrl != null && !serverUrl.trim().isEmpty();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getServerUrl() {
+        return serverUrl;
+    }
+
+    public void setServerUrl(String serverUrl) {
+        this.serverUrl = serverUrl;
+    }
+
+    public String getFilterString() {
+        return filterString;
+    }
+
+    /**
+     * Compiles and applies the destination filter. A blank filter accepts every entry.
+     * @throws ParseException if the filter is invalid, in which case the previous filter is kept.
+     */
+    public void setFilterString(String filterString) throws ParseException {
+        if (filterString == null || filterString.trim().isEmpty()) {
+            this.filter = null;
+            this.filterString = "";
+        } else {
+            this.filter = new CollectorFilter(new FilterExpression(filterString));
+            this.filterString = filterString;
+        }
+    }
+
+    /**
+     * Compiles the stored filter string after the destination has been loaded from the preferences.
+     */
+    void compileFilter() throws ParseException {
+        setFilterString(filterString);
+    }
+
+    public boolean isBulkEnabled() {
+        return bulkEnabled;
+    }
+
+    public void setBulkEnabled(boolean bulkEnabled) {
+        this.bulkEnabled = bulkEnabled;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchLingerMs() {
+        return batchLingerMs;
+    }
+
+    public void setBatchLingerMs(int batchLingerMs) {
+        this.batchLingerMs = batchLingerMs;
+    }
+
+    public int getMaxInFlightRequests() {
+        return maxInFlightRequests;
+    }
+
+    public void setMaxInFlightRequests(int maxInFlightRequests) {
+        this.maxInFlightRequests = maxInFlightRequests;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public int getQueueCapacityMb() {
+        return queueCapacityMb;
+    }
+
+    public void setQueueCapacityMb(int queueCapacityMb) {
+        this.queueCapacityMb = queueCapacityMb;
+    }
+
+    public long getQueueCapacityBytes() {
+        return queueCapacityMb * 1024L * 1024L;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * @return How many times a batch taken from the memory queue is retried before it is abandoned.
+     * Spooled entries are always retried until they are delivered.
+     */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+}
@@ -0,0 +1,637 @@
+package com.nccgroup.loggerplusplus.collector;
+
+import com.nccgroup.loggerplusplus.collector.CollectorEventLog.Level;
+import com.nccgroup.loggerplusplus.util.NamedThreadFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Owns the queue, the disk spool and the worker threads which deliver to a single {@link CollectorDestination}.
+ * Each worker takes either a single record or, in bulk mode, a batch of records
+ * from the queue and ships it using the dispatcher's keep-alive HTTP client, or with the asynchronous
+ * transport hands it to {@link CollectorAsyncHttpClient} without waiting for the response.
+ * With the write-ahead spool enabled, records are written to the spool first and a separate drainer thread
+ * moves them into the queue in order as the workers make room, so the spool holds the backlog while the
+ * backend is unreachable and records the workers give up on are spooled again.
+ * On shutdown the workers are given time to deliver what is queued and in flight, and whatever is left
+ * is written to the spool, so it is delivered when the destination is next started.
+ */
+public class CollectorDispatcher {
+
+    private static final String BULK_PATH = "/bulk";
+    private static final long POLL_INTERVAL_MS = 250;
+    private static final long INITIAL_BACKOFF_MS = 500;
+    private static final long MAX_BACKOFF_MS = 60000;
+    private static final long DRAIN_POLL_MS = 50;
+    private static final long WORKER_EXIT_MS = 1000;
+    private static final long SYNC_INTERVAL_MS = 1000;
+    private static final int SPOOL_READ_SIZE = 500;
+
+    enum DeliveryResult {
+        DELIVERED,
+        //The backend is unavailable or overloaded, the same payload may succeed later.
+        RETRY,
+        //The backend refused the payload, sending it again will not help.
+        REJECTED
+    }
+
+    private final CollectorController collectorController;
+    private final CollectorEventLog eventLog;
+    private final CollectorMetrics metrics;
+    private final CollectorQueue queue;
+    private final CollectorHttpClient httpClient;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private volatile CollectorAsyncHttpClient asyncClient;
+    private ScheduledExecutorService retryScheduler;
+    private final ThreadFactory threadFactory;
+    private final AtomicInteger workerCount = new AtomicInteger();
+    private final Set<Thread> workers = ConcurrentHashMap.newKeySet();
+
+    private volatile CollectorDestination destination;
+    private CollectorSpool spool;
+    private Thread spoolDrainer;
+    private volatile int targetWorkerCount;
+    private volatile boolean running;
+    private volatile boolean draining;
+    //Records taken from the queue which have been neither delivered nor given up on.
+    //Lists are tracked by identity, whatever is left here when the dispatcher stops is spooled.
+    private final Set<List<CollectorRecord>> unfinished = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+    //Records given up on while stopping or with the write-ahead spool enabled, which are written to the spool.
+    private final List<CollectorRecord> undelivered = Collections.synchronizedList(new ArrayList<>());
+
+    public CollectorDispatcher(CollectorController collectorController, CollectorDestination destination) {
+        this.collectorController = collectorController;
+        this.destination = destination;
+        this.eventLog = collectorController.getEventLog();
+        this.metrics = collectorController.getMetrics();
+        this.queue = new CollectorQueue(destination.getQueueCapacity(),
+                destination.getQueueCapacityBytes(), destination.getOverflowPolicy());
+        this.httpClient = new CollectorHttpClient(collectorController.getMaxConnectionsPerRoute());
+        this.limiter = new AdaptiveConcurrencyLimiter(destination.getMaxInFlightRequests(), collectorController.isAdaptiveConcurrency());
+        this.threadFactory = new NamedThreadFactory("LPP-Collector-" + destination.getName());
+        this.running = true;
+        openSpool();
+        applySettings();
+    }
+
+    /**
+     * Accepts a record for delivery. With the write-ahead spool enabled the record is written to disk first
+     * and moved into the queue by the spool drainer, otherwise it is placed on the queue directly.
+     * Either way it is sent by the workers.
+     */
+    public boolean enqueue(CollectorRecord record) {
+        if (collectorController.isSpoolEnabled() && spool != null) {
+            try {
+                spool.append(record.getPayload());
+                return true;
+            } catch (IOException e) {
+                eventLog.log(Level.ERROR, destination.getName() + ": Could not write to collector spool, falling back to memory queue: " + e.getMessage());
+            }
+        }
+        return queue.offer(record);
+    }
+
+    /**
+     * Replaces the destination settings, which are applied by the next call to {@link #applySettings()}.
+     */
+    public void setDestination(CollectorDestination destination) {
+        this.destination = destination;
+    }
+
+    /**
+     * Applies the current destination and controller settings to the queue, spool, connection pool and worker count.
+     */
+    public void applySettings() {
+        CollectorDestination destination = this.destination;
+        queue.configure(destination.getQueueCapacity(), destination.getQueueCapacityBytes(),
+                destination.getOverflowPolicy());
+        httpClient.setMaxConnectionsPerRoute(collectorController.getMaxConnectionsPerRoute());
+        //The async client is only started once it is first needed, and then kept for retries still pending.
+        if (collectorController.getTransport() == CollectorTransport.ASYNC && asyncClient == null) {
+            retryScheduler = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("LPP-Collector-Retry-" + destination.getName()));
+            asyncClient = new CollectorAsyncHttpClient(destination.getName(), collectorController.getAsyncWindow());
+        } else if (asyncClient != null) {
+            asyncClient.setWindowSize(collectorController.getAsyncWindow());
+        }
+        //The limit adapts below the concurrency configured for the transport in use.
+        limiter.configure(collectorController.getTransport() == CollectorTransport.ASYNC
+                ? collectorController.getAsyncWindow() : destination.getMaxInFlightRequests(),
+                collectorController.isAdaptiveConcurrency());
+        if (spool != null) {
+            spool.setMaxBytes(collectorController.getSpoolMaxBytes());
+        }
+
+        targetWorkerCount = Math.max(destination.getMaxInFlightRequests(), 1);
+        while (running && workerCount.get() < targetWorkerCount) {
+            int workerIndex = workerCount.getAndIncrement();
+            threadFactory.newThread(() -> runWorker(workerIndex)).start();
+        }
+    }
+
+    public CollectorDestination getDestination() {
+        return destination;
+    }
+
+    public CollectorQueue getQueue() {
+        return queue;
+    }
+
+    public CollectorSpool getSpool() {
+        return spool;
+    }
+
+    public AdaptiveConcurrencyLimiter getLimiter() {
+        return limiter;
+    }
+
+    /**
+     * @return The number of requests in flight on the asynchronous transport.
+     */
+    public int getAsyncInFlight() {
+        CollectorAsyncHttpClient asyncClient = this.asyncClient;
+        return asyncClient != null ? asyncClient.getInFlight() : 0;
+    }
+
+    /**
+     * Stops the dispatcher without waiting for queued records to be delivered, they are written to the spool instead.
+     */
+    public void shutdown() {
+        shutdown(System.nanoTime());
+    }
+
+    /**
+     * Stops accepting records and waits until the deadline for the workers to deliver what is queued and in flight.
+     * Then stops the workers and writes the records which are left to the spool, where they are picked up
+     * when the destination is next started. Records are sent at least once, so a request which completes just as
+     * the dispatcher stops may be delivered again from the spool.
+     * @param deadlineNanos The {@link System#nanoTime()} to stop waiting at.
+     */
+    public void shutdown(long deadlineNanos) {
+        draining = true;
+        queue.close();
+        try {
+            while ((queue.size() > 0 || !unfinished.isEmpty()) && System.nanoTime() < deadlineNanos) {
+                Thread.sleep(DRAIN_POLL_MS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        //Closing the clients fails or abandons any requests still in flight, their records are still tracked and spooled below.
+        //Interrupting the workers wakes those waiting to retry or for the concurrency limit, so they give up on their records quickly.
+        running = false;
+        httpClient.close();
+        if (asyncClient != null) {
+            retryScheduler.shutdownNow();
+            asyncClient.close();
+        }
+        workers.forEach(Thread::interrupt);
+        if (spoolDrainer != null) {
+            spoolDrainer.interrupt();
+        }
+        try {
+            long workerDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(WORKER_EXIT_MS);
+            while (workerCount.get() > 0 && System.nanoTime() < workerDeadline) {
+                Thread.sleep(DRAIN_POLL_MS);
+            }
+            //The drainer rewinds the spool as it stops, so must be done with it before it is closed.
+            if (spoolDrainer != null) {
+                spoolDrainer.join(Math.max(TimeUnit.NANOSECONDS.toMillis(workerDeadline - System.nanoTime()), 1));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<CollectorRecord> remaining = queue.drainRemaining();
+        remaining.addAll(undelivered);
+        synchronized (unfinished) {
+            for (List<CollectorRecord> records : unfinished) {
+                remaining.addAll(records);
+            }
+            unfinished.clear();
+        }
+        if (!remaining.isEmpty()) {
+            spoolRecords(remaining);
+            eventLog.log(Level.INFO, destination.getName() + ": Saved " + remaining.size() + " undelivered entries to the spool, they will be sent when the destination is next started.");
+        }
+        if (spool != null) {
+            spool.close();
+        }
+    }
+
+    private void openSpool() {
+        Path directory = collectorController.getSpoolDirectory(destination);
+        try {
+            spool = new CollectorSpool(directory, collectorController.getSpoolMaxBytes());
+            queue.setSpool(spool);
+            if (spool.getPendingRecords() > 0) {
+                eventLog.log(Level.INFO, destination.getName() + ": Resuming delivery of " + spool.getPendingRecords() + " spooled entries from " + directory);
+            }
+            spoolDrainer = new NamedThreadFactory("LPP-Collector-Spool-" + destination.getName()).newThread(this::runSpoolDrainer);
+            spoolDrainer.start();
+        } catch (IOException e) {
+            spool = null;
+            eventLog.log(Level.ERROR, destination.getName() + ": Could not open collector spool at " + directory + ": " + e.getMessage());
+        }
+    }
+
+    private void runWorker(int workerIndex) {
+        workers.add(Thread.currentThread());
+        List<CollectorRecord> batch = new ArrayList<>();
+        try {
+            //Workers above the target count retire themselves, allowing the pool to shrink.
+            while (running && workerIndex < targetWorkerCount) {
+                batch.clear();
+                CollectorDestination destination = this.destination;
+                int batchSize = destination.isBulkEnabled() ? destination.getBatchSize() : 1;
+                if (queue.drainTo(batch, batchSize, destination.isBulkEnabled() ? destination.getBatchLingerMs() : POLL_INTERVAL_MS) > 0) {
+                    long now = System.nanoTime();
+                    for (CollectorRecord record : batch) {
+                        metrics.recordDequeue(record, now);
+                    }
+                    unfinished.add(batch);
+                    if (collectorController.getTransport() == CollectorTransport.ASYNC && asyncClient != null) {
+                        deliverAsync(batch);
+                        //Each request is tracked on its own once it has been sent.
+                        unfinished.remove(batch);
+                        continue;
+                    }
+                    DeliveryResult result = deliver(batch);
+                    //Records taken from the memory queue are retried a limited number of times, holding up only this worker.
+                    long backoff = INITIAL_BACKOFF_MS;
+                    for (int attempt = 0; result == DeliveryResult.RETRY && attempt < destination.getMaxRetries() && running; attempt++) {
+                        metrics.recordRetry();
+                        Thread.sleep(backoff + ThreadLocalRandom.current().nextLong(backoff / 5 + 1));
+                        backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+                        result = deliver(batch);
+                    }
+                    if (result == DeliveryResult.RETRY) {
+                        abandon(batch);
+                    } else {
+                        unfinished.remove(batch);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            workers.remove(Thread.currentThread());
+            workerCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * Moves spooled records into the queue in order as the workers make room, committing them once queued.
+     * Spooled records are only read while the queue has room for them, so the spool holds the backlog
+     * while the backend is unreachable. Appended records are forced to disk on a timer rather than on every append.
+     */
+    private void runSpoolDrainer() {
+        long lastSync = System.nanoTime();
+        long backoff = INITIAL_BACKOFF_MS;
+        try {
+            while (running) {
+                try {
+                    if (System.nanoTime() - lastSync >= TimeUnit.MILLISECONDS.toNanos(SYNC_INTERVAL_MS)) {
+                        spool.sync();
+                        lastSync = System.nanoTime();
+                    }
+                    respoolUndelivered();
+                    if (!collectorController.isEnabled()) {
+                        Thread.sleep(POLL_INTERVAL_MS);
+                        continue;
+                    }
+
+                    int room = queue.awaitRoom(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                    if (room == 0) continue;
+                    List<CollectorSpool.Entry> entries = spool.read(Math.min(room, SPOOL_READ_SIZE), POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                    if (entries.isEmpty()) continue;
+
+                    int queued = 0;
+                    while (queued < entries.size() && queue.offerIfRoom(new CollectorRecord(null, entries.get(queued).getPayload()))) {
+                        queued++;
+                    }
+                    spool.commit(entries.subList(0, queued));
+                    if (queued < entries.size()) {
+                        //The queue filled up by bytes, the rest are read again once there is room.
+                        spool.rewind();
+                    }
+                    backoff = INITIAL_BACKOFF_MS;
+                } catch (IOException e) {
+                    //Keep going, a full disk or a file locked by another process may clear up.
+                    //Records are still accepted meanwhile, as enqueue falls back to the memory queue when appends fail.
+                    if (!running) break;
+                    long delay = backoff + ThreadLocalRandom.current().nextLong(backoff / 5 + 1);
+                    eventLog.log(Level.ERROR, destination.getName() + ": Collector spool error, retrying in " + delay + "ms: " + e.getMessage());
+                    spool.rewind();
+                    Thread.sleep(delay);
+                    backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes records the workers gave up on back to the spool while the write-ahead spool is enabled,
+     * so they are sent again rather than lost while the backend is unreachable.
+     */
+    private void respoolUndelivered() throws IOException {
+        List<CollectorRecord> records;
+        synchronized (undelivered) {
+            if (draining || undelivered.isEmpty()) return;
+            records = new ArrayList<>(undelivered);
+            undelivered.clear();
+        }
+        for (int i = 0; i < records.size(); i++) {
+            try {
+                spool.append(records.get(i).getPayload());
+            } catch (IOException e) {
+                undelivered.addAll(0, records.subList(i, records.size()));
+                throw e;
+            }
+        }
+    }
+
+    private DeliveryResult deliver(List<CollectorRecord> records) throws InterruptedException {
+        try {
+            if (destination.isBulkEnabled()) {
+                DeliveryResult worst = DeliveryResult.DELIVERED;
+                for (List<CollectorRecord> run : splitByFormat(records)) {
+                    DeliveryResult result = send(prepareBatch(run));
+                    if (result == DeliveryResult.RETRY) return result;
+                    if (result == DeliveryResult.REJECTED) worst = result;
+                }
+                return worst;
+            }
+            DeliveryResult worst = DeliveryResult.DELIVERED;
+            for (CollectorRecord record : records) {
+                DeliveryResult result = send(prepareSingle(record));
+                if (result == DeliveryResult.RETRY) return result;
+                if (result == DeliveryResult.REJECTED) worst = result;
+            }
+            return worst;
+        } catch (IOException e) {
+            eventLog.log(Level.ERROR, destination.getName() + ": Could not encode batch for collector: " + e.getMessage());
+            return DeliveryResult.RETRY;
+        }
+    }
+
+    /**
+     * Hands the records to the asynchronous client and returns once they are in flight, blocking only while
+     * the concurrency limit or the window is reached. Delivery is accounted for when each request completes, and requests the backend
+     * could not accept are retried from the retry scheduler.
+     */
+    private void deliverAsync(List<CollectorRecord> records) throws InterruptedException {
+        try {
+            if (destination.isBulkEnabled()) {
+                for (List<CollectorRecord> run : splitByFormat(records)) {
+                    sendAsync(prepareBatch(run), 0);
+                }
+                return;
+            }
+            for (CollectorRecord record : records) {
+                sendAsync(prepareSingle(record), 0);
+            }
+        } catch (IOException e) {
+            eventLog.log(Level.ERROR, destination.getName() + ": Could not encode batch for collector: " + e.getMessage());
+            metrics.recordFailed(records.size());
+        } catch (RuntimeException e) {
+            //e.g. an invalid server URL, which sending again will not fix.
+            eventLog.log(Level.ERROR, destination.getName() + ": Could not send to collector: " + e.getMessage());
+            metrics.recordFailed(records.size());
+        }
+    }
+
+    private PreparedRequest prepareSingle(CollectorRecord record) {
+        Map<String, String> headers = new HashMap<>();
+        collectorController.getSigner().sign(record.getPayload(), headers);
+        return new PreparedRequest(false, destination.getServerUrl(), WireFormat.of(record.getPayload()).getContentType(), null, headers,
+                record.getPayload(), Collections.singletonList(record), record.getSize());
+    }
+
+    /**
+     * Builds the upload of a batch to the bulk endpoint, as gzip compressed NDJSON or a CBOR sequence.
+     * The records must all be in the same format. The compressed body is signed as it is produced.
+     */
+    private PreparedRequest prepareBatch(List<CollectorRecord> records) throws IOException {
+        WireFormat format = WireFormat.of(records.get(0).getPayload());
+        long payloadSize = 0;
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        CollectorSigner.SigningOutputStream signed = collectorController.getSigner().wrap(compressed);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(signed)) {
+            for (CollectorRecord record : records) {
+                gzip.write(record.getPayload());
+                payloadSize += record.getSize();
+                if (format.isNewlineDelimited()) {
+                    gzip.write('\n');
+                    payloadSize++;
+                }
+            }
+        }
+        Map<String, String> headers = new HashMap<>();
+        signed.addHeaders(headers);
+        return new PreparedRequest(true, CollectorController.resolveEndpoint(destination.getServerUrl(), BULK_PATH),
+                format.getBulkContentType(), "gzip", headers, compressed.toByteArray(), new ArrayList<>(records), payloadSize);
+    }
+
+    /**
+     * Splits a batch into runs of records in the same format, as each bulk request has a single content type.
+     * Formats only mix in the batch taken just after the format was changed.
+     */
+    private static List<List<CollectorRecord>> splitByFormat(List<CollectorRecord> records) {
+        List<List<CollectorRecord>> runs = new ArrayList<>();
+        int start = 0;
+        for (int i = 1; i <= records.size(); i++) {
+            if (i == records.size() || WireFormat.of(records.get(i).getPayload()) != WireFormat.of(records.get(start).getPayload())) {
+                runs.add(records.subList(start, i));
+                start = i;
+            }
+        }
+        return runs;
+    }
+
+    private DeliveryResult send(PreparedRequest request) throws InterruptedException {
+        limiter.acquire();
+        long start = System.nanoTime();
+        try {
+            CollectorResponse response = httpClient.post(request.url, request.contentType, request.contentEncoding, request.headers, request.body);
+            long elapsed = System.nanoTime() - start;
+            limiter.release(elapsed, response);
+            return complete(request, response.getStatusCode(), null, elapsed);
+        } catch (Exception e) {
+            long elapsed = System.nanoTime() - start;
+            limiter.release(elapsed, null);
+            return complete(request, -1, e, elapsed);
+        }
+    }
+
+    private void sendAsync(PreparedRequest request, int attempt) throws InterruptedException {
+        limiter.acquire();
+        //Tracked before sending, as the request may complete before post returns.
+        if (attempt == 0) unfinished.add(request.records);
+        CompletableFuture<CollectorResponse> future;
+        try {
+            future = asyncClient.post(request.url, request.contentType,
+                    request.contentEncoding, request.headers, request.body);
+        } catch (InterruptedException | RuntimeException e) {
+            limiter.cancel();
+            if (attempt == 0) unfinished.remove(request.records);
+            throw e;
+        }
+        long start = System.nanoTime();
+        future.whenComplete((response, error) -> {
+            long elapsed = System.nanoTime() - start;
+            limiter.release(elapsed, response);
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            DeliveryResult result = complete(request, response != null ? response.getStatusCode() : -1, cause, elapsed);
+            if (result != DeliveryResult.RETRY) {
+                unfinished.remove(request.records);
+                return;
+            }
+
+            if (running && attempt < destination.getMaxRetries()) {
+                metrics.recordRetry();
+                long backoff = Math.min(INITIAL_BACKOFF_MS << Math.min(attempt, 16), MAX_BACKOFF_MS);
+                retryScheduler.schedule(() -> retryAsync(request, attempt + 1),
+                        backoff + ThreadLocalRandom.current().nextLong(backoff / 5 + 1), TimeUnit.MILLISECONDS);
+            } else {
+                abandon(request.records);
+            }
+        });
+    }
+
+    /**
+     * Sends a request again with a fresh signature, as the backend rejects stale timestamps.
+     * Runs on the retry scheduler, which waits for a free slot in the window like the workers do.
+     */
+    private void retryAsync(PreparedRequest request, int attempt) {
+        //Once stopped, the records are left to be spooled.
+        if (!running) return;
+        Map<String, String> headers = new HashMap<>(request.headers);
+        headers.remove(CollectorSigner.SIGNATURE_HEADER);
+        headers.remove(CollectorSigner.TIMESTAMP_HEADER);
+        collectorController.getSigner().sign(request.body, headers);
+        try {
+            sendAsync(request.withHeaders(headers), attempt);
+        } catch (InterruptedException e) {
+            abandon(request.records);
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            abandon(request.records);
+            eventLog.log(Level.ERROR, destination.getName() + ": Could not retry request to collector: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Gives up on records which could not be delivered. While the dispatcher is stopping, or the write-ahead
+     * spool is enabled, they are kept to be spooled and sent again, otherwise they are counted as failed.
+     * Workers never write to the spool themselves, as an interrupt while writing would close its file channels.
+     */
+    private void abandon(List<CollectorRecord> records) {
+        //Already spooled if the dispatcher stopped while they were in flight.
+        if (!unfinished.remove(records)) return;
+        if (draining || (collectorController.isSpoolEnabled() && spool != null)) {
+            undelivered.addAll(records);
+        } else {
+            metrics.recordFailed(records.size());
+        }
+    }
+
+    private void spoolRecords(List<CollectorRecord> records) {
+        int spooled = 0;
+        if (spool != null) {
+            try {
+                for (CollectorRecord record : records) {
+                    spool.append(record.getPayload());
+                    spooled++;
+                }
+            } catch (IOException e) {
+                eventLog.log(Level.ERROR, destination.getName() + ": Could not write undelivered entries to the collector spool: " + e.getMessage());
+            }
+        }
+        if (spooled < records.size()) {
+            metrics.recordFailed(records.size() - spooled);
+        }
+    }
+
+    /**
+     * Records the outcome of a request, whichever transport sent it.
+     * @param error The reason the request failed without a response, or null.
+     */
+    private DeliveryResult complete(PreparedRequest request, int responseCode, Throwable error, long elapsedNanos) {
+        String description = request.bulk ? "batch" : "data";
+        if (error != null) {
+            metrics.recordRequest(request.entries, request.payloadSize, 0, elapsedNanos, DeliveryResult.RETRY);
+            eventLog.log(Level.ERROR, destination.getName() + ": Error sending " + description + " to collector: " + error.getMessage());
+            return DeliveryResult.RETRY;
+        }
+
+        DeliveryResult result = classify(responseCode);
+        metrics.recordRequest(request.entries, request.payloadSize, request.body.length, elapsedNanos, result);
+        if (result == DeliveryResult.DELIVERED) {
+            eventLog.count(Level.INFO, "sent to " + destination.getName() + (request.bulk ? " in bulk" : ""), request.entries);
+        } else {
+            eventLog.log(Level.WARN, destination.getName() + ": Failed to send " + description + " to collector. Response code: " + responseCode);
+        }
+        return result;
+    }
+
+    private static DeliveryResult classify(int responseCode) {
+        if (responseCode >= 200 && responseCode < 300) return DeliveryResult.DELIVERED;
+        if (responseCode == 408 || responseCode == 429 || responseCode >= 500) return DeliveryResult.RETRY;
+        return DeliveryResult.REJECTED;
+    }
+
+    /**
+     * A signed request ready to be sent, with what is needed to account for it once it completes.
+     */
+    private static class PreparedRequest {
+        private final boolean bulk;
+        private final String url;
+        private final String contentType;
+        private final String contentEncoding;
+        private final Map<String, String> headers;
+        private final byte[] body;
+        //Kept so the request can be spooled if it has not completed when the dispatcher stops.
+        private final List<CollectorRecord> records;
+        private final int entries;
+        private final long payloadSize;
+
+        PreparedRequest(boolean bulk, String url, String contentType, String contentEncoding,
+                        Map<String, String> headers, byte[] body, List<CollectorRecord> records, long payloadSize) {
+            this.bulk = bulk;
+            this.url = url;
+            this.contentType = contentType;
+            this.contentEncoding = contentEncoding;
+            this.headers = headers;
+            this.body = body;
+            this.records = records;
+            this.entries = records.size();
+            this.payloadSize = payloadSize;
+        }
+
+        PreparedRequest withHeaders(Map<String, String> headers) {
+            return new PreparedRequest(bulk, url, contentType, contentEncoding, headers, body, records, payloadSize);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.nccgroup.loggerplusplus.collector;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fixed size event log for the collector.
+ * Repeated events are coalesced per second, so a scan filtering thousands of entries
+ * produces a single "1,532 entries filtered: status 404" line rather than thousands of lines.
+ * Once the buffer is full the oldest events are overwritten.
+ */
+public class CollectorEventLog {
+
+    public enum Level {
+        DEBUG, INFO, WARN, ERROR
+    }
+
+    public static final class Event {
+        private static final SimpleDateFormat TIME_FORMAT = new SimpleDateFormat("HH:mm:ss");
+
+        private final long timestamp;
+        private final Level level;
+        private final String message;
+
+        Event(long timestamp, Level level, String message) {
+            this.timestamp = timestamp;
+            this.level = level;
+            this.message = message;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public Level getLevel() {
+            return level;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            String time;
+            synchronized (TIME_FORMAT) {
+                time = TIME_FORMAT.format(new Date(timestamp));
+            }
+            return time + " [" + level + "] " + message;
+        }
+    }
+
+    private static final int DEFAULT_CAPACITY = 5000;
+    private static final long COALESCE_WINDOW_MS = 1000;
+
+    private static final class Pending {
+        private final Level level;
+        private final boolean entryCount;
+        private long count;
+
+        Pending(Level level, boolean entryCount) {
+            this.level = level;
+            this.entryCount = entryCount;
+        }
+    }
+
+    private final Event[] ring;
+    private int head;
+    private int size;
+    private long version;
+
+    //Events seen during the current window, in arrival order.
+    private final Map<String, Pending> pendingEntryCounts = new LinkedHashMap<>();
+    private final Map<String, Pending> pendingMessages = new LinkedHashMap<>();
+    private long windowStart;
+
+    public CollectorEventLog() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public CollectorEventLog(int capacity) {
+        this.ring = new Event[Math.max(capacity, 1)];
+    }
+
+    /**
+     * Logs a message. Identical messages within the same second are shown once with a repeat count.
+     */
+    public synchronized void log(Level level, String message) {
+        rollWindow(System.currentTimeMillis());
+        Pending pending = pendingMessages.get(message);
+        if (pending == null) {
+            pending = new Pending(level, false);
+            pendingMessages.put(message, pending);
+        }
+        pending.count++;
+    }
+
+    /**
+     * Counts entries against a description such as "filtered: status 404".
+     * Counts are summed per second and logged as "[count] entries [description]".
+     */
+    public void count(Level level, String description) {
+        count(level, description, 1);
+    }
+
+    public synchronized void count(Level level, String description, long entries) {
+        rollWindow(System.currentTimeMillis());
+        Pending pending = pendingEntryCounts.get(description);
+        if (pending == null) {
+            pending = new Pending(level, true);
+            pendingEntryCounts.put(description, pending);
+        }
+        pending.count += entries;
+    }
+
+    /**
+     * @return A copy of the logged events at or above the given level, oldest first.
+     */
+    public synchronized List<Event> getEvents(Level minimumLevel) {
+        rollWindow(System.currentTimeMillis());
+        List<Event> events = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Event event = ring[(head + i) % ring.length];
+            if (event.level.compareTo(minimumLevel) >= 0) events.add(event);
+        }
+        return events;
+    }
+
+    /**
+     * @return A counter which changes whenever events are added or cleared.
+     */
+    public synchronized long getVersion() {
+        rollWindow(System.currentTimeMillis());
+        return version;
+    }
+
+    public synchronized void clear() {
+        pendingEntryCounts.clear();
+        pendingMessages.clear();
+        for (int i = 0; i < ring.length; i++) ring[i] = null;
+        head = 0;
+        size = 0;
+        version++;
+    }
+
+    /**
+     * Flushes the coalesced events of the previous window once it has elapsed.
+     */
+    private void rollWindow(long now) {
+        if (now - windowStart < COALESCE_WINDOW_MS) return;
+        flush(pendingEntryCounts);
+        flush(pendingMessages);
+        windowStart = now - (now % COALESCE_WINDOW_MS);
+    }
+
+    private void flush(Map<String, Pending> pendingEvents) {
+        if (pendingEvents.isEmpty()) return;
+        for (Map.Entry<String, Pending> entry : pendingEvents.entrySet()) {
+            Pending pending = entry.getValue();
+            String message;
+            if (pending.entryCount) {
+                message = String.format("%,d %s %s", pending.count, pending.count == 1 ? "entry" : "entries", entry.getKey());
+            } else if (pending.count > 1) {
+                message = String.format("%s (repeated %,d times)", entry.getKey(), pending.count);
+            } else {
+                message = entry.getKey();
+            }
+            append(new Event(windowStart, pending.level, message));
+        }
+        pendingEvents.clear();
+    }
+
+    private void append(Event event) {
+        if (size < ring.length) {
+            ring[(head + size) % ring.length] = event;
+            size++;
+        } else {
+            ring[head] = event;
+            head = (head + 1) % ring.length;
+        }
+        version++;
+    }
+}
@@ -0,0 +1,208 @@
+package com.nccgroup.loggerplusplus.collector;
+
+import com.nccgroup.loggerplusplus.filter.ComparisonOperator;
+import com.nccgroup.loggerplusplus.filter.FilterExpression;
+import com.nccgroup.loggerplusplus.filter.LogicalOperator;
+import com.nccgroup.loggerplusplus.filter.parser.ASTComparison;
+import com.nccgroup.loggerplusplus.filter.parser.ASTExpression;
+import com.nccgroup.loggerplusplus.filter.parser.Node;
+import com.nccgroup.loggerplusplus.logentry.LogEntry;
+import com.nccgroup.loggerplusplus.logentry.LogEntryField;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+/**
+ * Selects which completed entries are sent to the collector using an expression in the filter DSL.
+ * Comparisons on the extension, hostname and status code are compiled into direct checks on the entry.
+ * A filter made only of those never goes through the AST evaluator. Otherwise, if the filter is an AND
+ * at the top level, its compiled conditions are checked first so most entries are rejected without
+ * a full evaluation.
+ */
+public class CollectorFilter {
+
+    interface Condition {
+        boolean test(LogEntry logEntry);
+    }
+
+    private final FilterExpression filterExpression;
+    private final Condition compiled;
+    private final List<Condition> prechecks;
+
+    public CollectorFilter(FilterExpression filterExpression) {
+        this.filterExpression = filterExpression;
+        this.compiled = compile(filterExpression.getAst());
+        this.prechecks = new ArrayList<>();
+
+        ASTExpression root = filterExpression.getAst();
+        if (compiled == null && !root.isInverse() && root.getLogicalOperator() == LogicalOperator.AND) {
+            for (int i = 0; i < root.jjtGetNumChildren(); i++) {
+                Condition condition = compile(root.jjtGetChild(i));
+                if (condition != null) prechecks.add(condition);
+            }
+        }
+    }
+
+    public boolean matches(LogEntry logEntry) {
+        if (compiled != null) return compiled.test(logEntry);
+        for (Condition precheck : prechecks) {
+            if (!precheck.test(logEntry)) return false;
+        }
+        return filterExpression.matches(logEntry);
+    }
+
+    /**
+     * @return true if the filter is evaluated entirely by compiled conditions.
+     */
+    public boolean isFullyCompiled() {
+        return compiled != null;
+    }
+
+    @Override
+    public String toString() {
+        return filterExpression.toString();
+    }
+
+    /**
+     * @return A compiled condition equivalent to the node, or null if the node needs the full evaluator.
+     */
+    private static Condition compile(Node node) {
+        if (node instanceof ASTExpression) return compileExpression((ASTExpression) node);
+        if (node instanceof ASTComparison) return compileComparison((ASTComparison) node);
+        return null;
+    }
+
+    private static Condition compileExpression(ASTExpression expression) {
+        int childCount = expression.jjtGetNumChildren();
+        if (childCount == 0) return null;
+        Condition[] children = new Condition[childCount];
+        for (int i = 0; i < childCount; i++) {
+            children[i] = compile(expression.jjtGetChild(i));
+            if (children[i] == null) return null;
+        }
+
+        boolean inverse = expression.isInverse();
+        if (expression.getLogicalOperator() == null || childCount == 1) {
+            Condition child = children[0];
+            return inverse ? logEntry -> !child.test(logEntry) : child;
+        }
+
+        switch (expression.getLogicalOperator()) {
+            case AND:
+                return logEntry -> {
+                    for (Condition child : children) {
+                        if (!child.test(logEntry)) return inverse;
+                    }
+                    return !inverse;
+                };
+            case OR:
+                return logEntry -> {
+                    for (Condition child : children) {
+                        if (child.test(logEntry)) return !inverse;
+                    }
+                    return inverse;
+                };
+            case XOR:
+                return logEntry -> {
+                    boolean result = false;
+                    for (Condition child : children) {
+                        result ^= child.test(logEntry);
+                    }
+                    return result ^ inverse;
+                };
+            default:
+                return null;
+        }
+    }
+
+    private static Condition compileComparison(ASTComparison comparison) {
+        if (!(comparison.getLeft() instanceof LogEntryField) || comparison.getRight() instanceof LogEntryField) return null;
+        ComparisonOperator op = comparison.getComparisonOperator();
+        Object right = comparison.getRight();
+
+        switch ((LogEntryField) comparison.getLeft()) {
+            case EXTENSION:
+                return compileString(LogEntry::getUrlExtension, op, right);
+            case HOSTNAME:
+                return compileString(LogEntry::getHostname, op, right);
+            case STATUS:
+                return compileStatus(op, right);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Mirrors the case insensitive string comparisons of the filter evaluator.
+     */
+    private static Condition compileString(Function<LogEntry, String> field, ComparisonOperator op, Object right) {
+        if (op == ComparisonOperator.IN && right instanceof Collection) {
+            TreeSet<String> values = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+            for (Object item : (Collection<?>) right) {
+                values.add(String.valueOf(item));
+            }
+            return logEntry -> values.contains(valueOf(field.apply(logEntry)));
+        }
+        if (!(right instanceof String)) return null;
+
+        String value = (String) right;
+        switch (op) {
+            case EQUAL:
+                return logEntry -> valueOf(field.apply(logEntry)).equalsIgnoreCase(value);
+            case NOT_EQUAL:
+                return logEntry -> !valueOf(field.apply(logEntry)).equalsIgnoreCase(value);
+            case CONTAINS:
+                return logEntry -> StringUtils.containsIgnoreCase(valueOf(field.apply(logEntry)), value);
+            default:
+                return null;
+        }
+    }
+
+    private static Condition compileStatus(ComparisonOperator op, Object right) {
+        if (op == ComparisonOperator.IN && right instanceof Collection) {
+            //The evaluator compares the string forms, so only plain integers can ever match a status.
+            BitSet statuses = new BitSet();
+            for (Object item : (Collection<?>) right) {
+                String itemString = String.valueOf(item);
+                if (!itemString.matches("-?\\d{1,5}")) continue;
+                int status = Integer.parseInt(itemString);
+                if (status >= Short.MIN_VALUE && status <= Short.MAX_VALUE) statuses.set(status - Short.MIN_VALUE);
+            }
+            return logEntry -> logEntry.getResponseStatus() != null
+                    && statuses.get(logEntry.getResponseStatus() - Short.MIN_VALUE);
+        }
+        if (!(right instanceof Number)) return null;
+
+        double value = ((Number) right).doubleValue();
+        switch (op) {
+            case EQUAL:
+                return logEntry -> status(logEntry) == value;
+            case NOT_EQUAL:
+                return logEntry -> status(logEntry) != value;
+            case GREATER_THAN:
+                return logEntry -> status(logEntry) > value;
+            case LESS_THAN:
+                return logEntry -> status(logEntry) < value;
+            case GREATER_THAN_EQUAL:
+                return logEntry -> status(logEntry) >= value;
+            case LESS_THAN_EQUAL:
+                return logEntry -> status(logEntry) <= value;
+            default:
+                return null;
+        }
+    }
+
+    private static int status(LogEntry logEntry) {
+        Short status = logEntry.getResponseStatus();
+        return status != null ? status : -1;
+    }
+
+    private static String valueOf(String value) {
+        return value != null ? value : "";
+    }
+}
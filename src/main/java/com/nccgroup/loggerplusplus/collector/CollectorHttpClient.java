@@ -0,0 +1,82 @@
+package com.nccgroup.loggerplusplus.collector;
+
+import org.apache.http.Header;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keep-alive HTTP client used to ship entries to the collector.
+ * Connections are pooled per route and reused between sends, so only the first request
+ * to a backend pays for the TCP/TLS handshake.
+ */
+public class CollectorHttpClient {
+
+    private static final int CONNECT_TIMEOUT_MS = 10000;
+    private static final int SOCKET_TIMEOUT_MS = 30000;
+    private static final int IDLE_EVICTION_SECONDS = 30;
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+
+    public CollectorHttpClient(int maxConnectionsPerRoute) {
+        this.connectionManager = new PoolingHttpClientConnectionManager();
+        setMaxConnectionsPerRoute(maxConnectionsPerRoute);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(CONNECT_TIMEOUT_MS)
+                .setSocketTimeout(SOCKET_TIMEOUT_MS)
+                .setConnectionRequestTimeout(SOCKET_TIMEOUT_MS)
+                .build();
+
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .evictIdleConnections(IDLE_EVICTION_SECONDS, TimeUnit.SECONDS)
+                .evictExpiredConnections()
+                .disableCookieManagement()
+                .build();
+    }
+
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        int perRoute = Math.max(maxConnectionsPerRoute, 1);
+        connectionManager.setDefaultMaxPerRoute(perRoute);
+        connectionManager.setMaxTotal(Math.max(perRoute * 2, 20));
+    }
+
+    /**
+     * POSTs the body and returns the response status. The response entity is always consumed
+     * so the connection is released back into the pool.
+     * @param headers Additional headers, such as the request signature.
+     */
+    public CollectorResponse post(String url, String contentType, String contentEncoding, Map<String, String> headers, byte[] body) throws IOException {
+        HttpPost post = new HttpPost(url);
+        post.setHeader("Content-Type", contentType);
+        if (contentEncoding != null) {
+            post.setHeader("Content-Encoding", contentEncoding);
+        }
+        headers.forEach(post::setHeader);
+        post.setEntity(new ByteArrayEntity(body));
+
+        try (CloseableHttpResponse response = httpClient.execute(post)) {
+            EntityUtils.consumeQuietly(response.getEntity());
+            Header retryAfter = response.getFirstHeader("Retry-After");
+            return new CollectorResponse(response.getStatusLine().getStatusCode(), retryAfter != null ? retryAfter.getValue() : null);
+        }
+    }
+
+    public void close() {
+        try {
+            httpClient.close();
+        } catch (IOException ignored) {}
+    }
+}
@@ -0,0 +1,132 @@
+package com.nccgroup.loggerplusplus.collector;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throughput, error and latency counters for the collector.
+ * All counters are cumulative since the extension was loaded. Rates are derived by the consumers,
+ * either the collector tab or whatever scrapes the Prometheus endpoint.
+ */
+public class CollectorMetrics {
+
+    private final LongAdder entriesAccepted = new LongAdder();
+    private final LongAdder entriesSent = new LongAdder();
+    private final LongAdder entriesRefused = new LongAdder();
+    private final LongAdder entriesFailed = new LongAdder();
+    private final LongAdder entriesDuplicate = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder requestErrors = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder payloadBytes = new LongAdder();
+    private final LongAdder wireBytes = new LongAdder();
+
+    //Time from an entry being queued to its delivery attempt starting.
+    private final LatencyHistogram queueLatency = new LatencyHistogram();
+    //Round trip time of requests to the backend.
+    private final LatencyHistogram requestLatency = new LatencyHistogram();
+
+    void recordAccepted() {
+        entriesAccepted.increment();
+    }
+
+    void recordDequeue(CollectorRecord record, long now) {
+        queueLatency.recordNanos(now - record.getEnqueuedAt());
+    }
+
+    /**
+     * Records the outcome of a single request to the backend.
+     * @param entries The number of entries carried by the request.
+     * @param payloadSize The size of the entries before compression.
+     * @param wireSize The size of the request body actually sent.
+     */
+    void recordRequest(int entries, long payloadSize, long wireSize, long latencyNanos,
+                              CollectorDispatcher.DeliveryResult result) {
+        requests.increment();
+        requestLatency.recordNanos(latencyNanos);
+        payloadBytes.add(payloadSize);
+        wireBytes.add(wireSize);
+        switch (result) {
+            case DELIVERED:
+                entriesSent.add(entries);
+                break;
+            case REJECTED:
+                requestErrors.increment();
+                entriesRefused.add(entries);
+                break;
+            case RETRY:
+                requestErrors.increment();
+                break;
+        }
+    }
+
+    /**
+     * Records entries which will not be delivered, after the backend was unavailable.
+     */
+    void recordFailed(int entries) {
+        entriesFailed.add(entries);
+    }
+
+    void recordDuplicate() {
+        entriesDuplicate.increment();
+    }
+
+    void recordRetry() {
+        retries.increment();
+    }
+
+    public long getEntriesAccepted() {
+        return entriesAccepted.sum();
+    }
+
+    public long getEntriesSent() {
+        return entriesSent.sum();
+    }
+
+    public long getEntriesRefused() {
+        return entriesRefused.sum();
+    }
+
+    public long getEntriesFailed() {
+        return entriesFailed.sum();
+    }
+
+    public long getEntriesDuplicate() {
+        return entriesDuplicate.sum();
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getRequestErrors() {
+        return requestErrors.sum();
+    }
+
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    public long getPayloadBytes() {
+        return payloadBytes.sum();
+    }
+
+    public long getWireBytes() {
+        return wireBytes.sum();
+    }
+
+    /**
+     * @return Uncompressed size over the size sent, or 1 if nothing has been sent.
+     */
+    public double getCompressionRatio() {
+        long wire = wireBytes.sum();
+        return wire == 0 ? 1.0 : (double) payloadBytes.sum() / wire;
+    }
+
+    public LatencyHistogram getQueueLatency() {
+        return queueLatency;
+    }
+
+    public LatencyHistogram getRequestLatency() {
+        return requestLatency;
+    }
+}
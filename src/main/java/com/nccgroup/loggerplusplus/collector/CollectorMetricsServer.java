@@ -0,0 +1,176 @@
+package com.nccgroup.loggerplusplus.collector;
+
+import com.nccgroup.loggerplusplus.LoggerPlusPlus;
+import com.nccgroup.loggerplusplus.collector.CollectorEventLog.Level;
+import com.nccgroup.loggerplusplus.logview.processor.LogProcessor;
+import com.nccgroup.loggerplusplus.util.NamedThreadFactory;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the collector metrics in the Prometheus text exposition format at /metrics.
+ * The server only listens on the loopback interface.
+ */
+public class CollectorMetricsServer {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final CollectorController collectorController;
+    private HttpServer server;
+    private ExecutorService executor;
+    private int port;
+
+    public CollectorMetricsServer(CollectorController collectorController) {
+        this.collectorController = collectorController;
+    }
+
+    /**
+     * Starts, restarts or stops the server to match the port. A port of 0 disables the server.
+     */
+    public synchronized void setPort(int port) {
+        if (port == this.port && (server != null || port == 0)) return;
+        stop();
+        this.port = port;
+        if (port <= 0) return;
+
+        try {
+            executor = Executors.newSingleThreadExecutor(new NamedThreadFactory("LPP-Collector-Metrics"));
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+            server.createContext("/metrics", this::handle);
+            server.setExecutor(executor);
+            server.start();
+            collectorController.getEventLog().log(Level.INFO, "Serving collector metrics at http://127.0.0.1:" + port + "/metrics");
+        } catch (IOException e) {
+            stop();
+            collectorController.getEventLog().log(Level.ERROR, "Could not start metrics server on port " + port + ": " + e.getMessage());
+        }
+    }
+
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        byte[] body = render().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    String render() {
+        CollectorMetrics metrics = collectorController.getMetrics();
+        List<CollectorDispatcher> dispatchers = collectorController.getDispatchers();
+        StringBuilder out = new StringBuilder(4096);
+
+        counter(out, "lpp_collector_entries_accepted_total", "Entries accepted into the queue or spool.", metrics.getEntriesAccepted());
+        counter(out, "lpp_collector_entries_sent_total", "Entries accepted by the backend.", metrics.getEntriesSent());
+        counter(out, "lpp_collector_entries_refused_total", "Entries refused by the backend with a 4xx response.", metrics.getEntriesRefused());
+        counter(out, "lpp_collector_entries_failed_total", "Entries abandoned after the backend was unavailable.", metrics.getEntriesFailed());
+        header(out, "lpp_collector_entries_dropped_total", "Entries dropped because the queue or spool was full.", "counter");
+        for (CollectorDispatcher dispatcher : dispatchers) {
+            CollectorSpool spool = dispatcher.getSpool();
+            labelled(out, "lpp_collector_entries_dropped_total", dispatcher,
+                    dispatcher.getQueue().getDroppedCount() + (spool != null ? spool.getDroppedCount() : 0));
+        }
+        counter(out, "lpp_collector_entries_duplicate_total", "Entries skipped or sent as a reference because their content was recently sent.", metrics.getEntriesDuplicate());
+        counter(out, "lpp_collector_requests_total", "Requests made to the backend.", metrics.getRequests());
+        counter(out, "lpp_collector_request_errors_total", "Requests which failed or returned a non 2xx response.", metrics.getRequestErrors());
+        counter(out, "lpp_collector_retries_total", "Delivery attempts retried after a failure.", metrics.getRetries());
+        counter(out, "lpp_collector_payload_bytes_total", "Bytes of encoded entries before compression.", metrics.getPayloadBytes());
+        counter(out, "lpp_collector_sent_bytes_total", "Bytes of request bodies sent to the backend.", metrics.getWireBytes());
+
+        header(out, "lpp_collector_queue_entries", "Entries waiting in the memory queue.", "gauge");
+        for (CollectorDispatcher dispatcher : dispatchers) {
+            labelled(out, "lpp_collector_queue_entries", dispatcher, dispatcher.getQueue().size());
+        }
+        header(out, "lpp_collector_queue_bytes", "Bytes waiting in the memory queue.", "gauge");
+        for (CollectorDispatcher dispatcher : dispatchers) {
+            labelled(out, "lpp_collector_queue_bytes", dispatcher, dispatcher.getQueue().sizeInBytes());
+        }
+        header(out, "lpp_collector_spool_entries", "Entries waiting in the disk spool.", "gauge");
+        for (CollectorDispatcher dispatcher : dispatchers) {
+            labelled(out, "lpp_collector_spool_entries", dispatcher, dispatcher.getSpool() != null ? dispatcher.getSpool().getPendingRecords() : 0);
+        }
+        header(out, "lpp_collector_spool_bytes", "Bytes waiting in the disk spool.", "gauge");
+        for (CollectorDispatcher dispatcher : dispatchers) {
+            labelled(out, "lpp_collector_spool_bytes", dispatcher, dispatcher.getSpool() != null ? dispatcher.getSpool().getPendingBytes() : 0);
+        }
+        header(out, "lpp_collector_concurrency_limit", "Requests allowed in flight by the adaptive concurrency limit.", "gauge");
+        for (CollectorDispatcher dispatcher : dispatchers) {
+            labelled(out, "lpp_collector_concurrency_limit", dispatcher, dispatcher.getLimiter().getLimit());
+        }
+        header(out, "lpp_collector_in_flight_requests", "Requests currently in flight.", "gauge");
+        for (CollectorDispatcher dispatcher : dispatchers) {
+            labelled(out, "lpp_collector_in_flight_requests", dispatcher, dispatcher.getLimiter().getInFlight());
+        }
+
+        //Not part of the collector, but it decides how quickly entries reach it.
+        LogProcessor logProcessor = LoggerPlusPlus.instance != null ? LoggerPlusPlus.instance.getLogProcessor() : null;
+        if (logProcessor != null) {
+            gauge(out, "lpp_processor_active_tasks", "Entries being processed by the log processor threads.", logProcessor.getActiveProcessingTasks());
+            gauge(out, "lpp_processor_queued_tasks", "Entries waiting for a log processor thread.", logProcessor.getQueuedProcessingTasks());
+            counter(out, "lpp_processor_caller_runs_total", "Entries processed on the Burp thread which produced them because the processing queue was full.", logProcessor.getCallerRunsCount());
+        }
+
+        summary(out, "lpp_collector_queue_latency_seconds", "Time from an entry being queued to its delivery starting.", metrics.getQueueLatency());
+        summary(out, "lpp_collector_request_latency_seconds", "Round trip time of requests to the backend.", metrics.getRequestLatency());
+        return out.toString();
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        header(out, name, help, "counter");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, long value) {
+        header(out, name, help, "gauge");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    /**
+     * Writes a sample labelled with the destination it belongs to. The header must already have been written.
+     */
+    private static void labelled(StringBuilder out, String name, CollectorDispatcher dispatcher, long value) {
+        String destination = dispatcher.getDestination().getName().replace("\\", "\\\\").replace("\"", "\\\"");
+        out.append(name).append("{destination=\"").append(destination).append("\"} ").append(value).append('\n');
+    }
+
+    private static void summary(StringBuilder out, String name, String help, LatencyHistogram histogram) {
+        header(out, name, help, "summary");
+        for (double quantile : QUANTILES) {
+            out.append(name).append("{quantile=\"").append(quantile).append("\"} ")
+                    .append(seconds(histogram.getValueAtQuantile(quantile))).append('\n');
+        }
+        out.append(name).append("_sum ").append(seconds(histogram.getSum())).append('\n');
+        out.append(name).append("_count ").append(histogram.getCount()).append('\n');
+    }
+
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static String seconds(long micros) {
+        return String.format(Locale.ROOT, "%.6f", micros / 1_000_000.0);
+    }
+}
@@ -0,0 +1,215 @@
+package com.nccgroup.loggerplusplus.collector;
+
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.nccgroup.loggerplusplus.logentry.LogEntry;
+import com.nccgroup.loggerplusplus.logentry.LogEntryField;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Streams collector payloads straight to UTF-8 JSON, or to CBOR (see {@link WireFormat}).
+ * Payloads carry no credentials, requests are authenticated by {@link CollectorSigner} when they are sent.
+ * Bodies are escaped from the raw message bytes as they are written, rather than being decoded
+ * into intermediate strings, so a large response is only held once more in the output buffer.
+ * In CBOR the bodies are copied as byte strings without any escaping.
+ */
+public class CollectorPayloadWriter {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final CBORFactory CBOR_FACTORY = new CBORFactory();
+    private static final int FIELD_OVERHEAD = 256;
+
+    private CollectorPayloadWriter() {}
+
+    /**
+     * @param projection Decides which log fields are included and how much of each message is sent.
+     * @param encoding How bodies are represented in JSON. Ignored for CBOR, where bodies are always raw bytes.
+     * @param contentHash Hash of the entry content when deduplication is enabled, otherwise null.
+     */
+    public static byte[] write(String subsystem, String host, LogEntry logEntry, byte[] request, byte[] response,
+                               CollectorProjection projection, BodyEncoding encoding, WireFormat format,
+                               String contentHash) throws IOException {
+        if (request == null) request = new byte[0];
+        if (response == null) response = new byte[0];
+        int requestLength = projection.requestLength(logEntry, request);
+        int responseLength = projection.responseLength(logEntry, response);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(estimateSize(requestLength + (long) responseLength, encoding, format));
+        try (JsonGenerator generator = createGenerator(out, format)) {
+            generator.writeStartObject();
+            generator.writeStringField("subsystem", subsystem != null ? subsystem : "");
+            generator.writeStringField("host", host != null ? host : "");
+            writeBody(generator, "request", request, requestLength, encoding, format);
+            writeBody(generator, "response", response, responseLength, encoding, format);
+            if (projection.isStripped(logEntry)) {
+                generator.writeBooleanField("response_stripped", true);
+            }
+            if (!projection.getFields().isEmpty()) {
+                writeFields(generator, logEntry, projection.getFields());
+            }
+            if (contentHash != null) {
+                generator.writeStringField("content_hash", contentHash);
+            }
+            generator.writeEndObject();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes a reference record standing in for an entry whose content was recently sent in full.
+     */
+    public static byte[] writeReference(String subsystem, String host, String method, String url,
+                                        String contentHash, int count, WireFormat format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(FIELD_OVERHEAD + (url != null ? url.length() : 0));
+        try (JsonGenerator generator = createGenerator(out, format)) {
+            generator.writeStartObject();
+            generator.writeStringField("type", "reference");
+            generator.writeStringField("subsystem", subsystem != null ? subsystem : "");
+            generator.writeStringField("host", host != null ? host : "");
+            generator.writeStringField("method", method != null ? method : "");
+            generator.writeStringField("url", url != null ? url : "");
+            generator.writeStringField("content_hash", contentHash);
+            generator.writeNumberField("count", count);
+            generator.writeEndObject();
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes the record sent by the connection test.
+     */
+    public static byte[] writeTest(WireFormat format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (JsonGenerator generator = createGenerator(out, format)) {
+            generator.writeStartObject();
+            generator.writeBooleanField("test", true);
+            generator.writeEndObject();
+        }
+        return out.toByteArray();
+    }
+
+    private static JsonGenerator createGenerator(ByteArrayOutputStream out, WireFormat format) throws IOException {
+        return format == WireFormat.CBOR ? CBOR_FACTORY.createGenerator(out) : JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8);
+    }
+
+    /**
+     * Writes the first length bytes of a message. When the message is base64 encoded a sibling "[name]_encoding"
+     * field is added so the backend knows to decode it, and when it has been cut short a "[name]_truncated"
+     * field records the original length.
+     */
+    private static void writeBody(JsonGenerator generator, String name, byte[] body, int length,
+                                  BodyEncoding encoding, WireFormat format) throws IOException {
+        boolean base64 = encoding == BodyEncoding.BASE64
+                || (encoding == BodyEncoding.AUTO && !isValidUtf8(body, length));
+        generator.writeFieldName(name);
+        if (format == WireFormat.CBOR) {
+            //A CBOR byte string, the backend receives the bytes exactly as they were captured.
+            generator.writeBinary(body, 0, length);
+        } else if (base64) {
+            generator.writeBinary(Base64Variants.MIME_NO_LINEFEEDS, body, 0, length);
+            generator.writeStringField(name + "_encoding", "base64");
+        } else if (encoding == BodyEncoding.TEXT && !isValidUtf8(body, length)) {
+            //Invalid sequences must be replaced, raw bytes would produce invalid JSON.
+            generator.writeString(new String(body, 0, length, StandardCharsets.UTF_8));
+        } else {
+            generator.writeUTF8String(body, 0, length);
+        }
+        if (length < body.length) {
+            generator.writeNumberField(name + "_truncated", body.length);
+        }
+    }
+
+    /**
+     * Writes the selected log fields as a "fields" object keyed by their full label, e.g. Response.Status.
+     */
+    private static void writeFields(JsonGenerator generator, LogEntry logEntry, List<LogEntryField> fields) throws IOException {
+        generator.writeObjectFieldStart("fields");
+        for (LogEntryField field : fields) {
+            Object value;
+            try {
+                value = logEntry.getValueByKey(field);
+            } catch (Exception e) {
+                continue;
+            }
+            if (value == null) continue;
+
+            String label = field.getFullLabel();
+            if (value instanceof Integer || value instanceof Short || value instanceof Long) {
+                generator.writeNumberField(label, ((Number) value).longValue());
+            } else if (value instanceof Double) {
+                generator.writeNumberField(label, (Double) value);
+            } else if (value instanceof Boolean) {
+                generator.writeBooleanField(label, (Boolean) value);
+            } else if (value instanceof Date) {
+                generator.writeNumberField(label, ((Date) value).getTime());
+            } else if (value instanceof Collection) {
+                generator.writeArrayFieldStart(label);
+                for (Object item : (Collection<?>) value) {
+                    generator.writeString(String.valueOf(item));
+                }
+                generator.writeEndArray();
+            } else {
+                generator.writeStringField(label, value.toString());
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    private static int estimateSize(long bodies, BodyEncoding encoding, WireFormat format) {
+        //Base64 expands by a third, text typically only grows slightly through escaping and CBOR not at all.
+        long estimate = format == WireFormat.CBOR ? bodies
+                : encoding == BodyEncoding.BASE64 ? bodies * 4 / 3 : bodies + bodies / 16;
+        return (int) Math.min(estimate + FIELD_OVERHEAD, Integer.MAX_VALUE - 8);
+    }
+
+    /**
+     * Checks that the bytes form well-formed UTF-8, rejecting overlong encodings and surrogates.
+     */
+    static boolean isValidUtf8(byte[] bytes, int length) {
+        int i = 0;
+        while (i < length) {
+            int b = bytes[i];
+            if (b >= 0) {
+                i++;
+                continue;
+            }
+            int lead = b & 0xFF;
+            int continuation;
+            int minValue;
+            int value;
+            if (lead >= 0xC2 && lead <= 0xDF) {
+                continuation = 1;
+                minValue = 0x80;
+                value = lead & 0x1F;
+            } else if (lead >= 0xE0 && lead <= 0xEF) {
+                continuation = 2;
+                minValue = 0x800;
+                value = lead & 0x0F;
+            } else if (lead >= 0xF0 && lead <= 0xF4) {
+                continuation = 3;
+                minValue = 0x10000;
+                value = lead & 0x07;
+            } else {
+                return false;
+            }
+            if (i + continuation >= length) return false;
+            for (int j = 1; j <= continuation; j++) {
+                int next = bytes[i + j] & 0xFF;
+                if ((next & 0xC0) != 0x80) return false;
+                value = (value << 6) | (next & 0x3F);
+            }
+            if (value < minValue || value > 0x10FFFF || (value >= 0xD800 && value <= 0xDFFF)) return false;
+            i += continuation + 1;
+        }
+        return true;
+    }
+}
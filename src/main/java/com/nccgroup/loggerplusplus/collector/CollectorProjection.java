@@ -0,0 +1,155 @@
+package com.nccgroup.loggerplusplus.collector;
+
+import burp.api.montoya.http.message.MimeType;
+import com.nccgroup.loggerplusplus.logentry.LogEntry;
+import com.nccgroup.loggerplusplus.logentry.LogEntryField;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Decides how much of an entry is shipped to the collector.
+ * Selected log fields are sent alongside the raw messages, bodies can be capped per response MIME type,
+ * and binary responses (images, media, fonts, etc.) can have their body removed entirely.
+ * Headers are always sent in full.
+ */
+public class CollectorProjection {
+
+    static final String DEFAULT_CAP = "*";
+    static final int UNLIMITED = -1;
+
+    private final List<LogEntryField> fields;
+    private final Map<String, Integer> bodyCaps;
+    private final int defaultCap;
+    private final boolean stripBinary;
+
+    /**
+     * @param bodyCaps Comma separated caps in bytes keyed by MIME type, e.g. "HTML=1m, JSON=512k, *=256k".
+     * @throws IllegalArgumentException if the caps could not be parsed.
+     */
+    public CollectorProjection(List<LogEntryField> fields, String bodyCaps, boolean stripBinary) {
+        this.fields = fields != null ? Collections.unmodifiableList(new ArrayList<>(fields)) : Collections.emptyList();
+        this.bodyCaps = parseBodyCaps(bodyCaps);
+        this.defaultCap = this.bodyCaps.getOrDefault(DEFAULT_CAP, UNLIMITED);
+        this.stripBinary = stripBinary;
+    }
+
+    public List<LogEntryField> getFields() {
+        return fields;
+    }
+
+    /**
+     * @return The number of leading request bytes to send, headers included.
+     */
+    public int requestLength(LogEntry logEntry, byte[] request) {
+        int bodyOffset = bodyOffset(logEntry.getRequest() != null ? logEntry.getRequest().bodyOffset() : 0, request);
+        return truncatedLength(request, bodyOffset, defaultCap);
+    }
+
+    /**
+     * @return The number of leading response bytes to send, headers included.
+     */
+    public int responseLength(LogEntry logEntry, byte[] response) {
+        int bodyOffset = bodyOffset(logEntry.getResponse() != null ? logEntry.getResponse().bodyOffset() : 0, response);
+        MimeType mimeType = mimeTypeOf(logEntry);
+        if (isStripped(mimeType)) return bodyOffset;
+
+        int cap = mimeType != null ? bodyCaps.getOrDefault(mimeType.name(), defaultCap) : defaultCap;
+        return truncatedLength(response, bodyOffset, cap);
+    }
+
+    public boolean isStripped(LogEntry logEntry) {
+        return isStripped(mimeTypeOf(logEntry));
+    }
+
+    private boolean isStripped(MimeType mimeType) {
+        return stripBinary && mimeType != null && isBinary(mimeType);
+    }
+
+    /**
+     * The inferred type is preferred as servers frequently state the wrong content type.
+     */
+    private static MimeType mimeTypeOf(LogEntry logEntry) {
+        MimeType inferred = logEntry.getResponseInferredMimeType();
+        if (inferred != null && !"UNRECOGNIZED".equals(inferred.name()) && !"NONE".equals(inferred.name())) {
+            return inferred;
+        }
+        return logEntry.getResponseMimeType() != null ? logEntry.getResponseMimeType() : inferred;
+    }
+
+    static boolean isBinary(MimeType mimeType) {
+        //Matched by name so constants added by newer Burp versions are classified too.
+        String name = mimeType.name();
+        if (name.equals("IMAGE_SVG_XML")) return false;
+        return name.startsWith("IMAGE_") || name.startsWith("FONT_") || name.startsWith("APPLICATION_")
+                || name.equals("SOUND") || name.equals("VIDEO") || name.equals("LEGACY_SER_AMF");
+    }
+
+    /**
+     * Cuts a message to its headers plus at most cap body bytes. The cut is moved back to the start of a
+     * UTF-8 sequence so a truncated text body is still valid text.
+     */
+    static int truncatedLength(byte[] message, int bodyOffset, int cap) {
+        if (message == null) return 0;
+        if (cap < 0 || message.length - bodyOffset <= cap) return message.length;
+
+        int end = bodyOffset + cap;
+        int minimum = Math.max(bodyOffset, end - 3);
+        while (end > minimum && (message[end] & 0xC0) == 0x80) {
+            end--;
+        }
+        return end;
+    }
+
+    static int bodyOffset(int offset, byte[] message) {
+        if (message == null) return 0;
+        return Math.min(Math.max(offset, 0), message.length);
+    }
+
+    /**
+     * Parses caps of the form "TYPE=size" separated by commas. Types are Burp MIME type names such as
+     * HTML, JSON or IMAGE_PNG, with * as the default for everything else. Sizes are in bytes
+     * and may be suffixed with k or m.
+     * @throws IllegalArgumentException if an entry is malformed.
+     */
+    static Map<String, Integer> parseBodyCaps(String bodyCaps) {
+        Map<String, Integer> caps = new HashMap<>();
+        if (bodyCaps == null || bodyCaps.trim().isEmpty()) return caps;
+
+        for (String entry : bodyCaps.split(",")) {
+            if (entry.trim().isEmpty()) continue;
+            int separator = entry.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected TYPE=size but found \"" + entry.trim() + "\"");
+            }
+            String type = entry.substring(0, separator).trim().toUpperCase(Locale.ROOT);
+            caps.put(type, parseSize(entry.substring(separator + 1).trim()));
+        }
+        return caps;
+    }
+
+    private static int parseSize(String size) {
+        String lower = size.toLowerCase(Locale.ROOT);
+        long multiplier = 1;
+        if (lower.endsWith("k")) {
+            multiplier = 1024;
+            lower = lower.substring(0, lower.length() - 1);
+        } else if (lower.endsWith("m")) {
+            multiplier = 1024 * 1024;
+            lower = lower.substring(0, lower.length() - 1);
+        }
+        try {
+            long value = Long.parseLong(lower.trim()) * multiplier;
+            if (value < 0 || value > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Body cap out of range: " + size);
+            }
+            return (int) value;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid body cap: " + size);
+        }
+    }
+}
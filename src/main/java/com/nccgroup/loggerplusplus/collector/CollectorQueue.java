@@ -0,0 +1,342 @@
+package com.nccgroup.loggerplusplus.collector;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded ring buffer sitting between the log processor and the collector workers.
+ * The queue is limited both in number of records and in total payload bytes, and applies
+ * the configured {@link OverflowPolicy} when a new record does not fit.
+ */
+public class CollectorQueue {
+
+    //How long a producer waits for space under the BLOCK policy before the record is dropped.
+    //Producers include Burp's own threads, so a backend which is down must not stall them indefinitely.
+    static final long MAX_BLOCK_MILLIS = 5000;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    private final AtomicLong enqueuedCount = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong spilledCount = new AtomicLong();
+
+    private CollectorRecord[] ring;
+    private int capacity;
+    private int head;
+    private int size;
+    private long bytes;
+
+    private long byteCapacity;
+    private OverflowPolicy overflowPolicy;
+    private CollectorSpool spool;
+    private boolean closed;
+
+    public CollectorQueue(int capacity, long byteCapacity, OverflowPolicy overflowPolicy) {
+        this.capacity = Math.max(capacity, 1);
+        this.ring = new CollectorRecord[this.capacity];
+        this.byteCapacity = byteCapacity;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Adds a record to the queue, applying the overflow policy if the queue is full.
+     * @return true if the record was queued or spilled, false if it was dropped.
+     */
+    public boolean offer(CollectorRecord record) {
+        CollectorSpool spillTo;
+        lock.lock();
+        try {
+            if (closed) {
+                droppedCount.incrementAndGet();
+                return false;
+            }
+            if (record.getSize() > byteCapacity && overflowPolicy != OverflowPolicy.SPILL_TO_DISK) {
+                //Could never fit, even in an empty queue.
+                droppedCount.incrementAndGet();
+                return false;
+            }
+
+            long blockDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(MAX_BLOCK_MILLIS);
+            spillTo = null;
+            while (!hasRoomFor(record) && spillTo == null) {
+                switch (overflowPolicy) {
+                    case DROP_OLDEST:
+                        removeFirst();
+                        droppedCount.incrementAndGet();
+                        break;
+                    case DROP_NEWEST:
+                        droppedCount.incrementAndGet();
+                        return false;
+                    case SPILL_TO_DISK:
+                        if (spool == null) {
+                            droppedCount.incrementAndGet();
+                            return false;
+                        }
+                        spillTo = spool;
+                        break;
+                    case BLOCK:
+                        long remaining = blockDeadline - System.nanoTime();
+                        if (remaining <= 0) {
+                            droppedCount.incrementAndGet();
+                            return false;
+                        }
+                        notFull.awaitNanos(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(250)));
+                        if (closed) {
+                            droppedCount.incrementAndGet();
+                            return false;
+                        }
+                        break;
+                }
+            }
+
+            if (spillTo == null) {
+                addLast(record);
+                enqueuedCount.incrementAndGet();
+                notEmpty.signal();
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            droppedCount.incrementAndGet();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+
+        //Written after the lock is released, so disk I/O never holds up the workers polling the queue.
+        return spill(spillTo, record);
+    }
+
+    /**
+     * Adds a record only if it fits, never applying the overflow policy.
+     * Used to move records from the spool, which keeps them until they are taken, into the queue as the workers make room.
+     * @return true if the record was queued.
+     */
+    public boolean offerIfRoom(CollectorRecord record) {
+        lock.lock();
+        try {
+            if (closed || !hasRoomFor(record)) return false;
+            addLast(record);
+            enqueuedCount.incrementAndGet();
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits up to the given timeout for the queue to have room for another record.
+     * @return The number of free slots, or 0 if the queue stayed full or was closed.
+     */
+    public int awaitRoom(long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (size >= capacity || (size > 0 && bytes >= byteCapacity)) {
+                if (remaining <= 0 || closed) return 0;
+                remaining = notFull.awaitNanos(remaining);
+            }
+            return closed ? 0 : capacity - size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves the next record, waiting up to the given timeout for one to become available.
+     * @return The next record, or null if none became available.
+     */
+    public CollectorRecord poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long remaining = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (size == 0) {
+                if (remaining <= 0 || closed) return null;
+                remaining = notEmpty.awaitNanos(remaining);
+            }
+            return removeFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits up to the linger time to collect a batch of at most maxRecords records.
+     * Returns as soon as the batch is full, or when the linger time has elapsed since the first record was taken.
+     * @return The number of records added to the batch.
+     */
+    public int drainTo(List<CollectorRecord> batch, int maxRecords, long lingerMillis) throws InterruptedException {
+        CollectorRecord first = poll(lingerMillis, TimeUnit.MILLISECONDS);
+        if (first == null) return 0;
+        batch.add(first);
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        while (batch.size() < maxRecords) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) break;
+            CollectorRecord next = poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) break;
+            batch.add(next);
+        }
+        return batch.size();
+    }
+
+    public void configure(int capacity, long byteCapacity, OverflowPolicy overflowPolicy) {
+        lock.lock();
+        try {
+            this.capacity = Math.max(capacity, 1);
+            //Never discard records on a resize. If the queue holds more than the new capacity,
+            //the ring is left over size and compacted once it has drained.
+            if (this.capacity != ring.length && size <= this.capacity) {
+                compact(this.capacity);
+            }
+            this.byteCapacity = byteCapacity;
+            this.overflowPolicy = overflowPolicy;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sets the spool which overflowing records are written to under {@link OverflowPolicy#SPILL_TO_DISK}.
+     * The spool drainer moves spilled records back into this queue once it has room.
+     */
+    public void setSpool(CollectorSpool spool) {
+        lock.lock();
+        try {
+            this.spool = spool;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes every record still in the queue, without waiting.
+     */
+    public List<CollectorRecord> drainRemaining() {
+        lock.lock();
+        try {
+            List<CollectorRecord> remaining = new ArrayList<>(size);
+            while (size > 0) {
+                remaining.add(removeFirst());
+            }
+            return remaining;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops accepting new records and releases any blocked producers or consumers.
+     */
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notFull.signalAll();
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long sizeInBytes() {
+        lock.lock();
+        try {
+            return bytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getCapacity() {
+        lock.lock();
+        try {
+            return capacity;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getByteCapacity() {
+        lock.lock();
+        try {
+            return byteCapacity;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getEnqueuedCount() {
+        return enqueuedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getSpilledCount() {
+        return spilledCount.get();
+    }
+
+    private boolean hasRoomFor(CollectorRecord record) {
+        return size < capacity && (size == 0 || bytes + record.getSize() <= byteCapacity);
+    }
+
+    private void addLast(CollectorRecord record) {
+        ring[(head + size) % ring.length] = record;
+        size++;
+        bytes += record.getSize();
+    }
+
+    private CollectorRecord removeFirst() {
+        CollectorRecord record = ring[head];
+        ring[head] = null;
+        head = (head + 1) % ring.length;
+        size--;
+        bytes -= record.getSize();
+        if (ring.length > capacity && size <= capacity) {
+            compact(capacity);
+        }
+        notFull.signal();
+        return record;
+    }
+
+    private void compact(int length) {
+        CollectorRecord[] resized = new CollectorRecord[length];
+        for (int i = 0; i < size; i++) {
+            resized[i] = ring[(head + i) % ring.length];
+        }
+        ring = resized;
+        head = 0;
+    }
+
+    private boolean spill(CollectorSpool spool, CollectorRecord record) {
+        try {
+            spool.append(record.getPayload());
+            spilledCount.incrementAndGet();
+            return true;
+        } catch (IOException e) {
+            droppedCount.incrementAndGet();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.nccgroup.loggerplusplus.collector;
+
+/**
+ * A single serialized entry waiting to be shipped to the collector.
+ */
+public class CollectorRecord {
+
+    private final String host;
+    private final byte[] payload;
+    private final long enqueuedAt;
+
+    public CollectorRecord(String host, byte[] payload) {
+        this.host = host;
+        this.payload = payload;
+        this.enqueuedAt = System.nanoTime();
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    public int getSize() {
+        return payload.length;
+    }
+
+    /**
+     * @return The {@link System#nanoTime()} at which the record was created.
+     */
+    public long getEnqueuedAt() {
+        return enqueuedAt;
+    }
+}
@@ -0,0 +1,52 @@
+package com.nccgroup.loggerplusplus.collector;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * The parts of a collector response which decide what happens next: the status code,
+ * and how long the backend asked us to wait before sending again.
+ */
+public class CollectorResponse {
+
+    static final long NO_RETRY_AFTER = -1;
+
+    private final int statusCode;
+    private final long retryAfterMs;
+
+    public CollectorResponse(int statusCode, String retryAfter) {
+        this.statusCode = statusCode;
+        this.retryAfterMs = parseRetryAfter(retryAfter);
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * @return The delay requested by a Retry-After header in milliseconds, or {@link #NO_RETRY_AFTER}.
+     */
+    public long getRetryAfterMs() {
+        return retryAfterMs;
+    }
+
+    /**
+     * Parses a Retry-After value, which is either a number of seconds or an HTTP date.
+     * @return The delay in milliseconds, or {@link #NO_RETRY_AFTER} if the value is missing or invalid.
+     */
+    static long parseRetryAfter(String retryAfter) {
+        if (retryAfter == null || retryAfter.trim().isEmpty()) return NO_RETRY_AFTER;
+        String value = retryAfter.trim();
+        try {
+            return Math.max(Long.parseLong(value), 0) * 1000;
+        } catch (NumberFormatException ignored) {}
+        try {
+            ZonedDateTime date = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(Duration.between(ZonedDateTime.now(date.getZone()), date).toMillis(), 0);
+        } catch (DateTimeParseException e) {
+            return NO_RETRY_AFTER;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.nccgroup.loggerplusplus.collector;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Map;
+
+/**
+ * Signs collector requests with HMAC-SHA256 so the backend can authenticate a request from its headers
+ * and raw body, without decompressing or parsing it.
+ * The signature covers the timestamp header and the exact bytes sent: HMAC(secret, timestamp + "." + body),
+ * and is sent hex encoded as "sha256=[signature]".
+ * Requests are signed when they are sent rather than when entries are encoded, so spooled entries
+ * delivered later still carry a fresh timestamp.
+ */
+public class CollectorSigner {
+
+    public static final String SIGNATURE_HEADER = "X-Collector-Signature";
+    public static final String TIMESTAMP_HEADER = "X-Collector-Timestamp";
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final ThreadLocal<Mac> MACS = ThreadLocal.withInitial(() -> {
+        try {
+            return Mac.getInstance(ALGORITHM);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        }
+    });
+
+    private final SecretKeySpec key;
+
+    /**
+     * @param secret The shared secret. A blank secret disables signing.
+     */
+    public CollectorSigner(String secret) {
+        this.key = secret != null && !secret.isEmpty()
+                ? new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM) : null;
+    }
+
+    public boolean isEnabled() {
+        return key != null;
+    }
+
+    /**
+     * Signs a body which is already complete and adds the signature headers.
+     */
+    public void sign(byte[] body, Map<String, String> headers) {
+        if (key == null) return;
+        String timestamp = timestamp();
+        Mac mac = start(timestamp);
+        mac.update(body);
+        addHeaders(headers, timestamp, mac);
+    }
+
+    /**
+     * Wraps a stream so the signature is computed as the body is written, e.g. by a compressor,
+     * without a second pass over the finished body. When signing is disabled the stream is returned as is.
+     */
+    public SigningOutputStream wrap(OutputStream out) {
+        if (key == null) return new SigningOutputStream(out, null, null);
+        String timestamp = timestamp();
+        return new SigningOutputStream(out, timestamp, start(timestamp));
+    }
+
+    private Mac start(String timestamp) {
+        Mac mac = MACS.get();
+        try {
+            mac.init(key);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not initialise " + ALGORITHM, e);
+        }
+        mac.update(timestamp.getBytes(StandardCharsets.US_ASCII));
+        mac.update((byte) '.');
+        return mac;
+    }
+
+    private static String timestamp() {
+        return String.valueOf(System.currentTimeMillis() / 1000);
+    }
+
+    private static void addHeaders(Map<String, String> headers, String timestamp, Mac mac) {
+        byte[] digest = mac.doFinal();
+        char[] hex = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[i * 2] = HEX[(digest[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX[digest[i] & 0xF];
+        }
+        headers.put(TIMESTAMP_HEADER, timestamp);
+        headers.put(SIGNATURE_HEADER, "sha256=" + new String(hex));
+    }
+
+    /**
+     * Passes bytes through to the underlying stream while feeding them to the signature.
+     */
+    public static class SigningOutputStream extends FilterOutputStream {
+
+        private final String timestamp;
+        private final Mac mac;
+
+        private SigningOutputStream(OutputStream out, String timestamp, Mac mac) {
+            super(out);
+            this.timestamp = timestamp;
+            this.mac = mac;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if (mac != null) mac.update((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (mac != null) mac.update(b, off, len);
+        }
+
+        /**
+         * Completes the signature and adds the signature headers. Must be called once everything has been written.
+         */
+        public void addHeaders(Map<String, String> headers) {
+            if (mac == null) return;
+            CollectorSigner.addHeaders(headers, timestamp, mac);
+        }
+    }
+}
@@ -0,0 +1,625 @@
+package com.nccgroup.loggerplusplus.collector;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Durable, append-only spool of collector records backed by segment files on disk.
+ * <p>
+ * Records are appended to the newest segment as [length][crc32][payload] and a new segment is started once
+ * the current one reaches the segment size. A single reader walks the segments in order and commits its position
+ * once records have been delivered; the committed position is stored in a checkpoint file so delivery resumes
+ * where it left off after Burp is restarted or the extension is reloaded. Fully committed segments are deleted,
+ * and if the spool grows beyond its size cap the oldest segment is discarded.
+ * <p>
+ * Appends are written straight to the file channel and forced to disk on rotation, on close and whenever
+ * {@link #sync()} is called, which trades a small window of loss on power failure for append throughput.
+ */
+public class CollectorSpool {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".spool";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+    private static final int CHECKPOINT_SIZE = 2 * Long.BYTES + Long.BYTES;
+    public static final long DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    private final Path directory;
+    private final long segmentSize;
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private final FileChannel checkpointChannel;
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final AtomicLong appendedCount = new AtomicLong();
+
+    private long maxBytes;
+    private Segment writeSegment;
+    private FileChannel writeChannel;
+    private boolean dirty;
+    private boolean closed;
+
+    //Committed position, everything before it has been delivered.
+    private long committedSegmentId;
+    private long committedOffset;
+
+    //Read cursor, may run ahead of the committed position while records are in flight.
+    private long cursorSegmentId;
+    private long cursorOffset;
+    //Only used by the reader, and only opened or closed while holding the monitor.
+    private FileChannel readerChannel;
+    private long readerChannelSegmentId = -1;
+
+    public CollectorSpool(Path directory, long maxBytes) throws IOException {
+        this(directory, maxBytes, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public CollectorSpool(Path directory, long maxBytes, long segmentSize) throws IOException {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+        this.checkpointChannel = FileChannel.open(directory.resolve(CHECKPOINT_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        recover();
+    }
+
+    /**
+     * A record read from the spool, along with the position just after it.
+     */
+    public static class Entry {
+        private final byte[] payload;
+        private final long segmentId;
+        private final long nextOffset;
+
+        private Entry(byte[] payload, long segmentId, long nextOffset) {
+            this.payload = payload;
+            this.segmentId = segmentId;
+            this.nextOffset = nextOffset;
+        }
+
+        public byte[] getPayload() {
+            return payload;
+        }
+    }
+
+    private static class Segment {
+        private final long id;
+        private final Path path;
+        private long size;
+        private long pendingRecords;
+        private long pendingBytes;
+
+        private Segment(long id, Path path) {
+            this.id = id;
+            this.path = path;
+        }
+    }
+
+    public synchronized void append(byte[] payload) throws IOException {
+        if (closed) throw new IOException("Collector spool is closed");
+        if (writeSegment.size >= segmentSize) {
+            rotate();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length);
+        buffer.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+
+        FileChannel channel = openWriteChannel();
+        long recordOffset = writeSegment.size;
+        try {
+            while (buffer.hasRemaining()) {
+                writeSegment.size += channel.write(buffer, writeSegment.size);
+            }
+        } catch (IOException e) {
+            //Drop the partly written record, the file is cut back to it when the channel is next opened.
+            writeSegment.size = recordOffset;
+            throw e;
+        }
+        writeSegment.pendingRecords++;
+        writeSegment.pendingBytes += payload.length;
+        appendedCount.incrementAndGet();
+        dirty = true;
+
+        enforceSizeCap();
+        notifyAll();
+    }
+
+    /**
+     * Reads up to maxRecords records after the read cursor, waiting up to the timeout for at least one.
+     * Records are not removed until they are {@link #commit(List) committed}.
+     * There must only be a single reader. The segment is read without holding the spool's monitor,
+     * so appends are never held up by disk reads.
+     */
+    public List<Entry> read(int maxRecords, long timeout, TimeUnit unit) throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        List<Entry> entries = new ArrayList<>();
+        while (entries.size() < maxRecords) {
+            //Only waits for an append while nothing has been read.
+            ReadWindow window = nextReadWindow(entries.isEmpty() ? deadline : System.nanoTime());
+            if (window == null) break;
+            try {
+                readWindow(window, entries, maxRecords);
+            } catch (IOException e) {
+                //Closing the spool closes the channel under the reader.
+                if (isClosed()) break;
+                throw e;
+            }
+            applyRead(window, entries);
+        }
+        return entries;
+    }
+
+    /**
+     * Marks the given records as delivered and persists the new position.
+     * Entries must be committed in the order they were read.
+     */
+    public synchronized void commit(List<Entry> entries) throws IOException {
+        if (entries.isEmpty() || closed) return;
+        for (Entry entry : entries) {
+            Segment segment = segments.get(entry.segmentId);
+            if (segment == null) continue; //Segment was discarded by the size cap while in flight.
+            segment.pendingRecords--;
+            segment.pendingBytes -= entry.payload.length;
+        }
+
+        Entry last = entries.get(entries.size() - 1);
+        if (segments.containsKey(last.segmentId)
+                && (last.segmentId > committedSegmentId || (last.segmentId == committedSegmentId && last.nextOffset > committedOffset))) {
+            committedSegmentId = last.segmentId;
+            committedOffset = last.nextOffset;
+            writeCheckpoint();
+        }
+        deleteConsumedSegments();
+    }
+
+    /**
+     * Moves the read cursor back to the committed position, so records which were read but
+     * never committed are read again.
+     */
+    public synchronized void rewind() {
+        if (closed) return;
+        cursorSegmentId = committedSegmentId;
+        cursorOffset = committedOffset;
+    }
+
+    /**
+     * Forces any appended records to disk. The force is made without holding the spool's monitor.
+     */
+    public void sync() throws IOException {
+        FileChannel channel;
+        synchronized (this) {
+            if (!dirty || closed) return;
+            channel = openWriteChannel();
+            dirty = false;
+        }
+        try {
+            channel.force(false);
+        } catch (ClosedByInterruptException e) {
+            markDirty();
+            throw e;
+        } catch (ClosedChannelException ignored) {
+            //Rotated or closed meanwhile, both of which force the segment first.
+        } catch (IOException e) {
+            markDirty();
+            throw e;
+        }
+    }
+
+    private synchronized void markDirty() {
+        dirty = true;
+    }
+
+    private synchronized boolean isClosed() {
+        return closed;
+    }
+
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        enforceSizeCap();
+    }
+
+    public synchronized long getPendingRecords() {
+        long pending = 0;
+        for (Segment segment : segments.values()) {
+            pending += segment.pendingRecords;
+        }
+        return pending;
+    }
+
+    public synchronized long getPendingBytes() {
+        long pending = 0;
+        for (Segment segment : segments.values()) {
+            pending += segment.pendingBytes;
+        }
+        return pending;
+    }
+
+    public long getAppendedCount() {
+        return appendedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public synchronized void close() {
+        if (closed) return;
+        try {
+            sync();
+        } catch (IOException ignored) {}
+        closed = true;
+        closeQuietly(writeChannel);
+        closeQuietly(readerChannel);
+        closeQuietly(checkpointChannel);
+        notifyAll();
+    }
+
+    /*************************
+     *
+     * Segment management
+     *
+     *************************/
+
+    /**
+     * Opens the write segment, or opens it again if the channel was closed by an interrupt during a write.
+     * Anything after the last complete record is truncated.
+     */
+    private FileChannel openWriteChannel() throws IOException {
+        if (writeChannel == null || !writeChannel.isOpen()) {
+            writeChannel = FileChannel.open(writeSegment.path, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.READ);
+            if (writeChannel.size() > writeSegment.size) {
+                writeChannel.truncate(writeSegment.size);
+            }
+        }
+        return writeChannel;
+    }
+
+    private void rotate() throws IOException {
+        if (writeChannel != null) {
+            writeChannel.force(false);
+            writeChannel.close();
+            writeChannel = null;
+        }
+        dirty = false;
+        startSegment(writeSegment.id + 1);
+    }
+
+    private void startSegment(long id) {
+        writeSegment = new Segment(id, directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX)));
+        segments.put(id, writeSegment);
+    }
+
+    private void enforceSizeCap() {
+        long total = 0;
+        for (Segment segment : segments.values()) {
+            total += segment.size;
+        }
+        while (total > maxBytes && segments.size() > 1) {
+            Segment oldest = segments.firstEntry().getValue();
+            total -= oldest.size;
+            droppedCount.addAndGet(oldest.pendingRecords);
+            removeSegment(oldest);
+
+            long nextId = segments.firstKey();
+            if (committedSegmentId <= oldest.id) {
+                committedSegmentId = nextId;
+                committedOffset = 0;
+                try {
+                    writeCheckpoint();
+                } catch (IOException ignored) {}
+            }
+            if (cursorSegmentId <= oldest.id) {
+                cursorSegmentId = nextId;
+                cursorOffset = 0;
+            }
+        }
+    }
+
+    private void deleteConsumedSegments() {
+        while (segments.size() > 1) {
+            Segment oldest = segments.firstEntry().getValue();
+            if (oldest == writeSegment || oldest.id >= committedSegmentId) break;
+            removeSegment(oldest);
+        }
+        //A segment which has been fully committed up to its end can also go.
+        Segment committed = segments.get(committedSegmentId);
+        if (committed != null && committed != writeSegment && committedOffset >= committed.size) {
+            removeSegment(committed);
+        }
+    }
+
+    private void removeSegment(Segment segment) {
+        //The reader's channel may be in use outside the monitor, it is closed when the reader next moves on.
+        segments.remove(segment.id);
+        try {
+            Files.deleteIfExists(segment.path);
+        } catch (IOException ignored) {}
+    }
+
+    /*************************
+     *
+     * Reading
+     *
+     *************************/
+
+    /**
+     * The part of a segment which was complete when the reader took it, and what the reader found there.
+     */
+    private static class ReadWindow {
+        private final Segment segment;
+        private final long startOffset;
+        private final long endOffset;
+        private final FileChannel channel;
+        private int firstEntry;
+        private long nextOffset;
+        private long corruptRecords;
+        private long corruptBytes;
+        private boolean torn;
+
+        private ReadWindow(Segment segment, long startOffset, long endOffset, FileChannel channel) {
+            this.segment = segment;
+            this.startOffset = startOffset;
+            this.endOffset = endOffset;
+            this.channel = channel;
+            this.nextOffset = startOffset;
+        }
+    }
+
+    /**
+     * Moves the cursor on to the next segment with unread records, waiting until the deadline for a record to be appended.
+     * @return The readable part of the cursor's segment, or null if there was nothing to read.
+     */
+    private synchronized ReadWindow nextReadWindow(long deadlineNanos) throws IOException, InterruptedException {
+        while (!closed) {
+            Segment segment = segments.get(cursorSegmentId);
+            if (segment == null) {
+                Map.Entry<Long, Segment> next = segments.higherEntry(cursorSegmentId);
+                if (next != null) {
+                    cursorSegmentId = next.getKey();
+                    cursorOffset = 0;
+                    continue;
+                }
+            } else if (cursorOffset + RECORD_HEADER_SIZE <= segment.size) {
+                return new ReadWindow(segment, cursorOffset, segment.size, openReaderChannel(segment));
+            } else if (segment != writeSegment) {
+                Map.Entry<Long, Segment> next = segments.higherEntry(cursorSegmentId);
+                if (next != null) {
+                    cursorSegmentId = next.getKey();
+                    cursorOffset = 0;
+                    continue;
+                }
+            }
+
+            //Caught up with the writer.
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime());
+            if (remaining <= 0) return null;
+            wait(remaining);
+        }
+        return null;
+    }
+
+    /**
+     * Reads the records in the window. Called without holding the monitor, so only reads the window's own fields.
+     * Appends never change the part of a segment within the window.
+     */
+    private static void readWindow(ReadWindow window, List<Entry> entries, int maxRecords) throws IOException {
+        window.firstEntry = entries.size();
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        long offset = window.startOffset;
+        while (entries.size() < maxRecords && offset + RECORD_HEADER_SIZE <= window.endOffset) {
+            header.clear();
+            readFully(window.channel, header, offset);
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (length < 0 || offset + RECORD_HEADER_SIZE + length > window.endOffset) {
+                window.torn = true;
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(window.channel, payload, offset + RECORD_HEADER_SIZE);
+
+            CRC32 crc = new CRC32();
+            crc.update(payload.array());
+            offset += RECORD_HEADER_SIZE + length;
+            if ((int) crc.getValue() != checksum) {
+                //Corrupt record, skip it.
+                window.corruptRecords++;
+                window.corruptBytes += length;
+                continue;
+            }
+            entries.add(new Entry(payload.array(), window.segment.id, offset));
+        }
+        window.nextOffset = offset;
+    }
+
+    /**
+     * Moves the cursor past what was read. If the size cap discarded the segment or moved the cursor
+     * while it was being read, the records are dropped from the result and the reader starts again from the cursor.
+     */
+    private synchronized void applyRead(ReadWindow window, List<Entry> entries) throws IOException {
+        if (closed || segments.get(window.segment.id) != window.segment
+                || cursorSegmentId != window.segment.id || cursorOffset != window.startOffset) {
+            entries.subList(window.firstEntry, entries.size()).clear();
+            return;
+        }
+        cursorOffset = window.nextOffset;
+        if (window.corruptRecords > 0) {
+            droppedCount.addAndGet(window.corruptRecords);
+            window.segment.pendingRecords -= window.corruptRecords;
+            window.segment.pendingBytes -= window.corruptBytes;
+        }
+        if (window.torn) {
+            truncateTornTail(window.segment);
+        }
+    }
+
+    /**
+     * Drops the rest of the segment from the read cursor, as recovery does for a torn tail.
+     * Once a record length is corrupt nothing after it can be framed. The segment becomes read only,
+     * and is deleted as usual once everything before the cursor has been committed.
+     */
+    private void truncateTornTail(Segment segment) throws IOException {
+        droppedCount.incrementAndGet();
+        segment.size = cursorOffset;
+        if (segment == writeSegment) {
+            openWriteChannel().truncate(cursorOffset);
+            rotate();
+        } else {
+            try (FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.WRITE)) {
+                channel.truncate(cursorOffset);
+            }
+        }
+    }
+
+    private FileChannel openReaderChannel(Segment segment) throws IOException {
+        if (readerChannelSegmentId != segment.id || !readerChannel.isOpen()) {
+            closeQuietly(readerChannel);
+            readerChannel = FileChannel.open(segment.path, StandardOpenOption.READ);
+            readerChannelSegmentId = segment.id;
+        }
+        return readerChannel;
+    }
+
+    /*************************
+     *
+     * Recovery
+     *
+     *************************/
+
+    private void recover() throws IOException {
+        readCheckpoint();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                try {
+                    long id = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                    segments.put(id, new Segment(id, path));
+                } catch (NumberFormatException ignored) {}
+            }
+        }
+
+        for (Segment segment : new ArrayList<>(segments.values())) {
+            if (segment.id < committedSegmentId) {
+                removeSegment(segment);
+                continue;
+            }
+            scanSegment(segment, segment.id == committedSegmentId ? committedOffset : 0);
+        }
+
+        if (segments.isEmpty() || !segments.containsKey(committedSegmentId)) {
+            committedSegmentId = segments.isEmpty() ? 0 : segments.firstKey();
+            committedOffset = 0;
+        } else {
+            //The segment may have been truncated past a checkpoint which was written before its tail reached the disk.
+            committedOffset = Math.max(Math.min(committedOffset, segments.get(committedSegmentId).size), 0);
+        }
+        cursorSegmentId = committedSegmentId;
+        cursorOffset = committedOffset;
+
+        //Always append to a fresh segment, previous segments become read only.
+        startSegment(segments.isEmpty() ? Math.max(committedSegmentId, 0) : segments.lastKey() + 1);
+        writeCheckpoint();
+    }
+
+    /**
+     * Counts the valid records after the start offset and truncates any torn or corrupt tail.
+     */
+    private void scanSegment(Segment segment, long startOffset) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long fileSize = channel.size();
+            long offset = 0;
+            ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+            while (offset + RECORD_HEADER_SIZE <= fileSize) {
+                header.clear();
+                readFully(channel, header, offset);
+                header.flip();
+                int length = header.getInt();
+                int checksum = header.getInt();
+                if (length < 0 || offset + RECORD_HEADER_SIZE + length > fileSize) break;
+
+                ByteBuffer payload = ByteBuffer.allocate(length);
+                readFully(channel, payload, offset + RECORD_HEADER_SIZE);
+                CRC32 crc = new CRC32();
+                crc.update(payload.array());
+                if ((int) crc.getValue() != checksum) break;
+
+                if (offset >= startOffset) {
+                    segment.pendingRecords++;
+                    segment.pendingBytes += length;
+                }
+                offset += RECORD_HEADER_SIZE + length;
+            }
+            if (offset < fileSize) {
+                channel.truncate(offset);
+            }
+            segment.size = offset;
+        }
+    }
+
+    private void readCheckpoint() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(CHECKPOINT_SIZE);
+        if (checkpointChannel.size() < CHECKPOINT_SIZE) return;
+        readFully(checkpointChannel, buffer, 0);
+        buffer.flip();
+        long segmentId = buffer.getLong();
+        long offset = buffer.getLong();
+        long checksum = buffer.getLong();
+        if (checksum == checkpointChecksum(segmentId, offset)) {
+            committedSegmentId = segmentId;
+            committedOffset = offset;
+        }
+    }
+
+    private void writeCheckpoint() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(CHECKPOINT_SIZE);
+        buffer.putLong(committedSegmentId).putLong(committedOffset)
+                .putLong(checkpointChecksum(committedSegmentId, committedOffset)).flip();
+        long position = 0;
+        while (buffer.hasRemaining()) {
+            position += checkpointChannel.write(buffer, position);
+        }
+    }
+
+    private static long checkpointChecksum(long segmentId, long offset) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(2 * Long.BYTES).putLong(segmentId).putLong(offset).array());
+        return crc.getValue();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) throw new IOException("Unexpected end of collector spool segment");
+            position += read;
+        }
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException ignored) {}
+    }
+}
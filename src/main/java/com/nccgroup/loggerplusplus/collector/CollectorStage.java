@@ -0,0 +1,59 @@
+package com.nccgroup.loggerplusplus.collector;
+
+import com.nccgroup.loggerplusplus.logentry.LogEntry;
+import com.nccgroup.loggerplusplus.util.NamedThreadFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pipeline stage between the log processor and the collector queue.
+ * Completed entries are handed over directly from the processing threads and filtered there,
+ * then encoded on the stage's own threads. Each entry is only ever accepted once.
+ * When the stage falls behind, the submitting processing thread does the work itself,
+ * which slows processing down rather than dropping entries or growing without bound.
+ */
+public class CollectorStage {
+
+    private static final int THREAD_COUNT = 2;
+    private static final int BACKLOG_LIMIT = 1000;
+
+    private final CollectorController collectorController;
+    private final ThreadPoolExecutor executor;
+
+    public CollectorStage(CollectorController collectorController) {
+        this.collectorController = collectorController;
+        this.executor = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT, 30L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(BACKLOG_LIMIT), new NamedThreadFactory("LPP-Collector-Stage"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Accepts a completed entry for the collector. Entries which have already been submitted are ignored.
+     */
+    public void submit(LogEntry logEntry) {
+        if (!collectorController.isEnabled()) return;
+        if (!logEntry.markCollectorSubmitted()) return;
+        if (!collectorController.shouldCollect(logEntry)) return;
+        executor.execute(() -> collectorController.sendToCollector(logEntry));
+    }
+
+    /**
+     * Stops accepting entries and waits until the deadline for those already accepted to be encoded and queued.
+     * Entries still waiting after the deadline are discarded. Threads already encoding an entry are left to finish,
+     * rather than interrupted part way through writing it to the spool.
+     * @param deadlineNanos The {@link System#nanoTime()} to stop waiting at.
+     */
+    public void shutdown(long deadlineNanos) {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                executor.getQueue().clear();
+            }
+        } catch (InterruptedException e) {
+            executor.getQueue().clear();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -2,45 +2,137 @@ package com.nccgroup.loggerplusplus.collector;
 
 import com.coreyd97.BurpExtenderUtilities.Preferences;
 import com.nccgroup.loggerplusplus.LoggerPlusPlus;
+import com.nccgroup.loggerplusplus.collector.CollectorEventLog.Level;
+import com.nccgroup.loggerplusplus.filter.parser.ParseException;
+import com.nccgroup.loggerplusplus.logentry.LogEntryField;
+import com.nccgroup.loggerplusplus.logview.processor.LogProcessor;
 import com.nccgroup.loggerplusplus.util.Globals;
+import com.nccgroup.loggerplusplus.util.MoreHelp;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
+import javax.swing.table.AbstractTableModel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 public class CollectorTab extends JPanel {
 
     private final Preferences preferences;
     private final CollectorController collectorController;
+    private final CollectorEventLog eventLog;
 
     private JCheckBox enabledCheckbox;
     private JTextField serverUrlField;
     private JTextField subsystemNameField;
     private JTextArea domainWhitelistArea;
     private JPasswordField secretKeyField;
+    private JComboBox<BodyEncoding> bodyEncodingComboBox;
+    private JComboBox<WireFormat> wireFormatComboBox;
     private JButton testConnectionButton;
-    private JTextArea logArea;
+    private JList<CollectorEventLog.Event> eventList;
+    private EventListModel eventListModel;
+    private JComboBox<Level> eventLevelComboBox;
+    private long shownEventVersion = -1;
+    private Level shownEventLevel;
+    private Timer eventLogTimer;
+    private Timer statusTimer;
     
     // Filter UI components
     private JCheckBox filterEmptyResponseCheckbox;
     private JCheckBox filterStaticResourcesCheckbox;
     private JCheckBox filterStatusCodesCheckbox;
     private JTextField allowedStatusCodesField;
+    private JTextField collectorFilterField;
+    private JComboBox<DedupMode> dedupModeComboBox;
+    private JTextField dedupWindowField;
+
+    // Payload UI components
+    private JLabel fieldsLabel;
+    private JButton selectFieldsButton;
+    private JButton clearFieldsButton;
+    private JTextField bodyCapsField;
+    private JCheckBox stripBinaryCheckbox;
+    private List<LogEntryField> selectedFields;
+
+    // Delivery UI components
+    private JCheckBox bulkEnabledCheckbox;
+    private JTextField batchSizeField;
+    private JTextField batchLingerField;
+    private JTextField maxConnectionsField;
+    private JTextField maxInFlightField;
+    private JTextField queueCapacityField;
+    private JTextField queueCapacityMbField;
+    private JComboBox<OverflowPolicy> overflowPolicyComboBox;
+    private JCheckBox spoolEnabledCheckbox;
+    private JTextField spoolMaxMbField;
+    private JTextField spoolDirectoryField;
+    private JTextField maxRetriesField;
+    private JComboBox<CollectorTransport> transportComboBox;
+    private JTextField asyncWindowField;
+    private JCheckBox adaptiveConcurrencyCheckbox;
+    private JLabel queueStatusLabel;
+
+    // Destination UI components
+    private JTable destinationsTable;
+    private DestinationTableModel destinationTableModel;
+    private JButton addDestinationButton;
+    private JButton removeDestinationButton;
+
+    // Backfill UI components
+    private JComboBox<BackfillSource> backfillSourceComboBox;
+    private JTextField backfillRateField;
+    private JButton startBackfillButton;
+    private JButton cancelBackfillButton;
+    private JButton resetBackfillButton;
+    private JProgressBar backfillProgressBar;
+    private JLabel backfillCheckpointLabel;
+
+    // Metrics UI components
+    private JTextField metricsPortField;
+    private JLabel sendRateLabel;
+    private JLabel requestRateLabel;
+    private JLabel errorRateLabel;
+    private JLabel deliveredLabel;
+    private JLabel bytesSentLabel;
+    private JLabel compressionLabel;
+    private JLabel queueLatencyLabel;
+    private JLabel requestLatencyLabel;
+    private JLabel concurrencyLabel;
+    private JLabel processingLabel;
+    private long lastMetricsTime;
+    private long lastEntriesSent;
+    private long lastRequests;
+    private long lastRequestErrors;
 
     public CollectorTab(Preferences preferences, CollectorController collectorController) {
         this.preferences = preferences;
         this.collectorController = collectorController;
+        this.eventLog = collectorController.getEventLog();
         initializeUI();
     }
 
+    /**
+     * Stops the timers which refresh the tab, so they do not outlive the extension.
+     */
+    public void shutdown() {
+        eventLogTimer.stop();
+        statusTimer.stop();
+    }
+
     private void initializeUI() {
         setLayout(new BorderLayout());
         setBorder(new EmptyBorder(5, 5, 5, 5));
@@ -72,10 +164,10 @@ public class CollectorTab extends JPanel {
         
         domainWhitelistArea = new JTextArea(5, 20);
         domainWhitelistArea.setText(String.join("\n", collectorController.getDomainWhitelist()));
-        domainWhitelistArea.setToolTipText("Enter domains to whitelist, one per line");
+        domainWhitelistArea.setToolTipText("Enter domains to whitelist, one per line. example.com includes subdomains, *.example.com matches a single label, !example.com excludes");
         
         secretKeyField = new JPasswordField(collectorController.getSecretKey());
-        secretKeyField.setToolTipText("Secret key for authentication with the server");
+        secretKeyField.setToolTipText("Shared secret used to sign each request with HMAC-SHA256 (X-Collector-Signature header). Leave blank to send unsigned requests");
         
         // Create a tabbed pane for better organization
          JTabbedPane tabbedPane = new JTabbedPane();
@@ -120,12 +212,40 @@ public class CollectorTab extends JPanel {
          connGbc.gridy = 2;
          connGbc.weightx = 1.0;
          connectionPanel.add(secretKeyField, connGbc);
+
+         JLabel bodyEncodingLabel = new JLabel("Body Encoding:");
+         connGbc.gridx = 0;
+         connGbc.gridy = 3;
+         connGbc.weightx = 0.0;
+         connectionPanel.add(bodyEncodingLabel, connGbc);
+
+         bodyEncodingComboBox = new JComboBox<>(BodyEncoding.values());
+         bodyEncodingComboBox.setSelectedItem(collectorController.getBodyEncoding());
+         bodyEncodingComboBox.setToolTipText("How request and response bodies are sent. Base64 preserves binary content exactly");
+         connGbc.gridx = 1;
+         connGbc.gridy = 3;
+         connGbc.weightx = 1.0;
+         connectionPanel.add(bodyEncodingComboBox, connGbc);
+
+         JLabel wireFormatLabel = new JLabel("Wire Format:");
+         connGbc.gridx = 0;
+         connGbc.gridy = 4;
+         connGbc.weightx = 0.0;
+         connectionPanel.add(wireFormatLabel, connGbc);
+
+         wireFormatComboBox = new JComboBox<>(WireFormat.values());
+         wireFormatComboBox.setSelectedItem(collectorController.getWireFormat());
+         wireFormatComboBox.setToolTipText("CBOR sends bodies as raw bytes instead of escaped or base64 encoded text, which is smaller and cheaper to encode. The server must support it, use Test Connection to check");
+         connGbc.gridx = 1;
+         connGbc.gridy = 4;
+         connGbc.weightx = 1.0;
+         connectionPanel.add(wireFormatComboBox, connGbc);
          
          // Test Connection Button
          testConnectionButton = new JButton("Test Connection");
          testConnectionButton.addActionListener(e -> testConnection());
          connGbc.gridx = 0;
-         connGbc.gridy = 3;
+         connGbc.gridy = 5;
          connGbc.gridwidth = 2;
          connGbc.weightx = 1.0;
          connectionPanel.add(testConnectionButton, connGbc);
@@ -170,18 +290,455 @@ public class CollectorTab extends JPanel {
          filterGbc.gridy = 2;
          filterGbc.gridwidth = 2;
          filterPanel.add(statusCodesPanel, filterGbc);
+
+         // Duplicate content
+         JLabel dedupModeLabel = new JLabel("Duplicate Content:");
+         filterGbc.gridx = 0;
+         filterGbc.gridy = 3;
+         filterGbc.gridwidth = 1;
+         filterGbc.weightx = 0.0;
+         filterPanel.add(dedupModeLabel, filterGbc);
+
+         dedupModeComboBox = new JComboBox<>(DedupMode.values());
+         dedupModeComboBox.setSelectedItem(collectorController.getDedupMode());
+         dedupModeComboBox.setToolTipText("Entries with the same method, URL, request body and response body as a recently sent entry can be skipped, or sent as a small reference record");
+         filterGbc.gridx = 1;
+         filterGbc.gridy = 3;
+         filterGbc.weightx = 1.0;
+         filterPanel.add(dedupModeComboBox, filterGbc);
+
+         JLabel dedupWindowLabel = new JLabel("Dedup Window (entries):");
+         filterGbc.gridx = 0;
+         filterGbc.gridy = 4;
+         filterGbc.weightx = 0.0;
+         filterPanel.add(dedupWindowLabel, filterGbc);
+
+         dedupWindowField = new JTextField(String.valueOf(collectorController.getDedupWindow()), 10);
+         dedupWindowField.setToolTipText("Roughly how many recent entries are remembered. Each 100,000 entries uses about 360 KB");
+         filterGbc.gridx = 1;
+         filterGbc.gridy = 4;
+         filterGbc.weightx = 1.0;
+         filterPanel.add(dedupWindowField, filterGbc);
+
+         // Filter expression
+         JLabel collectorFilterLabel = new JLabel("Collector Filter:");
+         filterGbc.gridx = 0;
+         filterGbc.gridy = 5;
+         filterGbc.weightx = 0.0;
+         filterPanel.add(collectorFilterLabel, filterGbc);
+
+         collectorFilterField = new JTextField(collectorController.getFilterString());
+         collectorFilterField.setToolTipText("Only send entries matching this filter, using the same syntax as the log filter. e.g. Response.Status IN [200, 302] AND Request.Extension != \"map\"");
+         filterGbc.gridx = 1;
+         filterGbc.gridy = 5;
+         filterGbc.weightx = 1.0;
+         filterPanel.add(collectorFilterField, filterGbc);
          
+         // Create payload panel
+         JPanel payloadPanel = new JPanel(new GridBagLayout());
+         GridBagConstraints payloadGbc = new GridBagConstraints();
+         payloadGbc.fill = GridBagConstraints.HORIZONTAL;
+         payloadGbc.insets = new Insets(3, 3, 3, 3);
+
+         // Log fields
+         JLabel fieldsTitleLabel = new JLabel("Log Fields:");
+         payloadGbc.gridx = 0;
+         payloadGbc.gridy = 0;
+         payloadGbc.gridwidth = 1;
+         payloadGbc.weightx = 0.0;
+         payloadPanel.add(fieldsTitleLabel, payloadGbc);
+
+         selectedFields = new ArrayList<>(collectorController.getFields());
+         fieldsLabel = new JLabel();
+         updateFieldsLabel();
+         payloadGbc.gridx = 1;
+         payloadGbc.gridy = 0;
+         payloadGbc.weightx = 1.0;
+         payloadPanel.add(fieldsLabel, payloadGbc);
+
+         selectFieldsButton = new JButton("Select Fields...");
+         selectFieldsButton.setToolTipText("Send the selected log fields in a \"fields\" object alongside the raw request and response");
+         selectFieldsButton.addActionListener(e -> {
+             List<LogEntryField> fields = MoreHelp.showFieldChooserDialog(this, preferences, "Collector Fields", selectedFields);
+             if (fields != null) {
+                 selectedFields = fields;
+                 updateFieldsLabel();
+             }
+         });
+         clearFieldsButton = new JButton("Clear");
+         clearFieldsButton.addActionListener(e -> {
+             selectedFields = new ArrayList<>();
+             updateFieldsLabel();
+         });
+         JPanel fieldsButtonPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+         fieldsButtonPanel.add(selectFieldsButton);
+         fieldsButtonPanel.add(clearFieldsButton);
+         payloadGbc.gridx = 1;
+         payloadGbc.gridy = 1;
+         payloadPanel.add(fieldsButtonPanel, payloadGbc);
+
+         // Body caps
+         JLabel bodyCapsLabel = new JLabel("Body Caps:");
+         payloadGbc.gridx = 0;
+         payloadGbc.gridy = 2;
+         payloadGbc.weightx = 0.0;
+         payloadPanel.add(bodyCapsLabel, payloadGbc);
+
+         bodyCapsField = new JTextField(collectorController.getBodyCaps());
+         bodyCapsField.setToolTipText("Maximum body bytes to send per inferred MIME type, e.g. HTML=1m, JSON=512k, *=256k. * applies to request bodies and any other type. Leave blank to send bodies in full");
+         payloadGbc.gridx = 1;
+         payloadGbc.gridy = 2;
+         payloadGbc.weightx = 1.0;
+         payloadPanel.add(bodyCapsField, payloadGbc);
+
+         // Strip binary
+         stripBinaryCheckbox = new JCheckBox("Strip Binary Response Bodies");
+         stripBinaryCheckbox.setSelected(collectorController.isStripBinary());
+         stripBinaryCheckbox.setToolTipText("Send only the headers of images, audio, video, fonts and other binary responses");
+         payloadGbc.gridx = 0;
+         payloadGbc.gridy = 3;
+         payloadGbc.gridwidth = 2;
+         payloadPanel.add(stripBinaryCheckbox, payloadGbc);
+
+         // Create delivery panel
+         JPanel deliveryPanel = new JPanel(new GridBagLayout());
+         GridBagConstraints deliveryGbc = new GridBagConstraints();
+         deliveryGbc.fill = GridBagConstraints.HORIZONTAL;
+         deliveryGbc.insets = new Insets(3, 3, 3, 3);
+
+         // Bulk Upload
+         bulkEnabledCheckbox = new JCheckBox("Bulk Upload (gzip NDJSON)");
+         bulkEnabledCheckbox.setSelected(collectorController.isBulkEnabled());
+         bulkEnabledCheckbox.setToolTipText("Batch entries and send them compressed to the /bulk endpoint instead of one request per entry");
+         deliveryGbc.gridx = 0;
+         deliveryGbc.gridy = 0;
+         deliveryGbc.gridwidth = 2;
+         deliveryPanel.add(bulkEnabledCheckbox, deliveryGbc);
+
+         JLabel batchSizeLabel = new JLabel("Batch Size (entries):");
+         deliveryGbc.gridx = 0;
+         deliveryGbc.gridy = 1;
+         deliveryGbc.gridwidth = 1;
+         deliveryGbc.weightx = 0.0;
+         deliveryPanel.add(batchSizeLabel, deliveryGbc);
+
+         batchSizeField = new JTextField(String.valueOf(collectorController.getBatchSize()), 10);
+         batchSizeField.setToolTipText("Send a batch once this many entries are pending");
+         deliveryGbc.gridx = 1;
+         deliveryGbc.gridy = 1;
+         deliveryGbc.weightx = 1.0;
+         deliveryPanel.add(batchSizeField, deliveryGbc);
+
+         JLabel batchLingerLabel = new JLabel("Batch Linger (ms):");
+         deliveryGbc.gridx = 0;
+         deliveryGbc.gridy = 2;
+         deliveryGbc.weightx = 0.0;
+         deliveryPanel.add(batchLingerLabel, deliveryGbc);
+
+         batchLingerField = new JTextField(String.valueOf(collectorController.getBatchLingerMs()), 10);
+         batchLingerField.setToolTipText("Maximum time an entry waits for its batch to fill before being sent");
+         deliveryGbc.gridx = 1;
+         deliveryGbc.gridy = 2;
+         deliveryGbc.weightx = 1.0;
+         deliveryPanel.add(batchLingerField, deliveryGbc);
+
+         JLabel maxConnectionsLabel = new JLabel("Max Connections per Host:");
+         deliveryGbc.gridx = 0;
+         deliveryGbc.gridy = 3;
+         deliveryGbc.weightx = 0.0;
+         deliveryPanel.add(maxConnectionsLabel, deliveryGbc);
+
+         maxConnectionsField = new JTextField(String.valueOf(collectorController.getMaxConnectionsPerRoute()), 10);
+         maxConnectionsField.setToolTipText("Number of keep-alive connections kept open to the collector server");
+         deliveryGbc.gridx = 1;
+         deliveryGbc.gridy = 3;
+         deliveryGbc.weightx = 1.0;
+         deliveryPanel.add(maxConnectionsField, deliveryGbc);
+
+         JLabel maxInFlightLabel = new JLabel("Concurrent Requests:");
+         deliveryGbc.gridx = 0;
+         deliveryGbc.gridy = 4;
+         deliveryGbc.weightx = 0.0;
+         deliveryPanel.add(maxInFlightLabel, deliveryGbc);
+
+         maxInFlightField = new JTextField(String.valueOf(collectorController.getMaxInFlightRequests()), 10);
+         maxInFlightField.setToolTipText("Number of requests which may be in flight to the collector at the same time");
+         deliveryGbc.gridx = 1;
+         deliveryGbc.gridy = 4;
+         deliveryGbc.weightx = 1.0;
+         deliveryPanel.add(maxInFlightField, deliveryGbc);
+
+         JLabel queueCapacityLabel = new JLabel("Queue Capacity (entries):");
+         deliveryGbc.gridx = 0;
+         deliveryGbc.gridy = 5;
+         deliveryGbc.weightx = 0.0;
+         deliveryPanel.add(queueCapacityLabel, deliveryGbc);
+
+         queueCapacityField = new JTextField(String.valueOf(collectorController.getQueueCapacity()), 10);
+         queueCapacityField.setToolTipText("Maximum number of entries waiting to be sent");
+         deliveryGbc.gridx = 1;
+         deliveryGbc.gridy = 5;
+         deliveryGbc.weightx = 1.0;
+         deliveryPanel.add(queueCapacityField, deliveryGbc);
+
+         JLabel queueCapacityMbLabel = new JLabel("Queue Capacity (MB):");
+         deliveryGbc.gridx = 0;
+         deliveryGbc.gridy = 6;
+         deliveryGbc.weightx = 0.0;
+         deliveryPanel.add(queueCapacityMbLabel, deliveryGbc);
+
+         queueCapacityMbField = new JTextField(String.valueOf(collectorController.getQueueCapacityMb()), 10);
+         queueCapacityMbField.setToolTipText("Maximum total size of the entries waiting to be sent");
+         deliveryGbc.gridx = 1;
+         deliveryGbc.gridy = 6;
+         deliveryGbc.weightx = 1.0;
+         deliveryPanel.add(queueCapacityMbField, deliveryGbc);
+
+         JLabel overflowPolicyLabel = new JLabel("When Queue is Full:");
+         deliveryGbc.gridx = 0;
+         deliveryGbc.gridy = 7;
+         deliveryGbc.weightx = 0.0;
+         deliveryPanel.add(overflowPolicyLabel, deliveryGbc);
+
+         overflowPolicyComboBox = new JComboBox<>(OverflowPolicy.values());
+         overflowPolicyComboBox.setSelectedItem(collectorController.getOverflowPolicy());
+         overflowPolicyComboBox.setToolTipText("What to do with new entries when the backend cannot keep up");
+         deliveryGbc.gridx = 1;
+         deliveryGbc.gridy = 7;
+         deliveryGbc.weightx = 1.0;
+         deliveryPanel.add(overflowPolicyComboBox, deliveryGbc);
+
+         // Write-ahead spool
+         spoolEnabledCheckbox = new JCheckBox("Write-Ahead Disk Spool");
+         spoolEnabledCheckbox.setSelected(collectorController.isSpoolEnabled());
+         spoolEnabledCheckbox.setToolTipText("Persist every entry to disk before it is queued, so nothing is lost while the backend is unreachable or Burp is restarted. The spool then holds the backlog, up to its size cap, rather than the queue overflow policy");
+         deliveryGbc.gridx = 0;
+         deliveryGbc.gridy = 8;
+         deliveryGbc.gridwidth = 2;
+         deliveryPanel.add(spoolEnabledCheckbox, deliveryGbc);
+
+         JLabel spoolMaxMbLabel = new JLabel("Spool Size Cap (MB):");
+         deliveryGbc.gridx = 0;
+         deliveryGbc.gridy = 9;
+         deliveryGbc.gridwidth = 1;
+         deliveryGbc.weightx = 0.0;
+         deliveryPanel.add(spoolMaxMbLabel, deliveryGbc);
+
+         spoolMaxMbField = new JTextField(String.valueOf(collectorController.getSpoolMaxMb()), 10);
+         spoolMaxMbField.setToolTipText("Once the spool grows beyond this size the oldest entries are discarded");
+         deliveryGbc.gridx = 1;
+         deliveryGbc.gridy = 9;
+         deliveryGbc.weightx = 1.0;
+         deliveryPanel.add(spoolMaxMbField, deliveryGbc);
+
+         JLabel spoolDirectoryLabel = new JLabel("Spool Directory:");
+         deliveryGbc.gridx = 0;
+         deliveryGbc.gridy = 10;
+         deliveryGbc.weightx = 0.0;
+         deliveryPanel.add(spoolDirectoryLabel, deliveryGbc);
+
+         spoolDirectoryField = new JTextField(collectorController.getSpoolDirectory().toString());
+         spoolDirectoryField.setToolTipText("Where spooled entries are kept. Changes take effect when the extension is reloaded");
+         deliveryGbc.gridx = 1;
+         deliveryGbc.gridy = 10;
+         deliveryGbc.weightx = 1.0;
+         deliveryPanel.add(spoolDirectoryField, deliveryGbc);
+
+         JLabel maxRetriesLabel = new JLabel("Max Retries:");
+         deliveryGbc.gridx = 0;
+         deliveryGbc.gridy = 11;
+         deliveryGbc.weightx = 0.0;
+         deliveryPanel.add(maxRetriesLabel, deliveryGbc);
+
+         maxRetriesField = new JTextField(String.valueOf(collectorController.getMaxRetries()), 10);
+         maxRetriesField.setToolTipText("How many times a batch is retried with backoff when the backend is unavailable, before it is abandoned. Spooled entries are always retried");
+         deliveryGbc.gridx = 1;
+         deliveryGbc.gridy = 11;
+         deliveryGbc.weightx = 1.0;
+         deliveryPanel.add(maxRetriesField, deliveryGbc);
+
+         JLabel transportLabel = new JLabel("Transport:");
+         deliveryGbc.gridx = 0;
+         deliveryGbc.gridy = 12;
+         deliveryGbc.weightx = 0.0;
+         deliveryPanel.add(transportLabel, deliveryGbc);
+
+         transportComboBox = new JComboBox<>(CollectorTransport.values());
+         transportComboBox.setSelectedItem(collectorController.getTransport());
+         transportComboBox.setToolTipText("Asynchronous sending keeps many requests in flight without a thread waiting on each, for distant or slow backends. Spooled entries are always sent in order on the blocking transport");
+         deliveryGbc.gridx = 1;
+         deliveryGbc.gridy = 12;
+         deliveryGbc.weightx = 1.0;
+         deliveryPanel.add(transportComboBox, deliveryGbc);
+
+         JLabel asyncWindowLabel = new JLabel("Async Window (requests):");
+         deliveryGbc.gridx = 0;
+         deliveryGbc.gridy = 13;
+         deliveryGbc.weightx = 0.0;
+         deliveryPanel.add(asyncWindowLabel, deliveryGbc);
+
+         asyncWindowField = new JTextField(String.valueOf(collectorController.getAsyncWindow()), 10);
+         asyncWindowField.setToolTipText("Maximum number of requests in flight to each destination on the asynchronous transport");
+         deliveryGbc.gridx = 1;
+         deliveryGbc.gridy = 13;
+         deliveryGbc.weightx = 1.0;
+         deliveryPanel.add(asyncWindowField, deliveryGbc);
+
+         // Adaptive concurrency
+         adaptiveConcurrencyCheckbox = new JCheckBox("Adaptive Concurrency");
+         adaptiveConcurrencyCheckbox.setSelected(collectorController.isAdaptiveConcurrency());
+         adaptiveConcurrencyCheckbox.setToolTipText("Send fewer requests at once while the backend is slow or answers 429/503, honouring Retry-After, and more again once it recovers. The concurrency above is the upper limit");
+         deliveryGbc.gridx = 0;
+         deliveryGbc.gridy = 14;
+         deliveryGbc.gridwidth = 2;
+         deliveryPanel.add(adaptiveConcurrencyCheckbox, deliveryGbc);
+         deliveryGbc.gridwidth = 1;
+
+         // Create destinations panel
+         JPanel destinationsPanel = new JPanel(new BorderLayout(0, 3));
+         destinationsPanel.setBorder(BorderFactory.createEmptyBorder(3, 3, 3, 3));
+         JLabel destinationsLabel = new JLabel("Additional destinations, each with its own filter, queue and workers. Entries are also sent to the server configured on the Connection tab.");
+         destinationsPanel.add(destinationsLabel, BorderLayout.NORTH);
+
+         destinationTableModel = new DestinationTableModel(collectorController.getDestinations());
+         destinationsTable = new JTable(destinationTableModel);
+         destinationsTable.setDefaultEditor(OverflowPolicy.class, new DefaultCellEditor(new JComboBox<>(OverflowPolicy.values())));
+         destinationsTable.setFillsViewportHeight(true);
+         destinationsTable.setToolTipText("Filters use the same syntax as the log filter and are applied after the filters on the Filters tab");
+         destinationsPanel.add(new JScrollPane(destinationsTable), BorderLayout.CENTER);
+
+         addDestinationButton = new JButton("Add");
+         addDestinationButton.addActionListener(e -> destinationTableModel.addDestination());
+         removeDestinationButton = new JButton("Remove");
+         removeDestinationButton.addActionListener(e -> {
+             if (destinationsTable.isEditing()) destinationsTable.getCellEditor().cancelCellEditing();
+             int[] rows = destinationsTable.getSelectedRows();
+             for (int i = rows.length - 1; i >= 0; i--) {
+                 destinationTableModel.removeDestination(rows[i]);
+             }
+         });
+         JPanel destinationButtonPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+         destinationButtonPanel.add(addDestinationButton);
+         destinationButtonPanel.add(removeDestinationButton);
+         destinationsPanel.add(destinationButtonPanel, BorderLayout.SOUTH);
+
          // Create whitelist panel
          JPanel whitelistPanel = new JPanel(new BorderLayout());
          whitelistPanel.setBorder(BorderFactory.createEmptyBorder(3, 3, 3, 3));
-         JLabel whitelistLabel = new JLabel("Domain Whitelist (one per line):");
+         JLabel whitelistLabel = new JLabel("Domain Whitelist (one per line, * wildcards, ! to exclude):");
          whitelistPanel.add(whitelistLabel, BorderLayout.NORTH);
          whitelistPanel.add(new JScrollPane(domainWhitelistArea), BorderLayout.CENTER);
          
+         // Create metrics panel
+         JPanel metricsPanel = new JPanel(new GridBagLayout());
+         GridBagConstraints metricsGbc = new GridBagConstraints();
+         metricsGbc.fill = GridBagConstraints.HORIZONTAL;
+         metricsGbc.insets = new Insets(3, 3, 3, 3);
+
+         sendRateLabel = addMetricRow(metricsPanel, metricsGbc, 0, "Send Rate:");
+         requestRateLabel = addMetricRow(metricsPanel, metricsGbc, 1, "Request Rate:");
+         errorRateLabel = addMetricRow(metricsPanel, metricsGbc, 2, "Error Rate:");
+         deliveredLabel = addMetricRow(metricsPanel, metricsGbc, 3, "Entries:");
+         bytesSentLabel = addMetricRow(metricsPanel, metricsGbc, 4, "Bytes Sent:");
+         compressionLabel = addMetricRow(metricsPanel, metricsGbc, 5, "Compression Ratio:");
+         queueLatencyLabel = addMetricRow(metricsPanel, metricsGbc, 6, "Queue Latency:");
+         requestLatencyLabel = addMetricRow(metricsPanel, metricsGbc, 7, "Request Latency:");
+         concurrencyLabel = addMetricRow(metricsPanel, metricsGbc, 8, "Concurrency Limit:");
+         processingLabel = addMetricRow(metricsPanel, metricsGbc, 9, "Log Processing:");
+         processingLabel.setToolTipText("Entries being processed and waiting to be processed by Logger++. When the queue is full, Burp's own threads process entries, slowing the tool down");
+
+         JLabel metricsPortLabel = new JLabel("Prometheus Port:");
+         metricsGbc.gridx = 0;
+         metricsGbc.gridy = 10;
+         metricsGbc.weightx = 0.0;
+         metricsPanel.add(metricsPortLabel, metricsGbc);
+
+         metricsPortField = new JTextField(String.valueOf(collectorController.getMetricsPort()), 10);
+         metricsPortField.setToolTipText("Serve metrics in Prometheus format at http://127.0.0.1:<port>/metrics. 0 disables the endpoint");
+         metricsGbc.gridx = 1;
+         metricsGbc.gridy = 10;
+         metricsGbc.weightx = 1.0;
+         metricsPanel.add(metricsPortField, metricsGbc);
+
+         // Create backfill panel
+         JPanel backfillPanel = new JPanel(new GridBagLayout());
+         GridBagConstraints backfillGbc = new GridBagConstraints();
+         backfillGbc.fill = GridBagConstraints.HORIZONTAL;
+         backfillGbc.insets = new Insets(3, 3, 3, 3);
+
+         JLabel backfillSourceLabel = new JLabel("Source:");
+         backfillGbc.gridx = 0;
+         backfillGbc.gridy = 0;
+         backfillGbc.weightx = 0.0;
+         backfillPanel.add(backfillSourceLabel, backfillGbc);
+
+         backfillSourceComboBox = new JComboBox<>(BackfillSource.values());
+         backfillSourceComboBox.setSelectedItem(collectorController.getBackfillSource());
+         backfillSourceComboBox.setToolTipText("Send entries which were logged before the collector was enabled. Entries go through the same filters as live traffic");
+         backfillSourceComboBox.addActionListener(e -> updateBackfillStatus());
+         backfillGbc.gridx = 1;
+         backfillGbc.gridy = 0;
+         backfillGbc.weightx = 1.0;
+         backfillPanel.add(backfillSourceComboBox, backfillGbc);
+
+         JLabel backfillRateLabel = new JLabel("Rate (entries/s):");
+         backfillGbc.gridx = 0;
+         backfillGbc.gridy = 1;
+         backfillGbc.weightx = 0.0;
+         backfillPanel.add(backfillRateLabel, backfillGbc);
+
+         backfillRateField = new JTextField(String.valueOf(collectorController.getBackfillRate()), 10);
+         backfillRateField.setToolTipText("Most entries submitted per second. The backfill also waits whenever a destination queue is more than half full, so live traffic is not dropped");
+         backfillGbc.gridx = 1;
+         backfillGbc.gridy = 1;
+         backfillGbc.weightx = 1.0;
+         backfillPanel.add(backfillRateField, backfillGbc);
+
+         startBackfillButton = new JButton("Start");
+         startBackfillButton.setToolTipText("Start sending, resuming after the last entry sent by a previous backfill");
+         startBackfillButton.addActionListener(e -> {
+             collectorController.setBackfillSource((BackfillSource) backfillSourceComboBox.getSelectedItem());
+             collectorController.setBackfillRate(parsePositiveInt(backfillRateField.getText(), collectorController.getBackfillRate(), "backfill rate"));
+             backfillRateField.setText(String.valueOf(collectorController.getBackfillRate()));
+             collectorController.startBackfill();
+             updateBackfillStatus();
+         });
+         cancelBackfillButton = new JButton("Cancel");
+         cancelBackfillButton.addActionListener(e -> collectorController.getBackfill().cancel());
+         resetBackfillButton = new JButton("Reset Checkpoint");
+         resetBackfillButton.setToolTipText("Forget which entries have been sent, so the next backfill from this source sends them all again");
+         resetBackfillButton.addActionListener(e -> {
+             collectorController.resetBackfillCheckpoint((BackfillSource) backfillSourceComboBox.getSelectedItem());
+             updateBackfillStatus();
+         });
+         JPanel backfillButtonPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+         backfillButtonPanel.add(startBackfillButton);
+         backfillButtonPanel.add(cancelBackfillButton);
+         backfillButtonPanel.add(resetBackfillButton);
+         backfillGbc.gridx = 0;
+         backfillGbc.gridy = 2;
+         backfillGbc.gridwidth = 2;
+         backfillPanel.add(backfillButtonPanel, backfillGbc);
+
+         backfillProgressBar = new JProgressBar();
+         backfillProgressBar.setStringPainted(true);
+         backfillGbc.gridy = 3;
+         backfillPanel.add(backfillProgressBar, backfillGbc);
+
+         backfillCheckpointLabel = new JLabel();
+         backfillGbc.gridy = 4;
+         backfillPanel.add(backfillCheckpointLabel, backfillGbc);
+         backfillGbc.gridwidth = 1;
+
          // Add panels to tabbed pane
          tabbedPane.addTab("Connection", connectionPanel);
          tabbedPane.addTab("Filters", filterPanel);
+         tabbedPane.addTab("Payload", payloadPanel);
          tabbedPane.addTab("Whitelist", whitelistPanel);
+         tabbedPane.addTab("Delivery", deliveryPanel);
+         tabbedPane.addTab("Destinations", destinationsPanel);
+         tabbedPane.addTab("Backfill", backfillPanel);
+         tabbedPane.addTab("Metrics", metricsPanel);
          
          // Add tabbed pane to main panel
          gbc.gridx = 0;
@@ -202,15 +759,48 @@ public class CollectorTab extends JPanel {
         gbc.gridwidth = 2;
         mainPanel.add(saveButton, gbc);
 
-        // Log Area
-        logArea = new JTextArea(10, 40);
-        logArea.setEditable(false);
-        JScrollPane logScrollPane = new JScrollPane(logArea);
-        logScrollPane.setBorder(BorderFactory.createTitledBorder("Log"));
+        // Event Log
+        eventListModel = new EventListModel();
+        eventList = new JList<>(eventListModel);
+        //A prototype cell stops the list measuring every event, so only the visible rows are ever rendered.
+        eventList.setPrototypeCellValue(new CollectorEventLog.Event(0, Level.ERROR, String.join("", Collections.nCopies(120, "x"))));
+        eventList.setVisibleRowCount(10);
+        JScrollPane logScrollPane = new JScrollPane(eventList);
+
+        eventLevelComboBox = new JComboBox<>(Level.values());
+        eventLevelComboBox.setSelectedItem(Level.INFO);
+        eventLevelComboBox.addActionListener(e -> refreshEventLog());
+        JButton clearLogButton = new JButton("Clear");
+        clearLogButton.addActionListener(e -> eventLog.clear());
+        JPanel logControlsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+        logControlsPanel.add(new JLabel("Minimum Level:"));
+        logControlsPanel.add(eventLevelComboBox);
+        logControlsPanel.add(clearLogButton);
+
+        JPanel logPanel = new JPanel(new BorderLayout());
+        logPanel.setBorder(BorderFactory.createTitledBorder("Log"));
+        logPanel.add(logControlsPanel, BorderLayout.NORTH);
+        logPanel.add(logScrollPane, BorderLayout.CENTER);
+        refreshEventLog();
+        eventLogTimer = new Timer(500, e -> refreshEventLog());
+        eventLogTimer.start();
+
+        // Queue status
+        queueStatusLabel = new JLabel();
+        queueStatusLabel.setBorder(new EmptyBorder(3, 3, 0, 3));
+        updateQueueStatus();
+        updateMetrics();
+        statusTimer = new Timer(1000, e -> {
+            updateQueueStatus();
+            updateMetrics();
+            updateBackfillStatus();
+        });
+        statusTimer.start();
 
         // Add components to main panel
         add(mainPanel, BorderLayout.NORTH);
-        add(logScrollPane, BorderLayout.CENTER);
+        add(logPanel, BorderLayout.CENTER);
+        add(queueStatusLabel, BorderLayout.SOUTH);
 
         // Update component states based on enabled status
         updateComponentStates();
@@ -222,6 +812,8 @@ public class CollectorTab extends JPanel {
         subsystemNameField.setEnabled(enabled);
         domainWhitelistArea.setEnabled(enabled);
         secretKeyField.setEnabled(enabled);
+        bodyEncodingComboBox.setEnabled(enabled);
+        wireFormatComboBox.setEnabled(enabled);
         testConnectionButton.setEnabled(enabled);
         
         // Update filter components
@@ -229,6 +821,40 @@ public class CollectorTab extends JPanel {
         filterStaticResourcesCheckbox.setEnabled(enabled);
         filterStatusCodesCheckbox.setEnabled(enabled);
         allowedStatusCodesField.setEnabled(enabled && filterStatusCodesCheckbox.isSelected());
+        dedupModeComboBox.setEnabled(enabled);
+        dedupWindowField.setEnabled(enabled);
+        collectorFilterField.setEnabled(enabled);
+
+        // Update payload components
+        selectFieldsButton.setEnabled(enabled);
+        clearFieldsButton.setEnabled(enabled);
+        bodyCapsField.setEnabled(enabled);
+        stripBinaryCheckbox.setEnabled(enabled);
+
+        // Update delivery components
+        bulkEnabledCheckbox.setEnabled(enabled);
+        batchSizeField.setEnabled(enabled);
+        batchLingerField.setEnabled(enabled);
+        maxConnectionsField.setEnabled(enabled);
+        maxInFlightField.setEnabled(enabled);
+        queueCapacityField.setEnabled(enabled);
+        queueCapacityMbField.setEnabled(enabled);
+        overflowPolicyComboBox.setEnabled(enabled);
+        spoolEnabledCheckbox.setEnabled(enabled);
+        spoolMaxMbField.setEnabled(enabled);
+        spoolDirectoryField.setEnabled(enabled);
+        maxRetriesField.setEnabled(enabled);
+        transportComboBox.setEnabled(enabled);
+        asyncWindowField.setEnabled(enabled);
+        adaptiveConcurrencyCheckbox.setEnabled(enabled);
+
+        // Update destination components
+        destinationsTable.setEnabled(enabled);
+        addDestinationButton.setEnabled(enabled);
+        removeDestinationButton.setEnabled(enabled);
+
+        // Update backfill components
+        updateBackfillStatus();
         
         // Add listener to status codes checkbox
         filterStatusCodesCheckbox.addActionListener(e -> {
@@ -250,6 +876,8 @@ public class CollectorTab extends JPanel {
         
         // Set secret key
         collectorController.setSecretKey(new String(secretKeyField.getPassword()));
+        collectorController.setBodyEncoding((BodyEncoding) bodyEncodingComboBox.getSelectedItem());
+        collectorController.setWireFormat((WireFormat) wireFormatComboBox.getSelectedItem());
         
         // Save filter settings
         collectorController.setFilterEmptyResponse(filterEmptyResponseCheckbox.isSelected());
@@ -267,78 +895,438 @@ public class CollectorTab extends JPanel {
                     statusCodes.add(Integer.parseInt(codeStr.trim()));
                 }
             } catch (NumberFormatException e) {
-                logMessage("Warning: Invalid status code format. Using default values.");
+                eventLog.log(Level.WARN, "Invalid status code format. Using default values.");
                 statusCodes.add(200); // Default to 200 if parsing fails
             }
         }
         collectorController.setAllowedStatusCodes(statusCodes);
+        try {
+            collectorController.setFilterString(collectorFilterField.getText());
+        } catch (ParseException e) {
+            eventLog.log(Level.ERROR, "Invalid collector filter, keeping the previous filter: " + e.getMessage());
+            collectorFilterField.setText(collectorController.getFilterString());
+        }
+        collectorController.setDedupMode((DedupMode) dedupModeComboBox.getSelectedItem());
+        collectorController.setDedupWindow(parsePositiveInt(dedupWindowField.getText(), collectorController.getDedupWindow(), "dedup window"));
+
+        // Save payload settings
+        collectorController.setFields(selectedFields);
+        collectorController.setStripBinary(stripBinaryCheckbox.isSelected());
+        try {
+            collectorController.setBodyCaps(bodyCapsField.getText());
+        } catch (IllegalArgumentException e) {
+            eventLog.log(Level.ERROR, "Invalid body caps, keeping the previous caps: " + e.getMessage());
+            bodyCapsField.setText(collectorController.getBodyCaps());
+        }
+
+        // Save delivery settings
+        collectorController.setBulkEnabled(bulkEnabledCheckbox.isSelected());
+        collectorController.setBatchSize(parsePositiveInt(batchSizeField.getText(), collectorController.getBatchSize(), "batch size"));
+        collectorController.setBatchLingerMs(parsePositiveInt(batchLingerField.getText(), collectorController.getBatchLingerMs(), "batch linger"));
+        collectorController.setMaxConnectionsPerRoute(parsePositiveInt(maxConnectionsField.getText(), collectorController.getMaxConnectionsPerRoute(), "max connections"));
+        collectorController.setMaxInFlightRequests(parsePositiveInt(maxInFlightField.getText(), collectorController.getMaxInFlightRequests(), "concurrent requests"));
+        collectorController.setQueueCapacity(parsePositiveInt(queueCapacityField.getText(), collectorController.getQueueCapacity(), "queue capacity"));
+        collectorController.setQueueCapacityMb(parsePositiveInt(queueCapacityMbField.getText(), collectorController.getQueueCapacityMb(), "queue capacity (MB)"));
+        collectorController.setOverflowPolicy((OverflowPolicy) overflowPolicyComboBox.getSelectedItem());
+        collectorController.setSpoolEnabled(spoolEnabledCheckbox.isSelected());
+        collectorController.setSpoolMaxMb(parsePositiveInt(spoolMaxMbField.getText(), collectorController.getSpoolMaxMb(), "spool size cap"));
+        if (!spoolDirectoryField.getText().trim().isEmpty()) {
+            collectorController.setSpoolDirectory(spoolDirectoryField.getText().trim());
+        }
+        collectorController.setMaxRetries(parseNonNegativeInt(maxRetriesField.getText(), collectorController.getMaxRetries(), "max retries"));
+        collectorController.setTransport((CollectorTransport) transportComboBox.getSelectedItem());
+        collectorController.setAsyncWindow(parsePositiveInt(asyncWindowField.getText(), collectorController.getAsyncWindow(), "async window"));
+        collectorController.setAdaptiveConcurrency(adaptiveConcurrencyCheckbox.isSelected());
+        collectorController.setBackfillSource((BackfillSource) backfillSourceComboBox.getSelectedItem());
+        collectorController.setBackfillRate(parsePositiveInt(backfillRateField.getText(), collectorController.getBackfillRate(), "backfill rate"));
+        collectorController.setMetricsPort(parsePort(metricsPortField.getText(), collectorController.getMetricsPort()));
+
+        // Save destinations
+        if (destinationsTable.isEditing()) destinationsTable.getCellEditor().stopCellEditing();
+        collectorController.setDestinations(destinationTableModel.getDestinations());
         
         // Save to preferences
         collectorController.savePreferences();
         
-        logMessage("Configuration saved successfully.");
+        eventLog.log(Level.INFO, "Configuration saved successfully.");
+    }
+
+    private void updateQueueStatus() {
+        List<CollectorDispatcher> dispatchers = collectorController.getDispatchers();
+        long queued = 0, queuedBytes = 0, spoolPending = 0, spoolPendingBytes = 0, spilled = 0, dropped = 0, enqueued = 0, inFlight = 0;
+        for (CollectorDispatcher dispatcher : dispatchers) {
+            CollectorQueue queue = dispatcher.getQueue();
+            CollectorSpool spool = dispatcher.getSpool();
+            queued += queue.size();
+            queuedBytes += queue.sizeInBytes();
+            spilled += queue.getSpilledCount();
+            dropped += queue.getDroppedCount();
+            enqueued += queue.getEnqueuedCount();
+            inFlight += dispatcher.getAsyncInFlight();
+            if (spool != null) {
+                spoolPending += spool.getPendingRecords();
+                spoolPendingBytes += spool.getPendingBytes();
+                dropped += spool.getDroppedCount();
+            }
+        }
+        queueStatusLabel.setText(String.format("Destinations: %d | Queued: %,d (%,d KB) | In Flight: %,d | Spooled: %,d (%,d KB) | Spilled: %,d | Dropped: %,d | Accepted: %,d",
+                dispatchers.size(), queued, queuedBytes / 1024, inFlight, spoolPending, spoolPendingBytes / 1024, spilled,
+                dropped, enqueued));
+    }
+
+    private void updateBackfillStatus() {
+        CollectorBackfill backfill = collectorController.getBackfill();
+        boolean running = backfill.isRunning();
+        boolean enabled = enabledCheckbox.isSelected();
+        backfillSourceComboBox.setEnabled(enabled && !running);
+        backfillRateField.setEnabled(enabled && !running);
+        startBackfillButton.setEnabled(enabled && !running);
+        cancelBackfillButton.setEnabled(running);
+        resetBackfillButton.setEnabled(!running);
+
+        if (backfill.getSource() == null) {
+            backfillProgressBar.setValue(0);
+            backfillProgressBar.setString("Not started");
+        } else {
+            int total = backfill.getTotal();
+            int processed = backfill.getProcessed();
+            backfillProgressBar.setMaximum(Math.max(total, 1));
+            backfillProgressBar.setValue(processed);
+            backfillProgressBar.setString(String.format("%s: %,d of %,d entries%s", backfill.getSource(), processed, total, running ? "" : processed >= total ? " (complete)" : " (stopped)"));
+        }
+
+        BackfillSource source = (BackfillSource) backfillSourceComboBox.getSelectedItem();
+        long checkpoint = collectorController.getBackfillCheckpoint(source);
+        if (checkpoint == 0) {
+            backfillCheckpointLabel.setText("Checkpoint: none, every entry will be sent");
+        } else if (source == BackfillSource.PROXY_HISTORY) {
+            backfillCheckpointLabel.setText(String.format("Checkpoint: first %,d proxy history items sent", checkpoint));
+        } else {
+            backfillCheckpointLabel.setText("Checkpoint: entries requested up to " + LogProcessor.LOGGER_DATE_FORMAT.format(new Date(checkpoint)) + " sent");
+        }
+    }
+
+    private void updateFieldsLabel() {
+        if (selectedFields.isEmpty()) {
+            fieldsLabel.setText("None, only the raw request and response are sent");
+        } else {
+            fieldsLabel.setText(selectedFields.stream().map(LogEntryField::getFullLabel).collect(Collectors.joining(", ")));
+        }
+        fieldsLabel.setToolTipText(fieldsLabel.getText());
+    }
+
+    private JLabel addMetricRow(JPanel panel, GridBagConstraints gbc, int row, String name) {
+        gbc.gridx = 0;
+        gbc.gridy = row;
+        gbc.gridwidth = 1;
+        gbc.weightx = 0.0;
+        panel.add(new JLabel(name), gbc);
+
+        JLabel valueLabel = new JLabel("-");
+        gbc.gridx = 1;
+        gbc.weightx = 1.0;
+        panel.add(valueLabel, gbc);
+        return valueLabel;
+    }
+
+    private void updateMetrics() {
+        CollectorMetrics metrics = collectorController.getMetrics();
+        long now = System.nanoTime();
+        long entriesSent = metrics.getEntriesSent();
+        long requests = metrics.getRequests();
+        long requestErrors = metrics.getRequestErrors();
+
+        if (lastMetricsTime != 0) {
+            double elapsedSeconds = (now - lastMetricsTime) / 1_000_000_000.0;
+            sendRateLabel.setText(String.format("%,.1f entries/s", (entriesSent - lastEntriesSent) / elapsedSeconds));
+            requestRateLabel.setText(String.format("%,.1f requests/s", (requests - lastRequests) / elapsedSeconds));
+            errorRateLabel.setText(String.format("%,.1f errors/s", (requestErrors - lastRequestErrors) / elapsedSeconds));
+        }
+        lastMetricsTime = now;
+        lastEntriesSent = entriesSent;
+        lastRequests = requests;
+        lastRequestErrors = requestErrors;
+
+        deliveredLabel.setText(String.format("%,d accepted, %,d sent, %,d refused, %,d failed, %,d retries",
+                metrics.getEntriesAccepted(), entriesSent, metrics.getEntriesRefused(),
+                metrics.getEntriesFailed(), metrics.getRetries()));
+        bytesSentLabel.setText(String.format("%,d KB (%,d KB before compression)",
+                metrics.getWireBytes() / 1024, metrics.getPayloadBytes() / 1024));
+        compressionLabel.setText(String.format("%.2f", metrics.getCompressionRatio()));
+        queueLatencyLabel.setText(formatLatency(metrics.getQueueLatency()));
+        requestLatencyLabel.setText(formatLatency(metrics.getRequestLatency()));
+
+        //One limit per destination, e.g. "default 12/16 (3 in flight), archive 1/16 (paused 20s)"
+        List<String> limits = new ArrayList<>();
+        for (CollectorDispatcher dispatcher : collectorController.getDispatchers()) {
+            AdaptiveConcurrencyLimiter limiter = dispatcher.getLimiter();
+            long pausedMs = limiter.getPausedMs();
+            limits.add(String.format("%s %d/%d (%s)", dispatcher.getDestination().getName(), limiter.getLimit(),
+                    limiter.getMaxLimit(), pausedMs > 0 ? "paused " + (pausedMs + 999) / 1000 + "s" : limiter.getInFlight() + " in flight"));
+        }
+        concurrencyLabel.setText(limits.isEmpty() ? "-" : String.join(", ", limits));
+
+        LogProcessor logProcessor = LoggerPlusPlus.instance != null ? LoggerPlusPlus.instance.getLogProcessor() : null;
+        if (logProcessor != null) {
+            processingLabel.setText(String.format("%d active, %,d queued, %,d processed by Burp threads",
+                    logProcessor.getActiveProcessingTasks(), logProcessor.getQueuedProcessingTasks(), logProcessor.getCallerRunsCount()));
+        }
+    }
+
+    private static String formatLatency(LatencyHistogram histogram) {
+        return String.format("p50 %.1f ms, p99 %.1f ms, max %.1f ms",
+                histogram.getValueAtQuantile(0.5) / 1000.0,
+                histogram.getValueAtQuantile(0.99) / 1000.0,
+                histogram.getMax() / 1000.0);
+    }
+
+    private int parsePositiveInt(String text, int fallback, String name) {
+        try {
+            int value = Integer.parseInt(text.trim());
+            if (value > 0) return value;
+        } catch (NumberFormatException ignored) {}
+        eventLog.log(Level.WARN, "Invalid " + name + ". Keeping previous value " + fallback + ".");
+        return fallback;
+    }
+
+    private int parseNonNegativeInt(String text, int fallback, String name) {
+        try {
+            int value = Integer.parseInt(text.trim());
+            if (value >= 0) return value;
+        } catch (NumberFormatException ignored) {}
+        eventLog.log(Level.WARN, "Invalid " + name + ". Keeping previous value " + fallback + ".");
+        return fallback;
+    }
+
+    private int parsePort(String text, int fallback) {
+        try {
+            int value = Integer.parseInt(text.trim());
+            if (value >= 0 && value <= 65535) return value;
+        } catch (NumberFormatException ignored) {}
+        eventLog.log(Level.WARN, "Invalid metrics port. Keeping previous value " + fallback + ".");
+        return fallback;
     }
 
     private void testConnection() {
         String serverUrl = serverUrlField.getText();
         if (serverUrl == null || serverUrl.trim().isEmpty()) {
-            logMessage("Error: Server URL cannot be empty.");
+            eventLog.log(Level.ERROR, "Server URL cannot be empty.");
             return;
         }
 
-        new SwingWorker<Boolean, Void>() {
+        CollectorSigner signer = new CollectorSigner(new String(secretKeyField.getPassword()));
+        WireFormat wireFormat = (WireFormat) wireFormatComboBox.getSelectedItem();
+        new SwingWorker<Integer, Void>() {
             @Override
-            protected Boolean doInBackground() {
+            protected Integer doInBackground() {
                 try {
-                    // Extract base URL from server URL (remove /recv part if present)
-                    String baseUrl = serverUrl;
-                    if (baseUrl.endsWith("/recv")) {
-                        baseUrl = baseUrl.substring(0, baseUrl.length() - 5);
-                    }
-                    String testUrl = baseUrl + "/test";
+                    // Test endpoint sits alongside the receive endpoint
+                    String testUrl = CollectorController.resolveEndpoint(serverUrl, "/test");
                     
                     URL url = new URL(testUrl);
                     HttpURLConnection connection = (HttpURLConnection) url.openConnection();
                     connection.setRequestMethod("POST");
-                    connection.setRequestProperty("Content-Type", "application/json");
+                    // The test payload is sent in the selected format, so the server confirms it can decode it
+                    connection.setRequestProperty("Content-Type", wireFormat.getContentType());
                     connection.setDoOutput(true);
                     connection.setConnectTimeout(5000);
                     connection.setReadTimeout(5000);
                     
-                    // Send a simple test JSON data
-                    String testJson = "{\"test\": true}";
+                    // Send a simple test record, signed so the secret key is checked too
+                    byte[] input = CollectorPayloadWriter.writeTest(wireFormat);
+                    Map<String, String> headers = new HashMap<>();
+                    signer.sign(input, headers);
+                    headers.forEach(connection::setRequestProperty);
                     try (java.io.OutputStream os = connection.getOutputStream()) {
-                        byte[] input = testJson.getBytes("utf-8");
                         os.write(input, 0, input.length);
                     }
                     
-                    int responseCode = connection.getResponseCode();
-                    return responseCode >= 200 && responseCode < 400;
+                    return connection.getResponseCode();
                 } catch (IOException e) {
-                    return false;
+                    return -1;
                 }
             }
 
             @Override
             protected void done() {
                 try {
-                    boolean success = get();
-                    if (success) {
-                        logMessage("Connection successful!");
+                    int responseCode = get();
+                    if (responseCode >= 200 && responseCode < 400) {
+                        eventLog.log(Level.INFO, "Connection successful!");
+                    } else if (responseCode == 401 || responseCode == 403) {
+                        eventLog.log(Level.WARN, "Connected, but the server rejected the request signature. Please check the secret key matches the server.");
+                    } else if (responseCode == 415) {
+                        eventLog.log(Level.WARN, "Connected, but the server does not accept the " + wireFormat + " wire format. Please update the server or select JSON.");
                     } else {
-                        logMessage("Connection failed. Please check the server URL and ensure the server is running.");
+                        eventLog.log(Level.WARN, "Connection failed. Please check the server URL and ensure the server is running.");
                     }
                 } catch (Exception e) {
-                    logMessage("Error testing connection: " + e.getMessage());
+                    eventLog.log(Level.ERROR, "Error testing connection: " + e.getMessage());
                 }
             }
         }.execute();
     }
 
-    public void logMessage(String message) {
-        SwingUtilities.invokeLater(() -> {
-            logArea.append(message + "\n");
-            logArea.setCaretPosition(logArea.getDocument().getLength());
-        });
+    /**
+     * Reloads the event list if new events have been logged or the level changed,
+     * keeping the view scrolled to the bottom if it was already there.
+     */
+    private void refreshEventLog() {
+        long version = eventLog.getVersion();
+        Level level = (Level) eventLevelComboBox.getSelectedItem();
+        if (version == shownEventVersion && level == shownEventLevel) return;
+        shownEventVersion = version;
+        shownEventLevel = level;
+
+        int lastIndex = eventListModel.getSize() - 1;
+        boolean atBottom = lastIndex < 0 || eventList.getLastVisibleIndex() >= lastIndex;
+        eventListModel.setEvents(eventLog.getEvents(level));
+        if (atBottom && eventListModel.getSize() > 0) {
+            eventList.ensureIndexIsVisible(eventListModel.getSize() - 1);
+        }
+    }
+
+    private static class EventListModel extends AbstractListModel<CollectorEventLog.Event> {
+        private List<CollectorEventLog.Event> events = Collections.emptyList();
+
+        void setEvents(List<CollectorEventLog.Event> events) {
+            int previousSize = this.events.size();
+            this.events = events;
+            if (previousSize > 0) fireIntervalRemoved(this, 0, previousSize - 1);
+            if (!events.isEmpty()) fireIntervalAdded(this, 0, events.size() - 1);
+        }
+
+        @Override
+        public int getSize() {
+            return events.size();
+        }
+
+        @Override
+        public CollectorEventLog.Event getElementAt(int index) {
+            return events.get(index);
+        }
+    }
+
+    private class DestinationTableModel extends AbstractTableModel {
+        private final String[] columnNames = {"Enabled", "Name", "Server URL", "Filter", "Bulk", "Batch Size",
+                "Linger (ms)", "Concurrency", "Queue", "Queue (MB)", "When Full", "Retries"};
+        private final Class<?>[] columnClasses = {Boolean.class, String.class, String.class, String.class, Boolean.class,
+                Integer.class, Integer.class, Integer.class, Integer.class, Integer.class, OverflowPolicy.class, Integer.class};
+        private final List<CollectorDestination> destinations = new ArrayList<>();
+
+        DestinationTableModel(List<CollectorDestination> destinations) {
+            for (CollectorDestination destination : destinations) {
+                this.destinations.add(destination.copy());
+            }
+        }
+
+        List<CollectorDestination> getDestinations() {
+            List<CollectorDestination> copies = new ArrayList<>();
+            for (CollectorDestination destination : destinations) {
+                copies.add(destination.copy());
+            }
+            return copies;
+        }
+
+        void addDestination() {
+            int index = destinations.size() + 1;
+            Set<String> names = new HashSet<>();
+            for (CollectorDestination destination : destinations) {
+                names.add(destination.getName());
+            }
+            while (names.contains("destination-" + index)) index++;
+            destinations.add(new CollectorDestination("destination-" + index));
+            fireTableRowsInserted(destinations.size() - 1, destinations.size() - 1);
+        }
+
+        void removeDestination(int row) {
+            destinations.remove(row);
+            fireTableRowsDeleted(row, row);
+        }
+
+        @Override
+        public int getRowCount() {
+            return destinations.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return columnNames.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return columnNames[column];
+        }
+
+        @Override
+        public Class<?> getColumnClass(int column) {
+            return columnClasses[column];
+        }
+
+        @Override
+        public boolean isCellEditable(int row, int column) {
+            return true;
+        }
+
+        @Override
+        public Object getValueAt(int row, int column) {
+            CollectorDestination destination = destinations.get(row);
+            switch (column) {
+                case 0: return destination.isEnabled();
+                case 1: return destination.getName();
+                case 2: return destination.getServerUrl();
+                case 3: return destination.getFilterString();
+                case 4: return destination.isBulkEnabled();
+                case 5: return destination.getBatchSize();
+                case 6: return destination.getBatchLingerMs();
+                case 7: return destination.getMaxInFlightRequests();
+                case 8: return destination.getQueueCapacity();
+                case 9: return destination.getQueueCapacityMb();
+                case 10: return destination.getOverflowPolicy();
+                case 11: return destination.getMaxRetries();
+                default: return null;
+            }
+        }
+
+        @Override
+        public void setValueAt(Object value, int row, int column) {
+            CollectorDestination destination = destinations.get(row);
+            switch (column) {
+                case 0: destination.setEnabled((Boolean) value); break;
+                case 1: setName(destination, ((String) value).trim()); break;
+                case 2: destination.setServerUrl(((String) value).trim()); break;
+                case 3:
+                    try {
+                        destination.setFilterString((String) value);
+                    } catch (ParseException e) {
+                        eventLog.log(Level.ERROR, "Invalid filter for destination " + destination.getName() + ", keeping the previous filter: " + e.getMessage());
+                    }
+                    break;
+                case 4: destination.setBulkEnabled((Boolean) value); break;
+                case 5: destination.setBatchSize(Math.max((Integer) value, 1)); break;
+                case 6: destination.setBatchLingerMs(Math.max((Integer) value, 1)); break;
+                case 7: destination.setMaxInFlightRequests(Math.max((Integer) value, 1)); break;
+                case 8: destination.setQueueCapacity(Math.max((Integer) value, 1)); break;
+                case 9: destination.setQueueCapacityMb(Math.max((Integer) value, 1)); break;
+                case 10: destination.setOverflowPolicy((OverflowPolicy) value); break;
+                case 11: destination.setMaxRetries(Math.max((Integer) value, 0)); break;
+            }
+            fireTableRowsUpdated(row, row);
+        }
+
+        private void setName(CollectorDestination destination, String name) {
+            if (name.isEmpty() || name.equals(CollectorController.PRIMARY_DESTINATION)) {
+                eventLog.log(Level.WARN, "Invalid destination name \"" + name + "\". Keeping previous name " + destination.getName() + ".");
+                return;
+            }
+            for (CollectorDestination other : destinations) {
+                if (other != destination && other.getName().equals(name)) {
+                    eventLog.log(Level.WARN, "Destination name " + name + " is already in use. Keeping previous name " + destination.getName() + ".");
+                    return;
+                }
+            }
+            destination.setName(name);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,22 @@
+package com.nccgroup.loggerplusplus.collector;
+
+/**
+ * How the collector workers send requests to the backend.
+ */
+public enum CollectorTransport {
+    //Each worker waits for the response to its request over a pooled keep-alive connection.
+    BLOCKING("Blocking (pooled connections)"),
+    //Workers hand requests to java.net.http.HttpClient and move on, up to the async window in flight at once.
+    ASYNC("Asynchronous (HTTP/2 where supported)");
+
+    private final String label;
+
+    CollectorTransport(String label) {
+        this.label = label;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,23 @@
+package com.nccgroup.loggerplusplus.collector;
+
+/**
+ * What the collector does with an entry whose content has recently been sent.
+ */
+public enum DedupMode {
+    OFF("Off"),
+    //Duplicates are not sent at all.
+    SKIP("Skip duplicates"),
+    //Duplicates are replaced with a small record referencing the content hash, with a repeat count.
+    REFERENCE("Send reference");
+
+    private final String label;
+
+    DedupMode(String label) {
+        this.label = label;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
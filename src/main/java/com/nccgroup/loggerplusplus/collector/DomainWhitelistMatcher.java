@@ -0,0 +1,162 @@
+package com.nccgroup.loggerplusplus.collector;
+
+import java.util.Collection;
+import java.util.Locale;
+
+/**
+ * Compiled form of the collector domain whitelist.
+ * Rules are stored in a trie keyed on domain labels from right to left, so a lookup walks
+ * the labels of the host once, regardless of the number of rules, without allocating.
+ *
+ * Supported rules:
+ * <ul>
+ *     <li>example.com - matches example.com and all of its subdomains</li>
+ *     <li>*.example.com - * matches exactly one label, so this matches subdomains of example.com but not example.com itself</li>
+ *     <li>!internal.example.com - excludes the domain and its subdomains</li>
+ * </ul>
+ * The most specific matching rule wins. If only exclusions are given, all other hosts are allowed.
+ * An empty whitelist allows everything.
+ * The trie is never modified once built, so lookups from any number of threads need no locking.
+ */
+public class DomainWhitelistMatcher {
+
+    private static final byte NONE = 0;
+    private static final byte INCLUDE = 1;
+    private static final byte EXCLUDE = 2;
+
+    private final Node root = new Node();
+    private final boolean empty;
+    private final boolean hasIncludes;
+
+    public DomainWhitelistMatcher(Collection<String> rules) {
+        boolean anyRule = false;
+        boolean anyInclude = false;
+        for (String rule : rules) {
+            if (rule == null) continue;
+            String domain = rule.trim().toLowerCase(Locale.ROOT);
+            boolean exclude = domain.startsWith("!");
+            if (exclude) domain = domain.substring(1).trim();
+            while (domain.startsWith(".")) domain = domain.substring(1);
+            while (domain.endsWith(".")) domain = domain.substring(0, domain.length() - 1);
+            if (domain.isEmpty()) continue;
+
+            insert(domain, exclude ? EXCLUDE : INCLUDE);
+            anyRule = true;
+            anyInclude |= !exclude;
+        }
+        this.empty = !anyRule;
+        this.hasIncludes = anyInclude;
+    }
+
+    public boolean matches(String host) {
+        if (empty) return true;
+        if (host == null || host.isEmpty()) return false;
+
+        int end = host.endsWith(".") ? host.length() - 1 : host.length();
+        int best = search(root, host, end, 0, 0);
+        return best < 0 ? !hasIncludes : (best & 1) == 0;
+    }
+
+    private void insert(String domain, byte decision) {
+        Node node = root;
+        int end = domain.length();
+        while (end > 0) {
+            int start = domain.lastIndexOf('.', end - 1) + 1;
+            String label = domain.substring(start, end);
+            if (label.equals("*")) {
+                if (node.wildcard == null) node.wildcard = new Node();
+                node = node.wildcard;
+            } else if (!label.isEmpty()) {
+                node = node.getOrAddChild(label);
+            }
+            end = start - 1;
+        }
+        //An exclusion always beats an inclusion of the same domain.
+        if (node.decision != EXCLUDE) node.decision = decision;
+    }
+
+    /**
+     * Walks the labels of host[0, end) from right to left, following both literal and wildcard children.
+     * @return The score of the most specific matching rule, or -1 if none matched.
+     * Deeper rules score higher, then rules with more literal labels. The lowest bit is set for exclusions.
+     */
+    private static int search(Node node, String host, int end, int depth, int literals) {
+        int best = node.decision == NONE ? -1 : score(depth, literals, node.decision);
+        if (end <= 0) return best;
+
+        int start = host.lastIndexOf('.', end - 1) + 1;
+        Node exact = node.getChild(host, start, end);
+        if (exact != null) {
+            best = Math.max(best, search(exact, host, start - 1, depth + 1, literals + 1));
+        }
+        if (node.wildcard != null && start < end) {
+            best = Math.max(best, search(node.wildcard, host, start - 1, depth + 1, literals));
+        }
+        return best;
+    }
+
+    private static int score(int depth, int literals, byte decision) {
+        return ((depth << 8 | literals) << 1) | (decision == EXCLUDE ? 1 : 0);
+    }
+
+    private static int hashRegion(String value, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + Character.toLowerCase(value.charAt(i));
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Trie node with an open addressed table of children, looked up directly from a region of the host.
+     */
+    private static final class Node {
+        private String[] labels = new String[4];
+        private Node[] children = new Node[4];
+        private int size;
+        private Node wildcard;
+        private byte decision = NONE;
+
+        Node getChild(String host, int start, int end) {
+            int length = end - start;
+            int mask = labels.length - 1;
+            for (int i = hashRegion(host, start, end) & mask; labels[i] != null; i = (i + 1) & mask) {
+                String label = labels[i];
+                if (label.length() == length && host.regionMatches(true, start, label, 0, length)) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        Node getOrAddChild(String label) {
+            Node existing = getChild(label, 0, label.length());
+            if (existing != null) return existing;
+
+            if ((size + 1) * 4 > labels.length * 3) resize();
+            Node child = new Node();
+            put(label, child);
+            return child;
+        }
+
+        private void put(String label, Node child) {
+            int mask = labels.length - 1;
+            int i = hashRegion(label, 0, label.length()) & mask;
+            while (labels[i] != null) i = (i + 1) & mask;
+            labels[i] = label;
+            children[i] = child;
+            size++;
+        }
+
+        private void resize() {
+            String[] oldLabels = labels;
+            Node[] oldChildren = children;
+            labels = new String[oldLabels.length * 2];
+            children = new Node[oldChildren.length * 2];
+            size = 0;
+            for (int i = 0; i < oldLabels.length; i++) {
+                if (oldLabels[i] != null) put(oldLabels[i], oldChildren[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.nccgroup.loggerplusplus.collector;
+
+/**
+ * What the collector queue does with a new record when it is already at capacity.
+ */
+public enum OverflowPolicy {
+    DROP_OLDEST("Drop oldest"),
+    DROP_NEWEST("Drop newest"),
+    SPILL_TO_DISK("Spill to disk"),
+    BLOCK("Block until space (up to 5s)");
+
+    private final String label;
+
+    OverflowPolicy(String label) {
+        this.label = label;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,50 @@
+package com.nccgroup.loggerplusplus.collector;
+
+/**
+ * How collector payloads are serialised. The backend picks the decoder from the Content-Type header.
+ */
+public enum WireFormat {
+    //Bodies are JSON strings, escaped or base64 encoded depending on the body encoding. Bulk uploads are NDJSON.
+    JSON("JSON", "application/json", "application/x-ndjson"),
+    //Bodies are raw CBOR byte strings, with no escaping or base64 overhead. Bulk uploads are a CBOR sequence (RFC 8742).
+    CBOR("CBOR (raw binary bodies)", "application/cbor", "application/cbor-seq");
+
+    private final String label;
+    private final String contentType;
+    private final String bulkContentType;
+
+    WireFormat(String label, String contentType, String bulkContentType) {
+        this.label = label;
+        this.contentType = contentType;
+        this.bulkContentType = bulkContentType;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public String getBulkContentType() {
+        return bulkContentType;
+    }
+
+    /**
+     * @return true if bulk records must be followed by a newline. CBOR items are self-delimiting.
+     */
+    public boolean isNewlineDelimited() {
+        return this == JSON;
+    }
+
+    /**
+     * Identifies the format of an encoded payload, so records queued or spooled before the format was changed
+     * are still sent with the right content type. Payloads are always a map, which in CBOR is major type 5
+     * and in JSON starts with '{'.
+     */
+    public static WireFormat of(byte[] payload) {
+        return payload.length > 0 && (payload[0] & 0xE0) == 0xA0 ? CBOR : JSON;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
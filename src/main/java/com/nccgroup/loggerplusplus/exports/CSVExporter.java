@@ -28,7 +28,8 @@ public class CSVExporter extends AutomaticLogExporter implements ContextMenuExpo
     private File autoSaveFile;
     private List<LogEntryField> fields;
     private Thread exporterThread;
-    private LinkedBlockingQueue<LogEntry> awaitingExport;
+    //Added to from the log processing threads.
+    private volatile LinkedBlockingQueue<LogEntry> awaitingExport;
 
     Logger logger = LogManager.getLogger(this);
 
@@ -159,14 +160,16 @@ public class CSVExporter extends AutomaticLogExporter implements ContextMenuExpo
 
     @Override
     public void exportNewEntry(final LogEntry logEntry) {
-        if(logEntry.getStatus() == Status.PROCESSED) {
+        LinkedBlockingQueue<LogEntry> awaitingExport = this.awaitingExport;
+        if(logEntry.getStatus() == Status.PROCESSED && awaitingExport != null) {
             awaitingExport.add(logEntry);
         }
     }
 
     @Override
     public void exportUpdatedEntry(final LogEntry updatedEntry) {
-        if(updatedEntry.getStatus() == Status.PROCESSED) {
+        LinkedBlockingQueue<LogEntry> awaitingExport = this.awaitingExport;
+        if(updatedEntry.getStatus() == Status.PROCESSED && awaitingExport != null) {
             awaitingExport.add(updatedEntry);
         }
     }
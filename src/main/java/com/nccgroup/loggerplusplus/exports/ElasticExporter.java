@@ -41,6 +41,7 @@ import java.net.ConnectException;
 import java.net.InetAddress;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -50,7 +51,8 @@ import java.util.concurrent.TimeUnit;
 public class ElasticExporter extends AutomaticLogExporter implements ExportPanelProvider, ContextMenuExportProvider {
 
     ElasticsearchClient elasticClient;
-    ArrayList<LogEntry> pendingEntries;
+    //Added to from the log processing threads, drained by the index task.
+    volatile Queue<LogEntry> pendingEntries;
     LogTableFilter logFilter;
     private List<LogEntryField> fields;
     private String indexName;
@@ -150,7 +152,7 @@ public class ElasticExporter extends AutomaticLogExporter implements ExportPanel
         elasticClient = new ElasticsearchClient(transport);
 
         createIndices();
-        pendingEntries = new ArrayList<>();
+        pendingEntries = new ConcurrentLinkedQueue<>();
         int delay = preferences.getSetting(Globals.PREF_ELASTIC_DELAY);
         indexTask = executorService.scheduleAtFixedRate(this::indexPendingEntries, delay, delay, TimeUnit.SECONDS);
     }
@@ -159,7 +161,8 @@ public class ElasticExporter extends AutomaticLogExporter implements ExportPanel
     public void exportNewEntry(final LogEntry logEntry) {
         if(logEntry.getStatus() == Status.PROCESSED) {
             if (logFilter != null && !logFilter.getFilterExpression().matches(logEntry)) return;
-            pendingEntries.add(logEntry);
+            Queue<LogEntry> pendingEntries = this.pendingEntries;
+            if (pendingEntries != null) pendingEntries.add(logEntry);
         }
     }
 
@@ -167,7 +170,8 @@ public class ElasticExporter extends AutomaticLogExporter implements ExportPanel
     public void exportUpdatedEntry(final LogEntry updatedEntry) {
         if(updatedEntry.getStatus() == Status.PROCESSED) {
             if (logFilter != null && !logFilter.getFilterExpression().matches(updatedEntry)) return;
-            pendingEntries.add(updatedEntry);
+            Queue<LogEntry> pendingEntries = this.pendingEntries;
+            if (pendingEntries != null) pendingEntries.add(updatedEntry);
         }
     }
 
@@ -218,14 +222,15 @@ public class ElasticExporter extends AutomaticLogExporter implements ExportPanel
 
     private void indexPendingEntries(){
         try {
-            if (this.pendingEntries.size() == 0) return;
+            Queue<LogEntry> pendingEntries = this.pendingEntries;
+            if (pendingEntries == null || pendingEntries.isEmpty()) return;
 
             BulkRequest.Builder bulkBuilder = new BulkRequest.Builder();
 
-            ArrayList<LogEntry> entriesInBulk;
-            synchronized (pendingEntries) {
-                entriesInBulk = new ArrayList<>(pendingEntries);
-                pendingEntries.clear();
+            ArrayList<LogEntry> entriesInBulk = new ArrayList<>();
+            LogEntry pendingEntry;
+            while ((pendingEntry = pendingEntries.poll()) != null) {
+                entriesInBulk.add(pendingEntry);
             }
 
             for (LogEntry logEntry : entriesInBulk) {
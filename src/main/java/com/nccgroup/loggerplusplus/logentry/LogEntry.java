@@ -38,6 +38,7 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.text.ParseException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Matcher;
 import java.util.stream.Collectors;
 
@@ -106,6 +107,10 @@ public class LogEntry {
 	private List<HttpHeader> requestHeaders;
 	private List<String> parameters;
 	private List<String> reflectedParameters;
+	//Set once the entry has been handed to the collector.
+	@Getter(AccessLevel.NONE)
+	@Setter(AccessLevel.NONE)
+	private final AtomicBoolean collectorSubmitted = new AtomicBoolean();
 
 	private LogEntry() {
 		this.matchingColorFilters = Collections.synchronizedList(new ArrayList<>());
@@ -135,6 +140,14 @@ public class LogEntry {
 		this.setReqestTime(formattedRequestTime);
 	}
 
+	/**
+	 * Marks the entry as submitted to the collector.
+	 * @return true the first time it is called, so each entry is only ever collected once.
+	 */
+	public boolean markCollectorSubmitted() {
+		return collectorSubmitted.compareAndSet(false, true);
+	}
+
 	public boolean process() {
 		previousStatus = this.status;
 		switch (this.status) {
@@ -11,6 +11,7 @@ public class LogTableController {
     private final FilterLibraryController filterLibraryController;
     private final Preferences preferences;
     private final LogTableModel logTableModel;
+    private final LogTableUpdateBus logTableUpdateBus;
     private final LogTableColumnModel logTableColumnModel;
     private final TableHeader tableHeader;
     private final LogTable logTable;
@@ -22,6 +23,7 @@ public class LogTableController {
 
         this.logTableColumnModel = new LogTableColumnModel(this);
         this.logTableModel = new LogTableModel(this, logTableColumnModel);
+        this.logTableUpdateBus = new LogTableUpdateBus(logTableModel);
         this.tableHeader = new TableHeader(this);
         this.logTable = new LogTable(this);
 
@@ -41,6 +43,10 @@ public class LogTableController {
         return logTableModel;
     }
 
+    public LogTableUpdateBus getLogTableUpdateBus() {
+        return logTableUpdateBus;
+    }
+
     public LogTable getLogTable() {
         return logTable;
     }
@@ -62,6 +68,10 @@ public class LogTableController {
         return preferences.getSetting(Globals.PREF_MAXIMUM_ENTRIES);
     }
 
+    public void shutdown(){
+        logTableUpdateBus.shutdown();
+    }
+
     public void reinitialize(){
         //TODO Reinitialize table model
     }
@@ -15,6 +15,9 @@ import java.util.*;
 /* Extending AbstractTableModel to design the logTable behaviour based on the array list */
 public class LogTableModel extends AbstractTableModel implements ColorFilterListener, TagListener {
 
+    //How far back from the newest row updateEntries searches for the entries to redraw.
+    private static final int UPDATE_SEARCH_ROWS = 10000;
+
     private final LogTableController controller;
     private final List<LogEntry> entries;
     private LogTableColumnModel columnModel;
@@ -63,15 +66,38 @@ public class LogTableModel extends AbstractTableModel implements ColorFilterList
         removeLogEntries(Arrays.asList(logEntry));
     }
 
-    public void removeLogEntries(List<LogEntry> logEntry) {
+    /**
+     * Removes the entries in one pass from the newest entry, rather than searching the table for each entry.
+     * Adjacent rows are removed together, with one delete event for each run.
+     * Entries no longer in the table, e.g. already trimmed, are skipped.
+     */
+    public synchronized void removeLogEntries(List<LogEntry> logEntry) {
+        Set<LogEntry> toRemove = Collections.newSetFromMap(new IdentityHashMap<>());
+        toRemove.addAll(logEntry);
         synchronized (entries) {
-            for (LogEntry entry : logEntry) {
-                int index = entries.indexOf(entry);
-                removeEntryAtRow(index);
+            int remaining = toRemove.size();
+            int runEnd = -1;
+            int row;
+            for (row = entries.size() - 1; row >= 0 && remaining > 0; row--) {
+                if (toRemove.contains(entries.get(row))) {
+                    if (runEnd == -1) runEnd = row;
+                    remaining--;
+                } else if (runEnd != -1) {
+                    removeRows(row + 1, runEnd);
+                    runEnd = -1;
+                }
+            }
+            if (runEnd != -1) {
+                removeRows(row + 1, runEnd);
             }
         }
     }
 
+    private void removeRows(int firstRow, int lastRow) {
+        entries.subList(firstRow, lastRow + 1).clear();
+        this.fireTableRowsDeleted(firstRow, lastRow);
+    }
+
     public synchronized void removeEntryAtRow(int row) {
         entries.remove(row);
         this.fireTableRowsDeleted(row, row);
@@ -88,11 +114,51 @@ public class LogTableModel extends AbstractTableModel implements ColorFilterList
         }
     }
 
+    /**
+     * Adds the entries with a single insert event, then trims the oldest entries with a single delete event.
+     */
+    public synchronized void addEntries(List<LogEntry> logEntries) {
+        int firstIndex = entries.size();
+        entries.addAll(logEntries);
+        this.fireTableRowsInserted(firstIndex, entries.size() - 1);
+
+        int excess = Math.max(entries.size() - controller.getMaximumEntries(), 0);
+        if (excess > 0) {
+            entries.subList(0, excess).clear(); // Always remove the oldest entries
+            this.fireTableRowsDeleted(0, excess - 1);
+        }
+    }
+
     public synchronized void updateEntry(LogEntry logEntry) {
         int index = entries.indexOf(logEntry);
         fireTableRowsUpdated(index, index);
     }
 
+    /**
+     * Fires an update event for each run of adjacent rows in the set, so rows between them are not redrawn.
+     * Updates are almost always for recent requests, so only the newest rows are searched, and the search stops
+     * as soon as every entry has been found. Rows further back than that are drawn with their new values
+     * the next time they are painted.
+     */
+    public synchronized void updateEntries(Set<LogEntry> logEntries) {
+        int remaining = logEntries.size();
+        int oldestRow = Math.max(entries.size() - Math.max(UPDATE_SEARCH_ROWS, logEntries.size() * 4), 0);
+        int runEnd = -1;
+        int row;
+        for (row = entries.size() - 1; row >= oldestRow && remaining > 0; row--) {
+            if (logEntries.contains(entries.get(row))) {
+                if (runEnd == -1) runEnd = row;
+                remaining--;
+            } else if (runEnd != -1) {
+                fireTableRowsUpdated(row + 1, runEnd);
+                runEnd = -1;
+            }
+        }
+        if (runEnd != -1) {
+            fireTableRowsUpdated(row + 1, runEnd);
+        }
+    }
+
     @Override
     public Object getValueAt(int rowIndex, int colModelIndex) {
         if (rowIndex >= entries.size())
@@ -116,6 +182,13 @@ public class LogTableModel extends AbstractTableModel implements ColorFilterList
         return this.entries;
     }
 
+    /**
+     * @return A copy of the entries which is safe to iterate while entries are being added and removed.
+     */
+    public synchronized List<LogEntry> getSnapshot() {
+        return new ArrayList<>(this.entries);
+    }
+
     public LogEntry getRow(int row) {
         return this.entries.get(row);
     }
@@ -0,0 +1,97 @@
+package com.nccgroup.loggerplusplus.logview.logtable;
+
+import com.nccgroup.loggerplusplus.logentry.LogEntry;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Collects table changes from the processing threads and applies them to the table model in batches.
+ * Changes are queued without locking, and a timer on the EDT applies whatever has been queued at most
+ * once per interval, firing one event per batch rather than one per entry. This keeps the EDT responsive
+ * when the scanner or intruder are logging thousands of requests a second.
+ */
+public class LogTableUpdateBus {
+
+    private static final int FLUSH_INTERVAL_MS = 100;
+
+    private final LogTableModel logTableModel;
+    private final Queue<Update> pendingUpdates;
+    private final Timer flushTimer;
+
+    public LogTableUpdateBus(LogTableModel logTableModel) {
+        this.logTableModel = logTableModel;
+        this.pendingUpdates = new ConcurrentLinkedQueue<>();
+        this.flushTimer = new Timer(FLUSH_INTERVAL_MS, e -> flush());
+        this.flushTimer.setCoalesce(true);
+        this.flushTimer.start();
+    }
+
+    public void addEntry(LogEntry logEntry) {
+        pendingUpdates.add(new Update(UpdateType.ADD, logEntry));
+    }
+
+    public void updateEntry(LogEntry logEntry) {
+        pendingUpdates.add(new Update(UpdateType.UPDATE, logEntry));
+    }
+
+    public void removeEntry(LogEntry logEntry) {
+        pendingUpdates.add(new Update(UpdateType.REMOVE, logEntry));
+    }
+
+    /**
+     * Stops applying updates. Anything still queued is discarded.
+     */
+    public void shutdown() {
+        flushTimer.stop();
+        pendingUpdates.clear();
+    }
+
+    //Runs on the EDT.
+    private void flush() {
+        if (pendingUpdates.isEmpty()) return;
+
+        List<LogEntry> added = new ArrayList<>();
+        Set<LogEntry> addedSet = Collections.newSetFromMap(new IdentityHashMap<>());
+        Set<LogEntry> updated = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<LogEntry> removed = new ArrayList<>();
+
+        Update update;
+        while ((update = pendingUpdates.poll()) != null) {
+            switch (update.type) {
+                case ADD -> {
+                    added.add(update.logEntry);
+                    addedSet.add(update.logEntry);
+                }
+                //Rows inserted in this batch are drawn with their latest state, so need no update of their own.
+                case UPDATE -> {
+                    if (!addedSet.contains(update.logEntry)) updated.add(update.logEntry);
+                }
+                case REMOVE -> removed.add(update.logEntry);
+            }
+        }
+
+        //Removals are applied last, since an entry can be added or updated before being filtered out.
+        if (!added.isEmpty()) logTableModel.addEntries(added);
+        if (!updated.isEmpty()) logTableModel.updateEntries(updated);
+        if (!removed.isEmpty()) logTableModel.removeLogEntries(removed);
+    }
+
+    private enum UpdateType {ADD, UPDATE, REMOVE}
+
+    private static class Update {
+        private final UpdateType type;
+        private final LogEntry logEntry;
+
+        private Update(UpdateType type, LogEntry logEntry) {
+            this.type = type;
+            this.logEntry = logEntry;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.nccgroup.loggerplusplus.logview.processor;
+
+/**
+ * Requests waiting on their response, keyed by the identifier added to the request annotations.
+ * Identifiers are kept as primitive ints in open addressed tables, split into stripes which each have their own lock.
+ * Request and response threads only contend when their identifiers fall in the same stripe,
+ * and every operation holds the lock for a single probe sequence.
+ */
+class EntryCorrelationTable {
+
+    private static final int STRIPE_BITS = 5;
+    private static final int INITIAL_STRIPE_CAPACITY = 64;
+
+    private final Stripe[] stripes;
+
+    EntryCorrelationTable() {
+        this.stripes = new Stripe[1 << STRIPE_BITS];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Adds a pending entry, replacing any entry with the same identifier.
+     */
+    void put(int identifier, PendingEntry pendingEntry) {
+        int hash = hash(identifier);
+        stripeFor(hash).put(identifier, hash, pendingEntry);
+    }
+
+    /**
+     * @return The pending entry for the identifier, or null if there is none.
+     */
+    PendingEntry get(int identifier) {
+        int hash = hash(identifier);
+        return stripeFor(hash).get(identifier, hash);
+    }
+
+    /**
+     * Removes the entry only if the identifier still maps to it,
+     * so a finishing entry can never remove a newer request which reused its identifier.
+     * @return true if the entry was removed.
+     */
+    boolean remove(int identifier, PendingEntry pendingEntry) {
+        int hash = hash(identifier);
+        return stripeFor(hash).remove(identifier, hash, pendingEntry);
+    }
+
+    private Stripe stripeFor(int hash) {
+        return stripes[hash >>> (Integer.SIZE - STRIPE_BITS)];
+    }
+
+    //Identity hash codes are not evenly spread in their low bits, so mix them before use.
+    private static int hash(int identifier) {
+        int hash = identifier * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Linear probing table. Removal shifts the following entries back instead of leaving tombstones,
+     * so lookups stay short however many requests have passed through.
+     */
+    private static class Stripe {
+
+        private int[] keys = new int[INITIAL_STRIPE_CAPACITY];
+        private PendingEntry[] values = new PendingEntry[INITIAL_STRIPE_CAPACITY];
+        private int size;
+
+        synchronized PendingEntry get(int key, int hash) {
+            int mask = keys.length - 1;
+            for (int i = hash & mask; values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) return values[i];
+            }
+            return null;
+        }
+
+        synchronized void put(int key, int hash, PendingEntry value) {
+            if ((size + 1) * 4 > keys.length * 3) {
+                resize(keys.length * 2);
+            }
+            int mask = keys.length - 1;
+            int i = hash & mask;
+            while (values[i] != null) {
+                if (keys[i] == key) {
+                    values[i] = value;
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values[i] = value;
+            size++;
+        }
+
+        synchronized boolean remove(int key, int hash, PendingEntry value) {
+            int mask = keys.length - 1;
+            for (int i = hash & mask; values[i] != null; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    if (values[i] != value) return false;
+                    delete(i);
+                    //Shrink, so a burst of requests does not leave an oversized table behind.
+                    if (keys.length > INITIAL_STRIPE_CAPACITY && size * 8 < keys.length) {
+                        resize(keys.length / 2);
+                    }
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void delete(int slot) {
+            int mask = keys.length - 1;
+            int gap = slot;
+            for (int i = (slot + 1) & mask; values[i] != null; i = (i + 1) & mask) {
+                int home = hash(keys[i]) & mask;
+                //The entry can fill the gap unless its home slot lies between the gap and where it sits now.
+                if (((i - home) & mask) >= ((i - gap) & mask)) {
+                    keys[gap] = keys[i];
+                    values[gap] = values[i];
+                    gap = i;
+                }
+            }
+            values[gap] = null;
+            size--;
+        }
+
+        private void resize(int capacity) {
+            int[] oldKeys = keys;
+            PendingEntry[] oldValues = values;
+            keys = new int[capacity];
+            values = new PendingEntry[capacity];
+            size = 0;
+            for (int i = 0; i < oldValues.length; i++) {
+                if (oldValues[i] != null) {
+                    insert(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        //Inserts a key known not to be present into a table with free slots.
+        private void insert(int key, PendingEntry value) {
+            int mask = keys.length - 1;
+            int i = hash(key) & mask;
+            while (values[i] != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values[i] = value;
+            size++;
+        }
+    }
+}
@@ -17,6 +17,7 @@ import com.nccgroup.loggerplusplus.logentry.FieldGroup;
 import com.nccgroup.loggerplusplus.logentry.LogEntry;
 import com.nccgroup.loggerplusplus.logentry.Status;
 import com.nccgroup.loggerplusplus.logview.logtable.LogTableController;
+import com.nccgroup.loggerplusplus.util.HashedTimingWheel;
 import com.nccgroup.loggerplusplus.util.NamedThreadFactory;
 import com.nccgroup.loggerplusplus.util.PausableThreadPoolExecutor;
 import lombok.Getter;
@@ -24,10 +25,10 @@ import lombok.extern.log4j.Log4j2;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import javax.swing.*;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.nccgroup.loggerplusplus.util.Globals.*;
 
@@ -38,15 +39,18 @@ import static com.nccgroup.loggerplusplus.util.Globals.*;
 public class LogProcessor {
     public static final SimpleDateFormat LOGGER_DATE_FORMAT = new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
     public static final SimpleDateFormat SERVER_DATE_FORMAT = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz");
+    //Processing is CPU bound, more threads than cores only adds stacks and context switches.
+    private static final int PROCESSING_THREADS = Math.max(Runtime.getRuntime().availableProcessors(), 2);
+    private static final int PROCESSING_QUEUE_SIZE = 10000;
     private final LogTableController logTableController;
     private final ExportController exportController;
     private final CollectorController collectorController;
     private final Preferences preferences;
-    private final ConcurrentHashMap<Integer, LogEntry> entriesPendingProcessing;
-    private final ConcurrentHashMap<Integer, Future<LogEntry>> entryProcessingFutures;
+    private final EntryCorrelationTable pendingEntries;
     private final PausableThreadPoolExecutor entryProcessExecutor;
+    private final AtomicLong callerRunsCount;
     private final PausableThreadPoolExecutor entryImportExecutor;
-    private final ScheduledExecutorService cleanupExecutor;
+    private final HashedTimingWheel responseTimeouts;
 
     @Getter
     private final HttpHandler httpHandler;
@@ -66,16 +70,32 @@ public class LogProcessor {
         this.collectorController = collectorController;
         this.preferences = LoggerPlusPlus.instance.getPreferencesController().getPreferences();
 
-        this.entriesPendingProcessing = new ConcurrentHashMap<>();
-        this.entryProcessingFutures = new ConcurrentHashMap<>();
-        this.entryProcessExecutor = new PausableThreadPoolExecutor(0, 2147483647,
-                30L, TimeUnit.SECONDS, new SynchronousQueue<>(), new NamedThreadFactory("LPP-LogManager"));
+        this.pendingEntries = new EntryCorrelationTable();
+        this.callerRunsCount = new AtomicLong();
+        //When the queue is full the Burp thread handing over the message processes it itself,
+        //slowing the tool down rather than dropping entries or starting a thread per message.
+        this.entryProcessExecutor = new PausableThreadPoolExecutor(PROCESSING_THREADS, PROCESSING_THREADS,
+                30L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(PROCESSING_QUEUE_SIZE), new NamedThreadFactory("LPP-LogManager"),
+                (runnable, executor) -> {
+                    if (executor.isShutdown()) return;
+                    callerRunsCount.incrementAndGet();
+                    //Imports pause processing, which must hold for the calling thread as well as the pool.
+                    try {
+                        ((PausableThreadPoolExecutor) executor).awaitUnpaused();
+                    } catch (InterruptedException e) {
+                        //Processed anyway rather than dropped.
+                        Thread.currentThread().interrupt();
+                    }
+                    if (executor.isShutdown()) return;
+                    runnable.run();
+                });
+        this.entryProcessExecutor.allowCoreThreadTimeOut(true);
         this.entryImportExecutor = new PausableThreadPoolExecutor(0, 10, 60L,
                 TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), new NamedThreadFactory("LPP-Import"));
 
-        //Create incomplete request cleanup thread so map doesn't get too big.
-        this.cleanupExecutor = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("LPP-LogManager-Cleanup"));
-        this.cleanupExecutor.scheduleAtFixedRate(new AbandonedRequestCleanupRunnable(),30, 30, TimeUnit.SECONDS);
+        //Each request schedules its own timeout, so incomplete requests don't stay in the table forever.
+        //One second ticks over 512 buckets. Longer timeouts, up to an hour for some tools, wait out extra rotations.
+        this.responseTimeouts = new HashedTimingWheel("LPP-LogManager-Timeouts", 1, TimeUnit.SECONDS, 512);
 
         //TODO Enable new logging API when support for matching requests and their responses improves...
         this.httpHandler = createHttpHandler();
@@ -234,34 +254,33 @@ public class LogProcessor {
      */
     private void updateRequestWithResponse(Integer entryIdentifier, Date arrivalTime, HttpResponse response) {
         log.debug("Updating entry with response for ID: " + entryIdentifier);
-        if (entriesPendingProcessing.containsKey(entryIdentifier)) {
-            //Not yet started processing the entry, we can add the response so it is processed in the first pass
-            final LogEntry logEntry = entriesPendingProcessing.get(entryIdentifier);
-
-            if (response instanceof InterceptedResponse) {
-                // Raises java.lang.UnsupportedOperationException: Not yet implemented
-//                logEntry.setClientIP(String.valueOf(((InterceptedResponse) response).sourceIpAddress()));
-                logEntry.setListenerInterface(((InterceptedResponse) response).listenerInterface());
-            }
-
-            //Update the response with the new one, and tell it when it arrived.
-            logEntry.addResponse(response, arrivalTime);
+        //A single lookup, so the entry cannot move between states between checking for it and using it.
+        PendingEntry pendingEntry = entryIdentifier != null ? pendingEntries.get(entryIdentifier) : null;
+        if (pendingEntry == null) {
+            //Unknown Identifier. Potentially for a request which was ignored or cleaned up already?
+            return;
+        }
 
+        if (pendingEntry.offerResponse(response, arrivalTime)) {
+            //Not yet started processing the entry, the response will be processed in the first pass.
             //Do nothing now, there's already a runnable submitted to process it somewhere in the queue.
             return;
+        }
 
-        } else if (entryProcessingFutures.containsKey(entryIdentifier)) {
-            //Already started processing.
-
-            //Get the processing thread
-            Future<LogEntry> processingFuture = entryProcessingFutures.get(entryIdentifier);
+        //Already started processing.
+        //Process the response once the request has been processed, without holding a thread waiting for it.
+        submitEntryUpdate(pendingEntry, response, arrivalTime);
+    }
 
-            //Submit a job for the processing of its response.
-            //This will block on the request finishing processing, then update the response and process it separately.
-            entryProcessExecutor.submit(createEntryUpdateRunnable(processingFuture, response, arrivalTime));
-        } else {
-            //Unknown Identifier. Potentially for a request which was ignored or cleaned up already?
+    private static void applyResponse(LogEntry logEntry, HttpResponse response, Date arrivalTime) {
+        if (response instanceof InterceptedResponse) {
+            // Raises java.lang.UnsupportedOperationException: Not yet implemented
+//            logEntry.setClientIP(String.valueOf(((InterceptedResponse) response).sourceIpAddress()));
+            logEntry.setListenerInterface(((InterceptedResponse) response).listenerInterface());
         }
+
+        //Update the response with the new one, and tell it when it arrived.
+        logEntry.addResponse(response, arrivalTime);
     }
 
     /**
@@ -304,69 +323,142 @@ public class LogProcessor {
 
     private void submitNewEntryProcessingRunnable(final LogEntry logEntry){
         log.debug("Adding log process request for ID: " + logEntry.getIdentifier());
-        entriesPendingProcessing.put(logEntry.getIdentifier(), logEntry);
-        RunnableFuture<LogEntry> processingRunnable = new FutureTask<>(() -> {
-            entriesPendingProcessing.remove(logEntry.getIdentifier());
-            LogEntry result = processEntry(logEntry);
-
-            if(result == null) {
-                entryProcessingFutures.remove(logEntry.getIdentifier());
-                return null; //Ignored entry. Skip it.
-            }else{
-                addNewEntry(logEntry, true);
-
-                if(result.getStatus() == Status.PROCESSED){
-                    //If the entry was fully processed, remove it from the processing list.
-                    entryProcessingFutures.remove(logEntry.getIdentifier());
-                }else{
-                    //We're waiting on the response, we'll use this future to know we're done later.
-                }
-                return result;
+        final int identifier = logEntry.getIdentifier();
+        final PendingEntry pendingEntry = new PendingEntry(logEntry);
+        pendingEntries.put(identifier, pendingEntry);
+        scheduleTimeout(identifier, pendingEntry);
+        entryProcessExecutor.execute(() -> {
+            try {
+                pendingEntry.getRequestProcessed().complete(processNewEntry(identifier, pendingEntry));
+            } catch (Throwable e) {
+                completeEntry(identifier, pendingEntry);
+                pendingEntry.getRequestProcessed().completeExceptionally(e);
+                log.error("Could not process entry " + identifier, e);
             }
         });
-        entryProcessingFutures.put(logEntry.getIdentifier(), processingRunnable);
-        entryProcessExecutor.submit(processingRunnable);
     }
 
-    private RunnableFuture<LogEntry> createEntryUpdateRunnable(final Future<LogEntry> processingFuture,
-                                                              final HttpResponse requestResponse,
-                                                              final Date arrivalTime){
-        return new FutureTask<>(() -> {
-            //Block until initial processing is complete.
-            LogEntry logEntry = processingFuture.get();
+    private LogEntry processNewEntry(int identifier, PendingEntry pendingEntry) {
+        LogEntry logEntry = pendingEntry.getLogEntry();
+        if (pendingEntry.start()) {
+            //The response arrived before processing started, process both together.
+            applyResponse(logEntry, pendingEntry.getResponse(), pendingEntry.getResponseArrivalTime());
+        }
+        LogEntry result = processEntry(logEntry);
+
+        if(result == null) {
+            completeEntry(identifier, pendingEntry);
+            return null; //Ignored entry. Skip it.
+        }else{
+            addNewEntry(logEntry, true);
+
+            if(result.getStatus() == Status.PROCESSED){
+                //If the entry was fully processed, remove it from the processing list.
+                completeEntry(identifier, pendingEntry);
+            }else{
+                //We're waiting on the response, responses arriving from now on continue from the completed request.
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Processes a response once the request it belongs to has been processed.
+     * The update is chained onto the request's processing rather than waiting on it,
+     * so it only takes a thread once there is work for it to do.
+     */
+    private void submitEntryUpdate(final PendingEntry pendingEntry,
+                                   final HttpResponse requestResponse,
+                                   final Date arrivalTime){
+        pendingEntry.getRequestProcessed().thenAcceptAsync(logEntry -> {
             if (logEntry == null) {
                 //Request was filtered during response processing. We can just ignore the response.
-                return null;
+                return;
             }
 
             //Request was processed successfully... now process the response.
-            if (requestResponse instanceof InterceptedResponse) {
-                // Raises java.lang.UnsupportedOperationException: Not yet implemented
-//                logEntry.setClientIP(String.valueOf(((InterceptedResponse) requestResponse).sourceIpAddress()));
-                logEntry.setListenerInterface(((InterceptedResponse) requestResponse).listenerInterface());
-            }
-
-            logEntry.addResponse(requestResponse, arrivalTime);
+            applyResponse(logEntry, requestResponse, arrivalTime);
             LogEntry updatedEntry = processEntry(logEntry);
 
             if(updatedEntry == null){
                 //Response must have been filtered out. Delete the existing entry and stop processing
                 removeExistingEntry(logEntry);
-                entryProcessingFutures.remove(logEntry.getIdentifier());
-                return null;
+                completeEntry(logEntry.getIdentifier(), pendingEntry);
+                return;
             }
 
             if (logEntry.getStatus() == Status.PROCESSED) {
                 //If the entry was fully processed, remove it from the processing list.
-                entryProcessingFutures.remove(logEntry.getIdentifier());
+                completeEntry(logEntry.getIdentifier(), pendingEntry);
             }
 
             updateExistingEntry(logEntry);
-
-            return logEntry;
+        }, entryProcessExecutor).whenComplete((ignored, e) -> {
+            //A failed request has already been completed and logged.
+            if (e == null || pendingEntry.getRequestProcessed().isCompletedExceptionally()) return;
+            //With its response attached the entry never times out, so must be removed here.
+            int identifier = pendingEntry.getLogEntry().getIdentifier();
+            log.error("Could not process response for entry " + identifier, e);
+            completeEntry(identifier, pendingEntry);
         });
     }
 
+    /**
+     * Removes a finished entry from the pending table and cancels its timeout.
+     */
+    private void completeEntry(int identifier, PendingEntry pendingEntry) {
+        pendingEntries.remove(identifier, pendingEntry);
+        HashedTimingWheel.Timeout timeout = pendingEntry.getTimeout();
+        if (timeout != null) timeout.cancel();
+    }
+
+    private void scheduleTimeout(int identifier, PendingEntry pendingEntry) {
+        int responseTimeout = getResponseTimeout(pendingEntry.getLogEntry().getTool());
+        pendingEntry.setTimeout(responseTimeouts.schedule(() -> expireEntry(identifier, pendingEntry),
+                responseTimeout, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Runs on the timing wheel thread when a request has waited too long for its response.
+     */
+    private void expireEntry(int identifier, PendingEntry pendingEntry) {
+        if (!pendingEntry.getRequestProcessed().isDone()) {
+            //Still waiting for a processing thread, it can only time out once its request has been processed.
+            scheduleTimeout(identifier, pendingEntry);
+            return;
+        }
+        if (pendingEntry.getResponse() != null) {
+            //The response arrived and is being processed, which will remove the entry.
+            return;
+        }
+        if (!pendingEntries.remove(identifier, pendingEntry)) return;
+
+        LogEntry logEntry = pendingEntry.getLogEntry();
+        if (logEntry.getTool() == ToolType.PROXY) {
+            //Remove the identifier from the comment.
+            //TODO Fix Comment cleanup
+//            LogEntry.extractAndRemoveIdentifierFromComment(logEntry);
+        }
+        logEntry.setComment(logEntry.getComment() + " Timed Out");
+    }
+
+    /**
+     * @return The response timeout in seconds for requests from the tool. Tools without their own timeout use the default.
+     */
+    private int getResponseTimeout(ToolType toolType){
+        String toolTimeoutSetting;
+        switch (toolType){
+            case PROXY -> toolTimeoutSetting = PREF_RESPONSE_TIMEOUT_PROXY;
+            case REPEATER -> toolTimeoutSetting = PREF_RESPONSE_TIMEOUT_REPEATER;
+            case INTRUDER -> toolTimeoutSetting = PREF_RESPONSE_TIMEOUT_INTRUDER;
+            case SCANNER -> toolTimeoutSetting = PREF_RESPONSE_TIMEOUT_SCANNER;
+            default -> toolTimeoutSetting = null;
+        }
+        Integer toolTimeout = toolTimeoutSetting != null ? preferences.getSetting(toolTimeoutSetting) : null;
+        if (toolTimeout != null && toolTimeout > 0) return toolTimeout;
+        return preferences.getSetting(PREF_RESPONSE_TIMEOUT);
+    }
+
     public EntryImportWorker.Builder createEntryImportBuilder(){
         return new EntryImportWorker.Builder(this);
     }
@@ -407,40 +499,36 @@ public class LogProcessor {
     }
 
     public void shutdown() {
-        this.cleanupExecutor.shutdownNow();
+        this.responseTimeouts.stop();
         this.entryProcessExecutor.shutdownNow();
         this.entryImportExecutor.shutdownNow();
     }
 
     void addNewEntry(LogEntry logEntry, boolean sendToAutoExporters) {
-        FilterExpression doNotLogExpression = preferences.getSetting(PREF_DO_NOT_LOG_IF_MATCH);
-        SwingUtilities.invokeLater(() -> {
-            if (sendToAutoExporters) exportController.exportNewEntry(logEntry);
-            logTableController.getLogTableModel().addEntry(logEntry);
-            
-            // Send to collector if response is available
-            if (logEntry.getResponseBytes() != null) {
-                collectorController.sendToCollector(logEntry);
-            }
-        });
+        if (sendToAutoExporters) exportController.exportNewEntry(logEntry);
+        //Queued rather than invoked on the EDT per entry, the table applies them in batches.
+        logTableController.getLogTableUpdateBus().addEntry(logEntry);
+        submitToCollector(logEntry);
     }
 
     void updateExistingEntry(LogEntry logEntry) {
         exportController.exportUpdatedEntry(logEntry);
-        SwingUtilities.invokeLater(() -> {
-            logTableController.getLogTableModel().updateEntry(logEntry);
-            
-            // Send to collector when entry is updated (response received)
-            if (logEntry.getResponseBytes() != null) {
-                collectorController.sendToCollector(logEntry);
-            }
-        });
+        logTableController.getLogTableUpdateBus().updateEntry(logEntry);
+        submitToCollector(logEntry);
+    }
+
+    /**
+     * Passes completed entries to the collector from the calling processing thread.
+     * Entries still waiting on a response are sent once their response has been processed.
+     */
+    private void submitToCollector(LogEntry logEntry) {
+        if (logEntry.getStatus() == Status.PROCESSED) {
+            collectorController.submit(logEntry);
+        }
     }
 
     void removeExistingEntry(LogEntry logEntry){
-        SwingUtilities.invokeLater(() -> {
-            logTableController.getLogTableModel().removeLogEntry(logEntry);
-        });
+        logTableController.getLogTableUpdateBus().removeEntry(logEntry);
     }
 
     PausableThreadPoolExecutor getEntryImportExecutor() {
@@ -451,50 +539,24 @@ public class LogProcessor {
         return entryProcessExecutor;
     }
 
+    /**
+     * @return The number of entries being processed right now.
+     */
+    public int getActiveProcessingTasks() {
+        return entryProcessExecutor.getActiveCount();
+    }
 
-    /*************************
-     *
-     * Private worker implementations
-     *
-     *************************/
-
-    private class AbandonedRequestCleanupRunnable implements Runnable {
-
-        @Override
-        public void run() {
-            long timeNow = new Date().getTime();
-            synchronized (entryProcessingFutures){
-                try {
-                    Iterator<Map.Entry<Integer, Future<LogEntry>>> iter
-                            = entryProcessingFutures.entrySet().iterator();
-
-                    while (iter.hasNext()) {
-                        Map.Entry<Integer, Future<LogEntry>> abandonedEntry = iter.next();
-                        if(abandonedEntry.getValue().isDone()){
-                            LogEntry logEntry = abandonedEntry.getValue().get();
-                            if (logEntry.getRequestDateTime() == null) {
-                                //Should never be the case.
-                                //Entries should always have request times unless they are imported,
-                                //In which case they will never be awaiting a response so never in this list.
-                                continue;
-                            }
-                            long entryTime = logEntry.getRequestDateTime().getTime();
-                            long responseTimeout = 1000 * ((Integer) preferences.getSetting(PREF_RESPONSE_TIMEOUT)).longValue();
-                            if (timeNow - entryTime > responseTimeout) {
-                                iter.remove();
-                                if (logEntry.getTool() == ToolType.PROXY) {
-                                    //Remove the identifier from the comment.
-                                    //TODO Fix Comment cleanup
-//                                    LogEntry.extractAndRemoveIdentifierFromComment(logEntry);
-                                }
-                                logEntry.setComment(logEntry.getComment() + " Timed Out");
-                            }
-                        }
-                    }
-                }catch (Exception e){
-                    e.printStackTrace();
-                }
-            }
-        }
+    /**
+     * @return The number of entries waiting for a processing thread.
+     */
+    public int getQueuedProcessingTasks() {
+        return entryProcessExecutor.getQueue().size();
+    }
+
+    /**
+     * @return How many entries were processed by the Burp thread which handed them over, because the queue was full.
+     */
+    public long getCallerRunsCount() {
+        return callerRunsCount.get();
     }
 }
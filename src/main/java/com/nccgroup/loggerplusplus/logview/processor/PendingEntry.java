@@ -0,0 +1,84 @@
+package com.nccgroup.loggerplusplus.logview.processor;
+
+import burp.api.montoya.http.message.responses.HttpResponse;
+import com.nccgroup.loggerplusplus.logentry.LogEntry;
+import com.nccgroup.loggerplusplus.util.HashedTimingWheel;
+
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A request waiting on its response, and how far its processing has got.
+ * A response is handed over with a compare-and-set on the state, so a response which arrives
+ * while the request is being picked up for processing is never lost, and never applied twice.
+ */
+class PendingEntry {
+
+    //Waiting for a processing thread. A response can still be added to the first pass.
+    static final int QUEUED = 0;
+    //Waiting for a processing thread, with its response attached.
+    static final int RESPONSE_QUEUED = 1;
+    //Processing of the request has started. The response must be processed separately.
+    static final int STARTED = 2;
+
+    private final LogEntry logEntry;
+    private final AtomicInteger state;
+    private final CompletableFuture<LogEntry> requestProcessed;
+    private volatile HttpResponse response;
+    private volatile Date responseArrivalTime;
+    private volatile HashedTimingWheel.Timeout timeout;
+
+    PendingEntry(LogEntry logEntry) {
+        this.logEntry = logEntry;
+        this.state = new AtomicInteger(QUEUED);
+        this.requestProcessed = new CompletableFuture<>();
+    }
+
+    /**
+     * Attaches the response to a request which has not started processing yet.
+     * @return true if the response will be processed with the request, false if processing had already started.
+     */
+    boolean offerResponse(HttpResponse response, Date arrivalTime) {
+        //Published before the state change, so whoever starts processing sees them.
+        this.response = response;
+        this.responseArrivalTime = arrivalTime;
+        return state.compareAndSet(QUEUED, RESPONSE_QUEUED);
+    }
+
+    /**
+     * Marks processing of the request as started. Called once, by the processing task.
+     * @return true if a response was attached first, and should be processed in the same pass.
+     */
+    boolean start() {
+        return state.getAndSet(STARTED) == RESPONSE_QUEUED;
+    }
+
+    LogEntry getLogEntry() {
+        return logEntry;
+    }
+
+    /**
+     * Completed with the entry once its request has been processed, or with null if it was filtered out.
+     * Responses arriving after processing has started continue from this.
+     */
+    CompletableFuture<LogEntry> getRequestProcessed() {
+        return requestProcessed;
+    }
+
+    HttpResponse getResponse() {
+        return response;
+    }
+
+    Date getResponseArrivalTime() {
+        return responseArrivalTime;
+    }
+
+    HashedTimingWheel.Timeout getTimeout() {
+        return timeout;
+    }
+
+    void setTimeout(HashedTimingWheel.Timeout timeout) {
+        this.timeout = timeout;
+    }
+}
@@ -97,6 +97,10 @@ public class LoggerPreferenceFactory extends PreferenceFactory {
         prefs.registerSetting(PREF_SORT_COLUMN, Integer.class, -1);
         prefs.registerSetting(PREF_SORT_ORDER, SortOrder.class, SortOrder.UNSORTED);
         prefs.registerSetting(PREF_RESPONSE_TIMEOUT, Integer.class, 60);
+        prefs.registerSetting(PREF_RESPONSE_TIMEOUT_PROXY, Integer.class, 0); //0 uses the default timeout
+        prefs.registerSetting(PREF_RESPONSE_TIMEOUT_REPEATER, Integer.class, 0);
+        prefs.registerSetting(PREF_RESPONSE_TIMEOUT_INTRUDER, Integer.class, 0);
+        prefs.registerSetting(PREF_RESPONSE_TIMEOUT_SCANNER, Integer.class, 0);
         prefs.registerSetting(PREF_MAXIMUM_ENTRIES, Integer.class, 1000000);
         prefs.registerSetting(PREF_SEARCH_THREADS, Integer.class, 5);
         prefs.registerSetting(PREF_AUTO_IMPORT_PROXY_HISTORY, Boolean.class, false);
@@ -255,6 +255,21 @@ public class PreferencesPanel extends JScrollPane {
         ((SpinnerNumberModel) spnRespTimeout.getModel()).setMaximum(600);
         ((SpinnerNumberModel) spnRespTimeout.getModel()).setStepSize(10);
 
+        //Tool specific timeouts, 0 uses the default above.
+        String[][] toolTimeouts = {
+                {PREF_RESPONSE_TIMEOUT_PROXY, "Proxy"},
+                {PREF_RESPONSE_TIMEOUT_REPEATER, "Repeater"},
+                {PREF_RESPONSE_TIMEOUT_INTRUDER, "Intruder"},
+                {PREF_RESPONSE_TIMEOUT_SCANNER, "Scanner"}
+        };
+        for (String[] toolTimeout : toolTimeouts) {
+            JSpinner spnToolTimeout = otherPanel.addPreferenceComponent(preferences, toolTimeout[0],
+                    "  " + toolTimeout[1] + " Response Timeout (Seconds, 0 for default): ");
+            ((SpinnerNumberModel) spnToolTimeout.getModel()).setMinimum(0);
+            ((SpinnerNumberModel) spnToolTimeout.getModel()).setMaximum(3600);
+            ((SpinnerNumberModel) spnToolTimeout.getModel()).setStepSize(10);
+        }
+
         JSpinner spnMaxEntries = otherPanel.addPreferenceComponent(preferences, PREF_MAXIMUM_ENTRIES,
                 "Maximum Log Entries: ");
         ((SpinnerNumberModel) spnMaxEntries.getModel()).setMinimum(10);
@@ -46,6 +46,10 @@ public class Globals {
     public static final String PREF_SORT_COLUMN = "sortcolumn";
     public static final String PREF_SORT_ORDER = "sortorder";
     public static final String PREF_RESPONSE_TIMEOUT = "responsetimeout";
+    public static final String PREF_RESPONSE_TIMEOUT_PROXY = "responsetimeoutproxy";
+    public static final String PREF_RESPONSE_TIMEOUT_REPEATER = "responsetimeoutrepeater";
+    public static final String PREF_RESPONSE_TIMEOUT_INTRUDER = "responsetimeoutintruder";
+    public static final String PREF_RESPONSE_TIMEOUT_SCANNER = "responsetimeoutscanner";
     public static final String PREF_MAXIMUM_ENTRIES = "maximumentries";
     public static final String PREF_LAYOUT = "layout";
     public static final String PREF_MESSAGE_VIEW_LAYOUT = "msgviewlayout";
@@ -0,0 +1,213 @@
+package com.nccgroup.loggerplusplus.util;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hashed timing wheel for large numbers of timeouts, most of which are cancelled before they fire.
+ * Scheduling and cancelling are O(1) and never block. Each tick only visits the timeouts in one bucket,
+ * rather than every pending timeout.
+ * Timeouts run on the wheel's own thread and may fire up to one tick late, so tasks should be short.
+ */
+@Log4j2
+public class HashedTimingWheel {
+
+    private final long tickNanos;
+    private final Bucket[] buckets;
+    private final int mask;
+    private final long startTime;
+    private final Queue<Timeout> scheduled;
+    private final Queue<Timeout> cancelled;
+    private final Thread worker;
+    private volatile boolean running;
+
+    /**
+     * @param ticksPerWheel Rounded up to a power of two. Timeouts further away than one rotation wait out extra rounds.
+     */
+    public HashedTimingWheel(String name, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+        this.tickNanos = Math.max(unit.toNanos(tickDuration), 1);
+        int size = Integer.highestOneBit(Math.max(ticksPerWheel, 1) - 1) << 1;
+        this.buckets = new Bucket[Math.max(size, 1)];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new Bucket();
+        }
+        this.mask = buckets.length - 1;
+        this.startTime = System.nanoTime();
+        this.scheduled = new ConcurrentLinkedQueue<>();
+        this.cancelled = new ConcurrentLinkedQueue<>();
+        this.running = true;
+        this.worker = new NamedThreadFactory(name).newThread(this::run);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * Runs the task once the delay has passed, unless the returned timeout is cancelled first.
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        Timeout timeout = new Timeout(this, task, System.nanoTime() - startTime + unit.toNanos(Math.max(delay, 0)));
+        //Handed to the worker thread, which owns the buckets, so scheduling never takes a lock.
+        scheduled.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Stops the wheel. Pending timeouts never fire.
+     */
+    public void stop() {
+        running = false;
+        worker.interrupt();
+    }
+
+    private void run() {
+        long tick = 0;
+        while (running) {
+            long sleepNanos = (tick + 1) * tickNanos - (System.nanoTime() - startTime);
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                continue;
+            }
+
+            removeCancelled();
+            transferScheduled(tick);
+            expire(buckets[(int) (tick & mask)]);
+            tick++;
+        }
+        scheduled.clear();
+        cancelled.clear();
+    }
+
+    //Cancelled timeouts are unlinked on the next tick rather than when their bucket next comes round.
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) timeout.bucket.remove(timeout);
+        }
+    }
+
+    private void transferScheduled(long tick) {
+        Timeout timeout;
+        while ((timeout = scheduled.poll()) != null) {
+            if (timeout.isCancelled()) continue;
+            long expiryTick = timeout.deadline / tickNanos;
+            timeout.remainingRounds = Math.max(expiryTick - tick, 0) / buckets.length;
+            //Deadlines which have already passed fire on this tick.
+            buckets[(int) (Math.max(expiryTick, tick) & mask)].add(timeout);
+        }
+    }
+
+    private void expire(Bucket bucket) {
+        Timeout timeout = bucket.head;
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.isCancelled()) {
+                bucket.remove(timeout);
+            } else if (timeout.remainingRounds <= 0) {
+                bucket.remove(timeout);
+                timeout.fire();
+            } else {
+                timeout.remainingRounds--;
+            }
+            timeout = next;
+        }
+    }
+
+    /**
+     * A scheduled task. Only the worker thread links and unlinks timeouts, other threads just change the state.
+     */
+    public static class Timeout {
+
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final HashedTimingWheel wheel;
+        //Cleared once cancelled, so a timeout waiting to be unlinked does not keep what the task refers to.
+        private volatile Runnable task;
+        private final long deadline;
+        private final AtomicInteger state;
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout next;
+        private Timeout previous;
+
+        private Timeout(HashedTimingWheel wheel, Runnable task, long deadline) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadline = deadline;
+            this.state = new AtomicInteger(PENDING);
+        }
+
+        /**
+         * @return true if the timeout was cancelled, false if it had already fired or been cancelled.
+         */
+        public boolean cancel() {
+            if (!state.compareAndSet(PENDING, CANCELLED)) return false;
+            task = null;
+            //Only the worker may unlink it from its bucket.
+            wheel.cancelled.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+
+        private void fire() {
+            if (!state.compareAndSet(PENDING, EXPIRED)) return;
+            Runnable task = this.task;
+            this.task = null;
+            try {
+                task.run();
+            } catch (Exception e) {
+                log.error("Timeout task failed", e);
+            }
+        }
+    }
+
+    private static class Bucket {
+
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            timeout.previous = tail;
+            timeout.next = null;
+            if (tail == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+            }
+            tail = timeout;
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.previous == null) {
+                head = timeout.next;
+            } else {
+                timeout.previous.next = timeout.next;
+            }
+            if (timeout.next == null) {
+                tail = timeout.previous;
+            } else {
+                timeout.next.previous = timeout.previous;
+            }
+            timeout.next = null;
+            timeout.previous = null;
+            timeout.bucket = null;
+        }
+    }
+}
@@ -46,6 +46,19 @@ public class PausableThreadPoolExecutor extends ThreadPoolExecutor {
         }
     }
 
+    /**
+     * Blocks the calling thread while the executor is paused, so tasks run outside the pool's own threads
+     * (e.g. by a rejection handler) respect the pause too. Returns early if the executor is shut down.
+     */
+    public void awaitUnpaused() throws InterruptedException {
+        pauseLock.lock();
+        try {
+            while (isPaused && !isShutdown()) unpaused.await(100, TimeUnit.MILLISECONDS);
+        } finally {
+            pauseLock.unlock();
+        }
+    }
+
     public void resume() {
         pauseLock.lock();
         try {
@@ -40,6 +40,10 @@ class ASTExpression extends SimpleNode {
         return op;
     }
 
+    public boolean isInverse() {
+        return inverse;
+    }
+
     public void addCondition(ASTExpression comparison){
         jjtAddChild(comparison, this.jjtGetNumChildren());
     }
@@ -0,0 +1,109 @@
+package com.nccgroup.loggerplusplus.collector;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CollectorDeduplicatorTest {
+
+    @Test
+    public void repeatsAreCounted() {
+        CollectorDeduplicator deduplicator = new CollectorDeduplicator(100);
+        assertEquals(0, deduplicator.recordAndCount(hash(1)));
+        assertEquals(2, deduplicator.recordAndCount(hash(1)));
+        assertEquals(3, deduplicator.recordAndCount(hash(1)));
+        assertEquals(0, deduplicator.recordAndCount(hash(2)));
+    }
+
+    @Test
+    public void countDoesNotRecordTheHash() {
+        CollectorDeduplicator deduplicator = new CollectorDeduplicator(100);
+        assertEquals(0, deduplicator.count(hash(1)));
+        assertEquals(0, deduplicator.recordAndCount(hash(1)));
+        assertEquals(2, deduplicator.count(hash(1)));
+        assertEquals(2, deduplicator.count(hash(1)));
+        assertEquals(2, deduplicator.recordAndCount(hash(1)));
+    }
+
+    @Test
+    public void hashesSurviveOneGenerationRollover() {
+        int capacity = 100;
+        CollectorDeduplicator deduplicator = new CollectorDeduplicator(capacity);
+        deduplicator.recordAndCount(hash(0));
+        //Fills the first generation, then starts the second.
+        for (int i = 1; i <= capacity; i++) {
+            assertEquals(0, deduplicator.recordAndCount(hash(i)), "hash " + i);
+        }
+        assertEquals(2, deduplicator.recordAndCount(hash(0)));
+    }
+
+    @Test
+    public void hashesAreForgottenAfterTwoGenerationRollovers() {
+        int capacity = 100;
+        CollectorDeduplicator deduplicator = new CollectorDeduplicator(capacity);
+        deduplicator.recordAndCount(hash(0));
+        for (int i = 1; i <= 2 * capacity; i++) {
+            deduplicator.recordAndCount(hash(i));
+        }
+        assertEquals(0, deduplicator.recordAndCount(hash(0)));
+    }
+
+    @Test
+    public void theLastCapacityHashesAreAlwaysRemembered() {
+        int capacity = 100;
+        for (int recorded = capacity; recorded <= 5 * capacity; recorded++) {
+            CollectorDeduplicator deduplicator = new CollectorDeduplicator(capacity);
+            for (int i = 0; i < recorded; i++) {
+                deduplicator.recordAndCount(hash(i));
+            }
+            //The oldest of the last [capacity] hashes, whichever generation it is in.
+            int oldest = recorded - capacity;
+            assertTrue(deduplicator.recordAndCount(hash(oldest)) > 0, "hash " + oldest + " after " + recorded);
+        }
+    }
+
+    @Test
+    public void falsePositiveRateStaysNearTheTarget() {
+        int capacity = 10000;
+        CollectorDeduplicator deduplicator = new CollectorDeduplicator(capacity);
+        for (int i = 0; i < capacity; i++) {
+            deduplicator.recordAndCount(hash(i));
+        }
+        int falsePositives = 0;
+        for (int i = capacity; i < 2 * capacity; i++) {
+            if (deduplicator.recordAndCount(hash(i)) > 0) falsePositives++;
+        }
+        //0.1% target, with room for variance.
+        assertTrue(falsePositives < capacity / 200, falsePositives + " false positives");
+    }
+
+    @Test
+    public void hashIgnoresHeadersButNotBodies() {
+        byte[] first = bytes("GET / HTTP/1.1\r\nDate: Mon\r\n\r\nbody");
+        byte[] second = bytes("GET / HTTP/1.1\r\nDate: Tuesday\r\n\r\nbody");
+        byte[] otherBody = bytes("GET / HTTP/1.1\r\nDate: Mon\r\n\r\nbodx");
+        byte[] response = bytes("HTTP/1.1 200 OK\r\n\r\nok");
+
+        long firstHash = CollectorDeduplicator.hash("GET", "https://example.com/", first, first.length - 4, response, response.length - 2);
+        assertEquals(firstHash, CollectorDeduplicator.hash("GET", "https://example.com/", second, second.length - 4, response, response.length - 2));
+        assertNotEquals(firstHash, CollectorDeduplicator.hash("GET", "https://example.com/", otherBody, otherBody.length - 4, response, response.length - 2));
+        assertNotEquals(firstHash, CollectorDeduplicator.hash("POST", "https://example.com/", first, first.length - 4, response, response.length - 2));
+        assertNotEquals(firstHash, CollectorDeduplicator.hash("GET", "https://example.com/a", first, first.length - 4, response, response.length - 2));
+    }
+
+    @Test
+    public void movingBytesBetweenPartsChangesTheHash() {
+        assertNotEquals(CollectorDeduplicator.hash("GET", "ab", bytes("c"), 0, new byte[0], 0),
+                CollectorDeduplicator.hash("GET", "a", bytes("bc"), 0, new byte[0], 0));
+    }
+
+    private static long hash(int i) {
+        return CollectorDeduplicator.hash("GET", "https://example.com/" + i, new byte[0], 0, new byte[0], 0);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
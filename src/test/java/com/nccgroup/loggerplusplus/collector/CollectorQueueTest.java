@@ -0,0 +1,243 @@
+package com.nccgroup.loggerplusplus.collector;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CollectorQueueTest {
+
+    private Path spoolDirectory;
+    private CollectorSpool spool;
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        if (spool != null) spool.close();
+        if (spoolDirectory != null) {
+            try (Stream<Path> files = Files.walk(spoolDirectory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @Test
+    public void dropOldestEvictsTheHeadOfTheQueue() throws InterruptedException {
+        CollectorQueue queue = new CollectorQueue(2, Long.MAX_VALUE, OverflowPolicy.DROP_OLDEST);
+        assertTrue(queue.offer(record("a")));
+        assertTrue(queue.offer(record("b")));
+        assertTrue(queue.offer(record("c")));
+
+        assertEquals(2, queue.size());
+        assertEquals(1, queue.getDroppedCount());
+        assertEquals("b", poll(queue));
+        assertEquals("c", poll(queue));
+    }
+
+    @Test
+    public void dropNewestRejectsTheNewRecord() throws InterruptedException {
+        CollectorQueue queue = new CollectorQueue(2, Long.MAX_VALUE, OverflowPolicy.DROP_NEWEST);
+        assertTrue(queue.offer(record("a")));
+        assertTrue(queue.offer(record("b")));
+        assertFalse(queue.offer(record("c")));
+
+        assertEquals(1, queue.getDroppedCount());
+        assertEquals("a", poll(queue));
+        assertEquals("b", poll(queue));
+    }
+
+    @Test
+    public void byteCapacityAppliesTheOverflowPolicy() throws InterruptedException {
+        CollectorQueue queue = new CollectorQueue(100, 10, OverflowPolicy.DROP_OLDEST);
+        assertTrue(queue.offer(record("12345")));
+        assertTrue(queue.offer(record("67890")));
+        assertTrue(queue.offer(record("abcde")));
+
+        assertEquals(2, queue.size());
+        assertEquals(10, queue.sizeInBytes());
+        assertEquals("67890", poll(queue));
+    }
+
+    @Test
+    public void recordLargerThanByteCapacityIsDropped() {
+        CollectorQueue queue = new CollectorQueue(100, 4, OverflowPolicy.DROP_OLDEST);
+        assertFalse(queue.offer(record("12345")));
+        assertEquals(0, queue.size());
+        assertEquals(1, queue.getDroppedCount());
+    }
+
+    @Test
+    public void spillToDiskWritesOverflowToTheSpool() throws IOException, InterruptedException {
+        spoolDirectory = Files.createTempDirectory("collector-queue");
+        spool = new CollectorSpool(spoolDirectory, Long.MAX_VALUE);
+        CollectorQueue queue = new CollectorQueue(1, Long.MAX_VALUE, OverflowPolicy.SPILL_TO_DISK);
+        queue.setSpool(spool);
+
+        assertTrue(queue.offer(record("a")));
+        assertTrue(queue.offer(record("b")));
+
+        assertEquals(1, queue.size());
+        assertEquals(1, queue.getSpilledCount());
+        List<CollectorSpool.Entry> spilled = spool.read(10, 0, TimeUnit.MILLISECONDS);
+        assertEquals(1, spilled.size());
+        assertEquals("b", new String(spilled.get(0).getPayload()));
+    }
+
+    @Test
+    public void spillToDiskWithoutSpoolDrops() {
+        CollectorQueue queue = new CollectorQueue(1, Long.MAX_VALUE, OverflowPolicy.SPILL_TO_DISK);
+        assertTrue(queue.offer(record("a")));
+        assertFalse(queue.offer(record("b")));
+        assertEquals(1, queue.getDroppedCount());
+    }
+
+    @Test
+    public void blockWaitsForAConsumer() throws InterruptedException {
+        CollectorQueue queue = new CollectorQueue(1, Long.MAX_VALUE, OverflowPolicy.BLOCK);
+        assertTrue(queue.offer(record("a")));
+
+        Thread consumer = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+                queue.poll(1, TimeUnit.SECONDS);
+            } catch (InterruptedException ignored) {}
+        });
+        consumer.start();
+
+        assertTrue(queue.offer(record("b")));
+        consumer.join();
+        assertEquals("b", poll(queue));
+        assertEquals(0, queue.getDroppedCount());
+    }
+
+    @Test
+    public void blockGivesUpAfterTheMaximumWait() {
+        CollectorQueue queue = new CollectorQueue(1, Long.MAX_VALUE, OverflowPolicy.BLOCK);
+        assertTrue(queue.offer(record("a")));
+
+        long start = System.nanoTime();
+        assertFalse(queue.offer(record("b")));
+        long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(waitedMillis >= CollectorQueue.MAX_BLOCK_MILLIS - 50, "Returned after " + waitedMillis + "ms");
+        assertTrue(waitedMillis < CollectorQueue.MAX_BLOCK_MILLIS + 1000, "Returned after " + waitedMillis + "ms");
+        assertEquals(1, queue.getDroppedCount());
+    }
+
+    @Test
+    public void closeReleasesBlockedProducer() throws InterruptedException {
+        CollectorQueue queue = new CollectorQueue(1, Long.MAX_VALUE, OverflowPolicy.BLOCK);
+        assertTrue(queue.offer(record("a")));
+
+        boolean[] offered = {true};
+        Thread producer = new Thread(() -> offered[0] = queue.offer(record("b")));
+        producer.start();
+        Thread.sleep(100);
+        queue.close();
+        producer.join(1000);
+
+        assertFalse(producer.isAlive());
+        assertFalse(offered[0]);
+    }
+
+    @Test
+    public void offerIfRoomNeverAppliesTheOverflowPolicy() throws InterruptedException {
+        CollectorQueue queue = new CollectorQueue(1, Long.MAX_VALUE, OverflowPolicy.DROP_OLDEST);
+        assertTrue(queue.offerIfRoom(record("a")));
+        assertFalse(queue.offerIfRoom(record("b")));
+
+        assertEquals(0, queue.getDroppedCount());
+        assertEquals("a", poll(queue));
+    }
+
+    @Test
+    public void awaitRoomReturnsOnceAConsumerTakesARecord() throws InterruptedException {
+        CollectorQueue queue = new CollectorQueue(1, Long.MAX_VALUE, OverflowPolicy.DROP_NEWEST);
+        queue.offer(record("a"));
+        assertEquals(0, queue.awaitRoom(0, TimeUnit.MILLISECONDS));
+
+        Thread consumer = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+                queue.poll(0, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ignored) {}
+        });
+        consumer.start();
+        assertEquals(1, queue.awaitRoom(5, TimeUnit.SECONDS));
+        consumer.join();
+    }
+
+    @Test
+    public void growingKeepsRecordsInOrder() throws InterruptedException {
+        CollectorQueue queue = new CollectorQueue(3, Long.MAX_VALUE, OverflowPolicy.DROP_NEWEST);
+        queue.offer(record("a"));
+        queue.offer(record("b"));
+        poll(queue);
+        queue.offer(record("c"));
+        queue.offer(record("d"));
+
+        queue.configure(5, Long.MAX_VALUE, OverflowPolicy.DROP_NEWEST);
+        assertEquals(5, queue.getCapacity());
+        assertTrue(queue.offer(record("e")));
+        assertTrue(queue.offer(record("f")));
+        assertFalse(queue.offer(record("g")));
+
+        List<String> drained = new ArrayList<>();
+        for (CollectorRecord record : queue.drainRemaining()) {
+            drained.add(new String(record.getPayload()));
+        }
+        assertEquals(List.of("b", "c", "d", "e", "f"), drained);
+    }
+
+    @Test
+    public void shrinkingKeepsRecordsUntilTheQueueDrains() throws InterruptedException {
+        CollectorQueue queue = new CollectorQueue(4, Long.MAX_VALUE, OverflowPolicy.DROP_NEWEST);
+        for (String value : new String[]{"a", "b", "c", "d"}) {
+            queue.offer(record(value));
+        }
+
+        queue.configure(2, Long.MAX_VALUE, OverflowPolicy.DROP_NEWEST);
+        assertEquals(4, queue.size());
+        assertEquals(2, queue.getCapacity());
+        assertFalse(queue.offer(record("e")));
+
+        assertEquals("a", poll(queue));
+        assertEquals("b", poll(queue));
+        assertFalse(queue.offer(record("f")));
+        assertEquals("c", poll(queue));
+        //Back within the new capacity, so the queue accepts records again, up to two.
+        assertTrue(queue.offer(record("g")));
+        assertFalse(queue.offer(record("h")));
+        assertEquals("d", poll(queue));
+        assertEquals("g", poll(queue));
+        assertNull(queue.poll(0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void drainToCollectsUpToTheBatchSize() throws InterruptedException {
+        CollectorQueue queue = new CollectorQueue(10, Long.MAX_VALUE, OverflowPolicy.DROP_NEWEST);
+        for (int i = 0; i < 5; i++) {
+            queue.offer(record(String.valueOf(i)));
+        }
+        List<CollectorRecord> batch = new ArrayList<>();
+        assertEquals(3, queue.drainTo(batch, 3, 10));
+        assertEquals(2, queue.size());
+    }
+
+    private static CollectorRecord record(String payload) {
+        return new CollectorRecord("example.com", payload.getBytes());
+    }
+
+    private static String poll(CollectorQueue queue) throws InterruptedException {
+        CollectorRecord record = queue.poll(0, TimeUnit.MILLISECONDS);
+        return record == null ? null : new String(record.getPayload());
+    }
+}
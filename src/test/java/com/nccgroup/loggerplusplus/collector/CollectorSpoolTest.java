@@ -0,0 +1,238 @@
+package com.nccgroup.loggerplusplus.collector;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CollectorSpoolTest {
+
+    //Each four byte payload takes twelve bytes on disk, so these segments hold two records.
+    private static final long SMALL_SEGMENT_SIZE = 20;
+
+    private Path directory;
+    private CollectorSpool spool;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("collector-spool");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        if (spool != null) spool.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void deliveryResumesFromTheCheckpoint() throws Exception {
+        spool = new CollectorSpool(directory, Long.MAX_VALUE);
+        append("aaaa", "bbbb", "cccc");
+        List<CollectorSpool.Entry> entries = spool.read(2, 0, TimeUnit.MILLISECONDS);
+        assertEquals(List.of("aaaa", "bbbb"), payloads(entries));
+        spool.commit(entries);
+        spool.close();
+
+        spool = new CollectorSpool(directory, Long.MAX_VALUE);
+        assertEquals(1, spool.getPendingRecords());
+        assertEquals(List.of("cccc"), readAll());
+    }
+
+    @Test
+    public void rewindReadsUncommittedRecordsAgain() throws Exception {
+        spool = new CollectorSpool(directory, Long.MAX_VALUE);
+        append("aaaa", "bbbb");
+        spool.commit(spool.read(1, 0, TimeUnit.MILLISECONDS));
+        assertEquals(List.of("bbbb"), readAll());
+
+        spool.rewind();
+        assertEquals(List.of("bbbb"), readAll());
+    }
+
+    @Test
+    public void tornTailIsTruncatedOnRecovery() throws Exception {
+        spool = new CollectorSpool(directory, Long.MAX_VALUE);
+        append("aaaa", "bbbb");
+        spool.close();
+
+        //A record header whose payload never made it to disk.
+        Path segment = segmentPath(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.allocate(8).putInt(100).putInt(0).flip());
+        }
+
+        spool = new CollectorSpool(directory, Long.MAX_VALUE);
+        assertEquals(2, spool.getPendingRecords());
+        assertEquals(24, Files.size(segment));
+        append("cccc");
+        assertEquals(List.of("aaaa", "bbbb", "cccc"), readAll());
+    }
+
+    @Test
+    public void corruptCheckpointReplaysFromTheStart() throws Exception {
+        spool = new CollectorSpool(directory, Long.MAX_VALUE);
+        append("aaaa", "bbbb");
+        spool.commit(spool.read(1, 0, TimeUnit.MILLISECONDS));
+        spool.close();
+
+        try (FileChannel channel = FileChannel.open(directory.resolve("checkpoint"), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(8).putLong(-1).flip(), 16);
+        }
+
+        spool = new CollectorSpool(directory, Long.MAX_VALUE);
+        assertEquals(List.of("aaaa", "bbbb"), readAll());
+    }
+
+    @Test
+    public void checkpointPastTheEndOfATruncatedSegmentIsClamped() throws Exception {
+        spool = new CollectorSpool(directory, Long.MAX_VALUE);
+        append("aaaa", "bbbb");
+        spool.commit(spool.read(2, 0, TimeUnit.MILLISECONDS));
+        spool.close();
+
+        //The checkpoint reached the disk but the segment tail did not.
+        try (FileChannel channel = FileChannel.open(segmentPath(0), StandardOpenOption.WRITE)) {
+            channel.truncate(12);
+        }
+
+        spool = new CollectorSpool(directory, Long.MAX_VALUE);
+        assertEquals(0, spool.getPendingRecords());
+        append("cccc");
+        assertEquals(List.of("cccc"), readAll());
+    }
+
+    @Test
+    public void corruptLengthDropsTheRestOfTheSegment() throws Exception {
+        spool = new CollectorSpool(directory, Long.MAX_VALUE, SMALL_SEGMENT_SIZE);
+        append("aaaa", "bbbb", "cccc");
+
+        //Overwrite the length of the second record in the first segment.
+        try (FileChannel channel = FileChannel.open(segmentPath(0), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(Integer.MAX_VALUE).flip(), 12);
+        }
+
+        assertEquals(List.of("aaaa", "cccc"), readAll());
+        assertEquals(1, spool.getDroppedCount());
+        assertEquals(12, Files.size(segmentPath(0)));
+    }
+
+    @Test
+    public void negativeLengthInTheWriteSegmentStartsANewSegment() throws Exception {
+        spool = new CollectorSpool(directory, Long.MAX_VALUE);
+        append("aaaa", "bbbb");
+        try (FileChannel channel = FileChannel.open(segmentPath(0), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(-1).flip(), 12);
+        }
+
+        assertEquals(List.of("aaaa"), readAll());
+        append("cccc");
+        assertEquals(List.of("cccc"), readAll());
+        assertTrue(Files.exists(segmentPath(1)));
+    }
+
+    @Test
+    public void appendRecoversFromAnInterruptedWrite() throws Exception {
+        spool = new CollectorSpool(directory, Long.MAX_VALUE);
+        append("aaaa");
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(IOException.class, () -> append("bbbb"));
+        } finally {
+            Thread.interrupted();
+        }
+
+        append("cccc");
+        assertEquals(List.of("aaaa", "cccc"), readAll());
+        assertEquals(24, Files.size(segmentPath(0)));
+    }
+
+    @Test
+    public void rotationStartsNewSegments() throws Exception {
+        spool = new CollectorSpool(directory, Long.MAX_VALUE, SMALL_SEGMENT_SIZE);
+        append("aaaa", "bbbb", "cccc", "dddd", "eeee");
+        assertTrue(Files.exists(segmentPath(2)));
+
+        List<CollectorSpool.Entry> entries = spool.read(100, 0, TimeUnit.MILLISECONDS);
+        assertEquals(List.of("aaaa", "bbbb", "cccc", "dddd", "eeee"), payloads(entries));
+        spool.commit(entries);
+        assertFalse(Files.exists(segmentPath(0)));
+        assertFalse(Files.exists(segmentPath(1)));
+        assertEquals(0, spool.getPendingRecords());
+    }
+
+    @Test
+    public void sizeCapDiscardsTheOldestSegment() throws Exception {
+        spool = new CollectorSpool(directory, 50, SMALL_SEGMENT_SIZE);
+        append("aaaa", "bbbb", "cccc", "dddd", "eeee", "ffff");
+
+        assertFalse(Files.exists(segmentPath(0)));
+        assertEquals(2, spool.getDroppedCount());
+        assertEquals(4, spool.getPendingRecords());
+        assertEquals(List.of("cccc", "dddd", "eeee", "ffff"), readAll());
+    }
+
+    @Test
+    public void sizeCapMovesTheCursorPastDiscardedRecords() throws Exception {
+        spool = new CollectorSpool(directory, Long.MAX_VALUE, SMALL_SEGMENT_SIZE);
+        append("aaaa", "bbbb", "cccc");
+        assertEquals(List.of("aaaa"), payloads(spool.read(1, 0, TimeUnit.MILLISECONDS)));
+
+        spool.setMaxBytes(12);
+        assertEquals(List.of("cccc"), readAll());
+    }
+
+    @Test
+    public void readWaitsForAnAppendFromAnotherThread() throws Exception {
+        spool = new CollectorSpool(directory, Long.MAX_VALUE, SMALL_SEGMENT_SIZE);
+        append("aaaa", "bbbb");
+        assertEquals(List.of("aaaa", "bbbb"), readAll());
+
+        Thread writer = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+                append("cccc");
+            } catch (Exception ignored) {}
+        });
+        writer.start();
+        assertEquals(List.of("cccc"), payloads(spool.read(10, 5, TimeUnit.SECONDS)));
+        writer.join();
+    }
+
+    private void append(String... payloads) throws IOException {
+        for (String payload : payloads) {
+            spool.append(payload.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private List<String> readAll() throws IOException, InterruptedException {
+        return payloads(spool.read(Integer.MAX_VALUE, 0, TimeUnit.MILLISECONDS));
+    }
+
+    private Path segmentPath(long id) {
+        return directory.resolve(String.format("segment-%020d.spool", id));
+    }
+
+    private static List<String> payloads(List<CollectorSpool.Entry> entries) {
+        List<String> payloads = new ArrayList<>();
+        for (CollectorSpool.Entry entry : entries) {
+            payloads.add(new String(entry.getPayload(), StandardCharsets.UTF_8));
+        }
+        return payloads;
+    }
+}
@@ -0,0 +1,124 @@
+package com.nccgroup.loggerplusplus.collector;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DomainWhitelistMatcherTest {
+
+    @Test
+    public void emptyWhitelistAllowsEverything() {
+        DomainWhitelistMatcher matcher = new DomainWhitelistMatcher(Collections.emptyList());
+        assertTrue(matcher.matches("example.com"));
+        assertTrue(matcher.matches(""));
+
+        DomainWhitelistMatcher blankRules = new DomainWhitelistMatcher(Arrays.asList("", "  ", ".", "!", null));
+        assertTrue(blankRules.matches("example.com"));
+    }
+
+    @Test
+    public void domainMatchesItselfAndItsSubdomains() {
+        DomainWhitelistMatcher matcher = matcher("example.com");
+        assertTrue(matcher.matches("example.com"));
+        assertTrue(matcher.matches("www.example.com"));
+        assertTrue(matcher.matches("a.b.example.com"));
+        assertFalse(matcher.matches("notexample.com"));
+        assertFalse(matcher.matches("example.com.evil.org"));
+        assertFalse(matcher.matches("com"));
+        assertFalse(matcher.matches(null));
+        assertFalse(matcher.matches(""));
+    }
+
+    @Test
+    public void matchingIgnoresCaseAndTrailingDots() {
+        DomainWhitelistMatcher matcher = matcher(" Example.COM. ");
+        assertTrue(matcher.matches("WWW.example.com"));
+        assertTrue(matcher.matches("example.com."));
+        assertTrue(matcher("*.EXAMPLE.com").matches("Api.Example.Com"));
+    }
+
+    @Test
+    public void leadingWildcardMatchesSubdomainsButNotTheDomain() {
+        DomainWhitelistMatcher matcher = matcher("*.example.com");
+        assertFalse(matcher.matches("example.com"));
+        assertTrue(matcher.matches("api.example.com"));
+        assertTrue(matcher.matches("v1.api.example.com"));
+        assertFalse(matcher.matches("api.example.org"));
+    }
+
+    @Test
+    public void innerWildcardMatchesExactlyOneLabel() {
+        DomainWhitelistMatcher matcher = matcher("api.*.example.com");
+        assertTrue(matcher.matches("api.eu.example.com"));
+        assertTrue(matcher.matches("v1.api.eu.example.com"));
+        assertFalse(matcher.matches("api.example.com"));
+        assertFalse(matcher.matches("web.eu.example.com"));
+        assertFalse(matcher.matches("api.a.b.example.com"));
+    }
+
+    @Test
+    public void exclusionRemovesADomainAndItsSubdomains() {
+        DomainWhitelistMatcher matcher = matcher("example.com", "!internal.example.com");
+        assertTrue(matcher.matches("example.com"));
+        assertTrue(matcher.matches("www.example.com"));
+        assertFalse(matcher.matches("internal.example.com"));
+        assertFalse(matcher.matches("db.internal.example.com"));
+        assertFalse(matcher.matches("other.org"));
+    }
+
+    @Test
+    public void onlyExclusionsAllowEverythingElse() {
+        DomainWhitelistMatcher matcher = matcher("!ads.example.com", "!*.tracker.net");
+        assertTrue(matcher.matches("example.com"));
+        assertTrue(matcher.matches("tracker.net"));
+        assertFalse(matcher.matches("ads.example.com"));
+        assertFalse(matcher.matches("eu.tracker.net"));
+    }
+
+    @Test
+    public void mostSpecificRuleWins() {
+        DomainWhitelistMatcher matcher = matcher("!example.com", "allowed.example.com", "!private.allowed.example.com");
+        assertFalse(matcher.matches("example.com"));
+        assertFalse(matcher.matches("other.example.com"));
+        assertTrue(matcher.matches("allowed.example.com"));
+        assertTrue(matcher.matches("www.allowed.example.com"));
+        assertFalse(matcher.matches("private.allowed.example.com"));
+    }
+
+    @Test
+    public void literalLabelBeatsWildcardAtTheSameDepth() {
+        DomainWhitelistMatcher excludeLiteral = matcher("*.example.com", "!secret.example.com");
+        assertTrue(excludeLiteral.matches("public.example.com"));
+        assertFalse(excludeLiteral.matches("secret.example.com"));
+
+        DomainWhitelistMatcher includeLiteral = matcher("!*.example.com", "www.example.com");
+        assertTrue(includeLiteral.matches("www.example.com"));
+        assertFalse(includeLiteral.matches("mail.example.com"));
+    }
+
+    @Test
+    public void exclusionBeatsInclusionOfTheSameDomain() {
+        assertFalse(matcher("example.com", "!example.com").matches("example.com"));
+        assertFalse(matcher("!example.com", "example.com").matches("www.example.com"));
+    }
+
+    @Test
+    public void manyRulesAtOneLevelAreAllFound() {
+        String[] rules = new String[200];
+        for (int i = 0; i < rules.length; i++) {
+            rules[i] = "host" + i + ".example.com";
+        }
+        DomainWhitelistMatcher matcher = matcher(rules);
+        for (int i = 0; i < rules.length; i++) {
+            assertTrue(matcher.matches("www.host" + i + ".example.com"), rules[i]);
+        }
+        assertFalse(matcher.matches("host200.example.com"));
+    }
+
+    private static DomainWhitelistMatcher matcher(String... rules) {
+        return new DomainWhitelistMatcher(Arrays.asList(rules));
+    }
+}
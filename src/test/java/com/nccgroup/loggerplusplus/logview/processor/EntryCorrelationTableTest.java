@@ -0,0 +1,161 @@
+package com.nccgroup.loggerplusplus.logview.processor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EntryCorrelationTableTest {
+
+    private static final int RACE_ITERATIONS = 5000;
+
+    @Test
+    public void entriesAreFoundUntilRemoved() {
+        EntryCorrelationTable table = new EntryCorrelationTable();
+        PendingEntry entry = new PendingEntry(null);
+        table.put(42, entry);
+
+        assertSame(entry, table.get(42));
+        assertTrue(table.remove(42, entry));
+        assertNull(table.get(42));
+        assertFalse(table.remove(42, entry));
+    }
+
+    @Test
+    public void removeLeavesANewerEntryForTheSameIdentifier() {
+        EntryCorrelationTable table = new EntryCorrelationTable();
+        PendingEntry older = new PendingEntry(null);
+        PendingEntry newer = new PendingEntry(null);
+        table.put(7, older);
+        table.put(7, newer);
+
+        assertFalse(table.remove(7, older));
+        assertSame(newer, table.get(7));
+    }
+
+    @Test
+    public void entriesSurviveGrowthShrinkingAndRemovalOfTheirNeighbours() {
+        EntryCorrelationTable table = new EntryCorrelationTable();
+        List<PendingEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            PendingEntry entry = new PendingEntry(null);
+            entries.add(entry);
+            table.put(i, entry);
+        }
+        for (int i = 0; i < entries.size(); i += 2) {
+            assertTrue(table.remove(i, entries.get(i)));
+        }
+        for (int i = 0; i < entries.size(); i++) {
+            if (i % 2 == 0) {
+                assertNull(table.get(i));
+            } else {
+                assertSame(entries.get(i), table.get(i), "identifier " + i);
+            }
+        }
+        for (int i = 1; i < entries.size(); i += 2) {
+            assertTrue(table.remove(i, entries.get(i)));
+        }
+        for (int i = 0; i < entries.size(); i++) {
+            assertNull(table.get(i));
+        }
+    }
+
+    @Test
+    public void concurrentRequestsAndResponsesEachSeeTheirOwnEntry() throws Exception {
+        EntryCorrelationTable table = new EntryCorrelationTable();
+        int threads = 8;
+        int perThread = 5000;
+        AtomicInteger mismatches = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            int base = t * perThread;
+            new Thread(() -> {
+                try {
+                    for (int i = base; i < base + perThread; i++) {
+                        PendingEntry entry = new PendingEntry(null);
+                        table.put(i, entry);
+                        if (table.get(i) != entry) mismatches.incrementAndGet();
+                        if (!table.remove(i, entry)) mismatches.incrementAndGet();
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }).start();
+        }
+        done.await();
+
+        assertEquals(0, mismatches.get());
+        for (int i = 0; i < threads * perThread; i++) {
+            assertNull(table.get(i));
+        }
+    }
+
+    @Test
+    public void responseRacingTheRequestIsProcessedExactlyOnce() throws Exception {
+        for (int i = 0; i < RACE_ITERATIONS; i++) {
+            PendingEntry entry = new PendingEntry(null);
+            boolean[] results = new boolean[2];
+            race(() -> results[0] = entry.offerResponse(null, new Date()),
+                    () -> results[1] = entry.start());
+            //Either the response was attached and processed with the request, or it was refused and is processed on its own.
+            assertEquals(results[0], results[1], "iteration " + i);
+        }
+    }
+
+    @Test
+    public void timeoutRacingTheResponseCompletesTheEntryOnce() throws Exception {
+        EntryCorrelationTable table = new EntryCorrelationTable();
+        for (int i = 0; i < RACE_ITERATIONS; i++) {
+            PendingEntry entry = new PendingEntry(null);
+            table.put(i, entry);
+            boolean[] removed = new boolean[2];
+            int identifier = i;
+            race(() -> removed[0] = table.remove(identifier, entry),
+                    () -> removed[1] = table.remove(identifier, entry));
+            assertTrue(removed[0] ^ removed[1], "iteration " + i);
+            assertNull(table.get(i));
+        }
+    }
+
+    @Test
+    public void timeoutDoesNotRemoveARequestWhichReusedTheIdentifier() throws Exception {
+        EntryCorrelationTable table = new EntryCorrelationTable();
+        for (int i = 0; i < RACE_ITERATIONS; i++) {
+            PendingEntry expired = new PendingEntry(null);
+            PendingEntry reused = new PendingEntry(null);
+            table.put(i, expired);
+            int identifier = i;
+            race(() -> table.remove(identifier, expired),
+                    () -> table.put(identifier, reused));
+            //Whichever ran first, the newer request is still waiting on its response.
+            assertSame(reused, table.get(i), "iteration " + i);
+            assertTrue(table.remove(i, reused));
+        }
+    }
+
+    private static void race(Runnable first, Runnable second) throws Exception {
+        CyclicBarrier barrier = new CyclicBarrier(2);
+        Thread other = new Thread(() -> {
+            await(barrier);
+            second.run();
+        });
+        other.start();
+        await(barrier);
+        first.run();
+        other.join();
+    }
+
+    private static void await(CyclicBarrier barrier) {
+        try {
+            barrier.await();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
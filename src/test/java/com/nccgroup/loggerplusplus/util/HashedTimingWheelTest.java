@@ -0,0 +1,102 @@
+package com.nccgroup.loggerplusplus.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HashedTimingWheelTest {
+
+    private static final long TICK_MS = 10;
+
+    private HashedTimingWheel wheel;
+
+    @AfterEach
+    public void tearDown() {
+        if (wheel != null) wheel.stop();
+    }
+
+    @Test
+    public void timeoutFiresAfterItsDelay() throws InterruptedException {
+        wheel = new HashedTimingWheel("test-wheel", TICK_MS, TimeUnit.MILLISECONDS, 8);
+        CountDownLatch fired = new CountDownLatch(1);
+        long start = System.nanoTime();
+        HashedTimingWheel.Timeout timeout = wheel.schedule(fired::countDown, 50, TimeUnit.MILLISECONDS);
+
+        assertTrue(fired.await(1, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 50);
+        assertTrue(timeout.isExpired());
+        assertFalse(timeout.cancel());
+    }
+
+    @Test
+    public void timeoutsLongerThanOneRotationWaitOutExtraRounds() throws InterruptedException {
+        //Four buckets of 10ms, so 250ms is more than six rotations away.
+        wheel = new HashedTimingWheel("test-wheel", TICK_MS, TimeUnit.MILLISECONDS, 4);
+        CountDownLatch fired = new CountDownLatch(2);
+        long start = System.nanoTime();
+        long[] elapsed = new long[2];
+        wheel.schedule(() -> {
+            elapsed[0] = System.nanoTime() - start;
+            fired.countDown();
+        }, 250, TimeUnit.MILLISECONDS);
+        //Lands in the same bucket, one round earlier.
+        wheel.schedule(() -> {
+            elapsed[1] = System.nanoTime() - start;
+            fired.countDown();
+        }, 210, TimeUnit.MILLISECONDS);
+
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(elapsed[0]) >= 250, "fired after " + elapsed[0]);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(elapsed[1]) >= 210, "fired after " + elapsed[1]);
+        assertTrue(elapsed[1] < elapsed[0]);
+    }
+
+    @Test
+    public void pastDeadlinesFireOnTheNextTick() throws InterruptedException {
+        wheel = new HashedTimingWheel("test-wheel", TICK_MS, TimeUnit.MILLISECONDS, 8);
+        CountDownLatch fired = new CountDownLatch(1);
+        wheel.schedule(fired::countDown, -5, TimeUnit.SECONDS);
+        assertTrue(fired.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void cancelledTimeoutsNeverFire() throws InterruptedException {
+        wheel = new HashedTimingWheel("test-wheel", TICK_MS, TimeUnit.MILLISECONDS, 4);
+        AtomicInteger fired = new AtomicInteger();
+        HashedTimingWheel.Timeout beforeTransfer = wheel.schedule(fired::incrementAndGet, 30, TimeUnit.MILLISECONDS);
+        assertTrue(beforeTransfer.cancel());
+        HashedTimingWheel.Timeout inBucket = wheel.schedule(fired::incrementAndGet, 100, TimeUnit.MILLISECONDS);
+        Thread.sleep(40);
+        assertTrue(inBucket.cancel());
+        CountDownLatch marker = new CountDownLatch(1);
+        wheel.schedule(marker::countDown, 150, TimeUnit.MILLISECONDS);
+
+        assertTrue(marker.await(1, TimeUnit.SECONDS));
+        assertEquals(0, fired.get());
+        assertTrue(beforeTransfer.isCancelled());
+        assertFalse(inBucket.cancel());
+        assertFalse(inBucket.isExpired());
+    }
+
+    @Test
+    public void cancelReleasesTheTask() throws InterruptedException {
+        wheel = new HashedTimingWheel("test-wheel", TICK_MS, TimeUnit.MILLISECONDS, 4);
+        Runnable task = new AtomicInteger()::incrementAndGet;
+        WeakReference<Runnable> reference = new WeakReference<>(task);
+        HashedTimingWheel.Timeout timeout = wheel.schedule(task, 1, TimeUnit.HOURS);
+        task = null;
+        assertTrue(timeout.cancel());
+
+        for (int i = 0; i < 50 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(TICK_MS);
+        }
+        assertNull(reference.get());
+    }
+}